@@ -1,5 +1,7 @@
 package hu.kszi2.nought.core;
 
+import java.util.ArrayList;
+
 /**
  * Exception class thrown, whenever an invalid operation would be performed
  * on a Todo instance.
@@ -10,13 +12,34 @@ public class BadTodoOperation extends Exception {
     /**
      * Constructs a BadTodoOperation instance using the instance of the Todo
      * class that caused the failure, and a custom error message.
+     * The names of the todo and its parents are captured, so the message describes
+     * the hierarchy at the time of the failure, even if the operation is rolled back
+     * later.
+     * The stack trace is kept: the exception is only thrown by operations that are
+     * actually attempted, while probing whether an operation would succeed is done
+     * through {@link TodoValidation}, which creates no exception.
      *
      * @param todo    The instance that the bad operation was invoked on
      * @param message Custom error message
      * @see Todo
      */
     public BadTodoOperation(Todo todo, String message) {
-        super(makeMessage(todo, message));
+        super(message);
+        this.trace = traceOf(todo);
+    }
+
+    /**
+     * Returns the error message, which is formatted on the first call from the names
+     * captured at construction.
+     *
+     * @return The formatted error message
+     */
+    @Override
+    public String getMessage() {
+        if (formatted == null) {
+            formatted = makeMessage(trace, super.getMessage());
+        }
+        return formatted;
     }
 
     /**
@@ -31,27 +54,52 @@ public class BadTodoOperation extends Exception {
      *
      * @see Todo
      */
-    private static String makeMessage(Todo todo, String message) {
+    static String makeMessage(Todo todo, String message) {
+        return makeMessage(traceOf(todo), message);
+    }
+
+    /**
+     * Collects the names of a todo and all its parents, starting with the todo.
+     *
+     * @param todo The todo on which the bad operation took place
+     * @return The names of the hierarchy of the todo
+     */
+    private static String[] traceOf(Todo todo) {
+        var names = new ArrayList<String>();
+        for (var current = todo; current != null; current = current.getParent()) {
+            names.add(current.getName());
+        }
+        return names.toArray(new String[0]);
+    }
+
+    /**
+     * Constructs a string error message from the names of the hierarchy of a todo and
+     * the custom error string.
+     *
+     * @param trace   The names of the todo and its parents, starting with the todo
+     * @param message The custom error string
+     * @return The formatted error message
+     */
+    private static String makeMessage(String[] trace, String message) {
         StringBuilder builder = new StringBuilder();
-        var name = todo.getName();
 
         builder.append("Error in Todo '");
-        builder.append(name);
+        builder.append(trace[0]);
         builder.append("': ");
         builder.append(message);
 
         builder.append("\nTodoTrace:\n");
-        var parent = todo.getParent();
-        while (parent != null) {
+        for (int i = 1; i < trace.length; ++i) {
             builder.append("note: in '");
-            builder.append(name);
+            builder.append(trace[i - 1]);
             builder.append("' child of '");
-            name = parent.getName();
-            builder.append(name);
+            builder.append(trace[i]);
             builder.append("'\n");
-            parent = parent.getParent();
         }
 
         return builder.toString();
     }
+
+    private final String[] trace;
+    private String formatted;
 }
@@ -3,10 +3,15 @@ package hu.kszi2.nought.core;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.time.Instant;
 import java.time.LocalTime;
+import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
 import java.util.*;
@@ -19,6 +24,11 @@ import java.util.*;
  * Since each Todo is uniquely part of one TodoStore, the todo stores this back
  * reference to be able to correctly perform actions which affect the store
  * object as well.
+ * The todo hierarchy is held as direct references to the parent and child
+ * todo objects, the ids are only used as identity, and are not resolved
+ * through the store when walking the tree.
+ * Each todo keeps its children in an array of its own, leaves share a single
+ * empty one, and the child lists handed out are views over that array.
  * </p>
  * <p>
  * The todo object's values always hold the following properties:
@@ -32,6 +42,13 @@ import java.util.*;
  *     <li>if the todo's parent is completed, so is the todo</li>
  * </ul>
  * </p>
+ * <p>
+ * Each todo also keeps aggregates of its subtree: its size, the number of completed
+ * todos in it, the number of open children, and the earliest due instant of the open
+ * todos in it.
+ * These are updated along the path to the root whenever the hierarchy, the completion
+ * status or the due date of a todo changes, so reading them is O(1).
+ * </p>
  *
  * @see TodoStore
  */
@@ -81,14 +98,14 @@ public class Todo implements Serializable {
         this.name = name;
         this.description = desc;
         this.completed = completed;
+        this.completedInSubtree = completed ? 1 : 0;
         setDueDate(dueDate);
         setDueTime(dueTime);
-        this.parentId = parentId;
-        if (parentId != null) {
-            var parent = store.findById(parentId);
-            parent.addChild(this);
-        }
+        var parentTodo = parentId == null ? null : store.findById(parentId);
         store.add(this);
+        if (parentTodo != null) {
+            parentTodo.addChild(this);
+        }
     }
 
     /**
@@ -141,6 +158,30 @@ public class Todo implements Serializable {
      * @return The todo's description
      */
     public @NotNull String getDescription() {
+        return description.toString();
+    }
+
+    /**
+     * Returns the description of the todo object, as a read-only view, without copying it.
+     * The returned sequence reflects later changes to the description.
+     * The description is moved into a {@link TodoText} at the first call, if it has not
+     * been edited yet.
+     *
+     * @return The todo's description
+     * @see TodoText
+     */
+    public @NotNull CharSequence getDescriptionText() {
+        return descriptionText();
+    }
+
+    /**
+     * Returns the description of the todo object as it is currently stored, without
+     * moving it into a {@link TodoText}.
+     * The returned sequence is only valid until the description is changed.
+     *
+     * @return The todo's description
+     */
+    @NotNull CharSequence getDescriptionSequence() {
         return description;
     }
 
@@ -175,6 +216,62 @@ public class Todo implements Serializable {
         return dueTime;
     }
 
+    /**
+     * Returns the instant the todo is due at, combining its due date and due time
+     * in the system time zone.
+     * If the todo has a due date, but no due time, it is due at the end of its due day.
+     * If the todo does not have a due date, the function returns {@literal null}.
+     *
+     * @return The due instant, if the todo has a due date
+     */
+    public @Nullable Instant getDueInstant() {
+        if (dueDate == null) return null;
+
+        var zone = ZoneId.systemDefault();
+        var day = Instant.ofEpochMilli(dueDate.getTime()).atZone(zone).toLocalDate();
+        var time = dueTime == null ? LocalTime.MAX : dueTime;
+        return day.atTime(time).atZone(zone).toInstant();
+    }
+
+    /**
+     * Returns the number of todos in the subtree of this todo, including itself.
+     *
+     * @return The size of the subtree
+     */
+    public int getSubtreeSize() {
+        return subtreeSize;
+    }
+
+    /**
+     * Returns the number of completed todos in the subtree of this todo, including itself.
+     *
+     * @return The number of completed todos in the subtree
+     */
+    public int getCompletedInSubtree() {
+        return completedInSubtree;
+    }
+
+    /**
+     * Returns the number of direct children of this todo which are not completed.
+     *
+     * @return The number of open children
+     */
+    public int getOpenChildCount() {
+        return openChildren;
+    }
+
+    /**
+     * Returns the earliest due instant among the todos in the subtree of this todo,
+     * including itself, which are not completed.
+     * If no open todo in the subtree has a due date, the function returns {@literal null}.
+     *
+     * @return The earliest open due instant, if it exists
+     * @see #getDueInstant()
+     */
+    public @Nullable Instant getEarliestOpenDue() {
+        return earliestOpenDue;
+    }
+
     /**
      * Returns the parent of the todo object, if it exists.
      * If the todo object does not have an associated parent,
@@ -183,8 +280,7 @@ public class Todo implements Serializable {
      * @return The parent todo object, if it exists
      */
     public @Nullable Todo getParent() {
-        if (parentId == null) return null;
-        return store.findById(parentId);
+        return parent;
     }
 
     /**
@@ -195,16 +291,49 @@ public class Todo implements Serializable {
      * @return The parent's id, if it exists
      */
     public @Nullable UUID getParentId() {
-        return parentId;
+        if (parent == null) return null;
+        return parent.id;
+    }
+
+    /**
+     * Checks whether this todo is a descendant of another, that is, the other todo is
+     * its parent, or an ancestor of its parent.
+     * For todos of the same store, the check takes O(1) time, using the order labels
+     * maintained by the store.
+     *
+     * @param other The possible ancestor
+     * @return Whether this todo is a descendant of the other todo
+     */
+    public boolean isDescendantOf(@NotNull Todo other) {
+        if (enter == null || other.enter == null || store != other.store) {
+            for (var todo = parent; todo != null; todo = todo.parent) {
+                if (todo == other) return true;
+            }
+            return false;
+        }
+        return other.enter.label() < enter.label() && exit.label() < other.exit.label();
     }
 
     /**
      * Returns the list of the todo's children's identifiers.
+     * The returned list is a read-only view, which reflects later changes to
+     * the todo's children.
      *
      * @return A list of GUIDs, representing the todos children
      */
     public @NotNull List<UUID> getChildren() {
-        return children;
+        return new ChildIds();
+    }
+
+    /**
+     * Returns the list of the todo's children.
+     * The returned list is a read-only view, which reflects later changes to
+     * the todo's children.
+     *
+     * @return A list of the todo objects, that are the todo's children
+     */
+    public @NotNull List<Todo> getChildTodos() {
+        return new ChildTodos();
     }
 
     /**
@@ -213,7 +342,11 @@ public class Todo implements Serializable {
      * @param name The new name
      */
     public void setName(@NotNull String name) {
+        if (this.name.equals(name)) return;
+        var previous = this.name;
+        store.recordUndo(this, () -> this.name = previous);
         this.name = name;
+        store.onFieldChanged(this, TodoField.NAME);
     }
 
     /**
@@ -222,7 +355,97 @@ public class Todo implements Serializable {
      * @param description The new description
      */
     public void setDescription(@NotNull String description) {
-        this.description = description;
+        if (description.contentEquals(this.description)) return;
+        var previous = this.description.toString();
+        store.recordUndo(this, () -> replaceDescription(previous));
+        replaceDescription(description);
+        store.onFieldChanged(this, TodoField.DESCRIPTION);
+    }
+
+    /**
+     * Replaces a range of the description of the todo object, without copying the rest
+     * of the description.
+     * The description is moved into a {@link TodoText} at its first edit.
+     *
+     * @param offset  The start of the replaced range
+     * @param removed The length of the replaced range
+     * @param text    The text to insert in place of the range
+     * @throws IndexOutOfBoundsException If the range is not inside the description
+     */
+    public void editDescription(int offset, int removed, @NotNull CharSequence text) {
+        Objects.checkFromIndexSize(offset, removed, description.length());
+        if (removed == 0 && text.length() == 0) return;
+        var edited = descriptionText();
+        var previous = edited.subSequence(offset, offset + removed).toString();
+        var inserted = text.toString();
+        store.recordUndo(this, () -> edited.replace(offset, inserted.length(), previous));
+        edited.replace(offset, removed, inserted);
+        store.onFieldChanged(this, TodoField.DESCRIPTION);
+    }
+
+    /**
+     * Returns the description as a {@link TodoText}, moving it into one if it is still
+     * a string.
+     * Once moved, the description stays in the same text object.
+     *
+     * @return The text of the description
+     */
+    private TodoText descriptionText() {
+        if (!(description instanceof TodoText)) description = new TodoText(description.toString());
+        return (TodoText) description;
+    }
+
+    /**
+     * Replaces the whole description, keeping its text object if it has one, so views
+     * returned by {@link #getDescriptionText()} follow the change.
+     *
+     * @param text The new description
+     */
+    private void replaceDescription(String text) {
+        if (description instanceof TodoText edited) {
+            edited.set(text);
+        } else {
+            description = text;
+        }
+    }
+
+    /**
+     * Returns whether the todo can be completed, that is, all its children are completed.
+     * Takes O(1) time.
+     *
+     * @return Whether completing the todo would keep the invariants
+     */
+    public boolean canComplete() {
+        return openChildren == 0;
+    }
+
+    /**
+     * Returns whether the todo can be reopened, that is, it is a top-level todo, or its
+     * parent is not completed.
+     * Takes O(1) time.
+     *
+     * @return Whether reopening the todo would keep the invariants
+     */
+    public boolean canReopen() {
+        return parent == null || !parent.completed;
+    }
+
+    /**
+     * Checks whether the completion status of the todo can be set to the given value,
+     * without throwing.
+     *
+     * @param completedParam The completion status to check
+     * @return The result of the check
+     * @see #setCompleted(boolean)
+     */
+    public @NotNull TodoValidation checkCompleted(boolean completedParam) {
+        if (completedParam && !canComplete()) {
+            return TodoValidation.fail(this, "Children's completeness is not appropriate");
+        }
+        if (!completedParam && !canReopen()) {
+            return TodoValidation.fail(this, "Parent's completeness is not appropriate");
+        }
+        return TodoValidation.ok();
     }
 
     /**
@@ -235,13 +458,96 @@ public class Todo implements Serializable {
      * @throws BadTodoOperation If a class invariant would be broken by setting the provided value
      */
     public void setCompleted(boolean completedParam) throws BadTodoOperation {
-        if (completedParam && children.stream().map(store::findById).anyMatch(todo -> !todo.completed)) {
-            throw new BadTodoOperation(this, "Children's completeness is not appropriate");
+        require(checkCompleted(completedParam));
+        if (this.completed == completedParam) return;
+        var previous = this.completed;
+        store.recordUndo(this, () -> applyCompleted(previous));
+        applyCompleted(completedParam);
+    }
+
+    /**
+     * Sets the completion status of the todo object without checking the invariants, and
+     * updates the rollups of its ancestors.
+     *
+     * @param completedParam The new completion status
+     */
+    private void applyCompleted(boolean completedParam) {
+        if (this.completed == completedParam) return;
+        this.completed = completedParam;
+        var delta = completedParam ? 1 : -1;
+        if (parent != null) parent.openChildren -= delta;
+        adjustRollups(0, delta);
+        refreshEarliestOpenDue();
+        store.onCompletedToggled(this);
+    }
+
+    /**
+     * Completes this todo and all todos in its subtree, children before their parents.
+     * Subtrees which are already completed are skipped, and every other todo is visited
+     * once; the rollups of the ancestors are updated once, at the end.
+     * Used by {@link TodoStore#completeBranch(UUID)}.
+     *
+     * @return The todos whose completion status changed
+     */
+    List<Todo> completeSubtree() {
+        var wasCompleted = completed;
+        var gained = subtreeSize - completedInSubtree;
+
+        var visited = new ArrayList<Todo>();
+        var stack = new ArrayDeque<Todo>();
+        stack.push(this);
+        while (!stack.isEmpty()) {
+            var todo = stack.pop();
+            if (todo.completedInSubtree == todo.subtreeSize) continue;
+            visited.add(todo);
+            for (int i = 0; i < todo.childCount; ++i) {
+                stack.push(todo.children[i]);
+            }
         }
-        if (!completedParam && parentId != null && getParent().completed) {
-            throw new BadTodoOperation(this, "Parent's completeness is not appropriate");
+
+        var changed = new ArrayList<Todo>();
+        for (int i = visited.size() - 1; i >= 0; --i) {
+            var todo = visited.get(i);
+            if (!todo.completed) changed.add(todo);
+            todo.completed = true;
+            todo.completedInSubtree = todo.subtreeSize;
+            todo.openChildren = 0;
+            todo.earliestOpenDue = null;
         }
-        this.completed = completedParam;
+
+        if (parent != null && gained > 0) {
+            if (!wasCompleted) --parent.openChildren;
+            parent.adjustRollups(0, gained);
+            parent.refreshEarliestOpenDue();
+        }
+        store.recordUndo(this, () -> changed.forEach(todo -> todo.applyCompleted(false)));
+        return changed;
+    }
+
+    /**
+     * Reopens this todo and all its completed ancestors, walking the path to the root once.
+     * Used by {@link TodoStore#reopenPath(UUID)}.
+     *
+     * @return The todos whose completion status changed
+     */
+    List<Todo> reopenPath() {
+        var changed = new ArrayList<Todo>();
+        for (var todo = this; todo != null; todo = todo.parent) {
+            if (todo.completed) {
+                todo.completed = false;
+                changed.add(todo);
+                if (todo.parent != null) ++todo.parent.openChildren;
+            }
+            todo.completedInSubtree -= changed.size();
+
+            var earliest = todo.completed ? null : todo.getDueInstant();
+            for (int i = 0; i < todo.childCount; ++i) {
+                earliest = earlier(earliest, todo.children[i].earliestOpenDue);
+            }
+            todo.earliestOpenDue = earliest;
+        }
+        store.recordUndo(this, () -> changed.forEach(todo -> todo.applyCompleted(true)));
+        return changed;
     }
 
     /**
@@ -264,7 +570,7 @@ public class Todo implements Serializable {
      * @throws ParseException   The provided string is not of the correct format.
      */
     public void setDueDate(@Nullable String dueDateStr) throws BadTodoOperation, ParseException {
-        validateDueDateNullity(dueDateStr == null);
+        require(checkDueDateNullity(dueDateStr == null));
         if (dueDateStr == null) {
             setDueDate((Date) null);
             return;
@@ -284,21 +590,38 @@ public class Todo implements Serializable {
      * @throws BadTodoOperation If a class invariant would be broken by setting the given value.
      */
     public void setDueDate(@Nullable Date dueDate) throws BadTodoOperation {
-        validateDueDateNullity(dueDate == null);
+        require(checkDueDateNullity(dueDate == null));
+        if (Objects.equals(this.dueDate, dueDate)) return;
+        var previous = this.dueDate;
+        store.recordUndo(this, () -> {
+            this.dueDate = previous;
+            refreshEarliestOpenDue();
+        });
         this.dueDate = dueDate;
+        refreshEarliestOpenDue();
+        store.onFieldChanged(this, TodoField.DUE_DATE);
+    }
+
+    /**
+     * Returns whether the due date of the todo can be removed, that is, it has no due time.
+     *
+     * @return Whether removing the due date would keep the invariants
+     */
+    public boolean canClearDueDate() {
+        return dueTime == null;
     }
 
     /**
      * Verifies if setting the date value to a null/not null interface would
      * break a class invariant.
-     * If it would, it throws {@link BadTodoOperation} exception.
      *
      * @param dateNull Whether the date is to be set to null or a valid value
-     * @throws BadTodoOperation If the setting would break an invariant
+     * @return The result of the check
      */
-    private void validateDueDateNullity(boolean dateNull) throws BadTodoOperation {
-        if (dateNull && dueTime != null)
-            throw new BadTodoOperation(this, "Due date can not be unset if due time is set");
+    private TodoValidation checkDueDateNullity(boolean dateNull) {
+        if (dateNull && !canClearDueDate())
+            return TodoValidation.fail(this, "Due date can not be unset if due time is set");
+        return TodoValidation.ok();
     }
 
     /**
@@ -321,7 +644,7 @@ public class Todo implements Serializable {
      * @throws ParseException   The provided string is not of the correct format.
      */
     public void setDueTime(String dueTimeStr) throws BadTodoOperation, ParseException {
-        validateDueTimeNullity(dueTimeStr == null);
+        require(checkDueTimeNullity(dueTimeStr == null));
         var fmt = DateTimeFormatter.ISO_TIME;
         try {
             if (dueTimeStr == null) {
@@ -347,34 +670,148 @@ public class Todo implements Serializable {
      * @throws BadTodoOperation If a class invariant would be broken by setting the given value.
      */
     public void setDueTime(@Nullable LocalTime dueTime) throws BadTodoOperation {
-        validateDueTimeNullity(dueTime == null);
+        require(checkDueTimeNullity(dueTime == null));
+        if (Objects.equals(this.dueTime, dueTime)) return;
+        var previous = this.dueTime;
+        store.recordUndo(this, () -> {
+            this.dueTime = previous;
+            refreshEarliestOpenDue();
+        });
         this.dueTime = dueTime;
+        refreshEarliestOpenDue();
+        store.onFieldChanged(this, TodoField.DUE_TIME);
+    }
+
+    /**
+     * Returns whether a due time can be set on the todo, that is, it has a due date.
+     *
+     * @return Whether setting a due time would keep the invariants
+     */
+    public boolean canSetDueTime() {
+        return dueDate != null;
     }
 
     /**
      * Verifies if setting the time value to a null/not null interface would
      * break a class invariant.
-     * If it would, it throws {@link BadTodoOperation} exception.
      *
      * @param timeNull Whether the time is to be set to null or a valid value
-     * @throws BadTodoOperation If the setting would break an invariant
+     * @return The result of the check
+     */
+    private TodoValidation checkDueTimeNullity(boolean timeNull) {
+        if (!timeNull && !canSetDueTime())
+            return TodoValidation.fail(this, "Due time can only be set after a due date has been set");
+        return TodoValidation.ok();
+    }
+
+    /**
+     * Checks whether the todo currently satisfies all its invariants.
+     * Used when committing a transaction, in which the checks of the setters are deferred.
+     *
+     * @return The result of the check
+     */
+    TodoValidation checkInvariants() {
+        var check = checkCompleted(completed);
+        if (!check.isValid()) return check;
+        return checkDueTimeNullity(dueTime == null);
+    }
+
+    /**
+     * Throws if a check failed, unless a transaction is open on the store, in which case
+     * the invariants are checked when it is committed.
+     *
+     * @param check The result of the check
+     * @throws BadTodoOperation If the check failed outside a transaction
      */
-    private void validateDueTimeNullity(boolean timeNull) throws BadTodoOperation {
-        if (!timeNull && dueDate == null)
-            throw new BadTodoOperation(this, "Due time can only be set after a due date has been set");
+    private void require(TodoValidation check) throws BadTodoOperation {
+        if (!store.isInTransaction()) check.orThrow();
     }
 
     /**
      * Ads a child sub-todo to the current todo object.
      * The child object's parent is set as the current object.
+     * If the child already had a parent, it is removed from the children of that.
      *
      * @param child The todo object to be added as a child.
-     * @throws IllegalArgumentException If the todo object would be its own child.
+     * @throws IllegalArgumentException If the todo object would be its own child, or the child
+     *                                  is an ancestor of the todo object.
      */
     public void addChild(@NotNull Todo child) throws IllegalArgumentException {
         if (this.equals(child)) throw new IllegalArgumentException("Todo cannot be parent of itself");
-        child.setParent(id);
-        children.add(child.id);
+        if (isDescendantOf(child)) throw new IllegalArgumentException("Todo cannot be parent of its ancestor");
+        var oldParent = child.parent;
+        var oldIndex = oldParent == null ? -1 : oldParent.indexOfChild(child);
+        if (oldParent != null) oldParent.removeChild(child);
+        store.recordUndo(child, () -> child.moveTo(oldParent, oldIndex));
+        attachChild(childCount, child);
+        store.onChildAdded(this, child, oldParent, oldIndex);
+    }
+
+    /**
+     * Moves this todo, along with its subtree, to a new place in the hierarchy.
+     * Only the rollups of the ancestors of the old and the new place are updated.
+     * The move is validated by {@link TodoStore#move(UUID, UUID, int)}.
+     *
+     * @param newParent The new parent, or null to make the todo a root
+     * @param index     The position among the children of the new parent
+     */
+    void moveTo(@Nullable Todo newParent, int index) {
+        var oldParent = parent;
+        var oldIndex = -1;
+        if (oldParent != null) {
+            oldIndex = oldParent.indexOfChild(this);
+            oldParent.removeChild(this);
+            parent = null;
+        }
+        var previousIndex = oldIndex;
+        store.recordUndo(this, () -> moveTo(oldParent, previousIndex));
+        if (newParent != null) newParent.attachChild(index, this);
+        store.onMoved(this, oldParent, oldIndex, newParent == null ? -1 : index);
+    }
+
+    /**
+     * Links a child into the children of this todo at the given position, and updates
+     * the rollups of this todo and its ancestors.
+     *
+     * @param index The position to insert the child at
+     * @param child The child to insert
+     */
+    private void attachChild(int index, Todo child) {
+        child.setParent(this);
+        insertChild(index, child);
+        if (!child.completed) ++openChildren;
+        adjustRollups(child.subtreeSize, child.completedInSubtree);
+        propagateEarlierOpenDue(child.earliestOpenDue);
+    }
+
+    /**
+     * Inserts a child into the children array, growing it if it is full.
+     * The array grows by half its size, so appending children takes amortized O(1) time.
+     *
+     * @param index The position to insert the child at
+     * @param child The child to insert
+     */
+    private void insertChild(int index, Todo child) {
+        Objects.checkIndex(index, childCount + 1);
+        if (childCount == children.length) {
+            children = Arrays.copyOf(children, Math.max(MIN_CHILDREN, childCount + (childCount >> 1)));
+        }
+        System.arraycopy(children, index, children, index + 1, childCount - index);
+        children[index] = child;
+        ++childCount;
+    }
+
+    /**
+     * Returns the position of a child among the children of this todo.
+     *
+     * @param child The child to look for
+     * @return The position of the child, or -1 if it is not a child of this todo
+     */
+    private int indexOfChild(Todo child) {
+        for (int i = 0; i < childCount; ++i) {
+            if (children[i] == child) return i;
+        }
+        return -1;
     }
 
     /**
@@ -382,7 +819,8 @@ public class Todo implements Serializable {
      * The child object's parent is set as the current object.
      *
      * @param childId The todo object to be added as a child.
-     * @throws IllegalArgumentException If the todo object would be its own child.
+     * @throws IllegalArgumentException If the todo object would be its own child, or the child
+     *                                  is an ancestor of the todo object.
      */
     public void addChild(@NotNull UUID childId) throws IllegalArgumentException {
         var child = store.findById(childId);
@@ -390,12 +828,12 @@ public class Todo implements Serializable {
     }
 
     /**
-     * Sets the todo objects parent, referenced by its id.
+     * Sets the todo objects parent.
      *
-     * @param parentId The new parent's id
+     * @param parent The new parent
      */
-    private void setParent(UUID parentId) {
-        this.parentId = parentId;
+    private void setParent(Todo parent) {
+        this.parent = parent;
     }
 
     /**
@@ -404,23 +842,112 @@ public class Todo implements Serializable {
      * @throws BadTodoOperation If destroying this todo would lead to an orphaned todos.
      */
     public void destroy() throws BadTodoOperation {
-        if (!children.isEmpty()) throw new BadTodoOperation(this, "cannot destroy todo with children");
+        if (childCount > 0) throw new BadTodoOperation(this, "cannot destroy todo with children");
+        var index = parent == null ? -1 : parent.indexOfChild(this);
         store.unlink(this);
 
-        var parent = getParent();
         if (parent != null) {
-            parent.removeChild(id);
+            parent.removeChild(this);
         }
+        var oldParent = parent;
+        store.recordUndo(this, () -> restore(oldParent, index, List.of(this)));
+        store.onRemoved(this, parent, index);
     }
 
     /**
-     * Removes the child with {@code id} from the current todos children.
+     * Removes the given todo from the current todos children.
      * If it's not a child of this todo, nothing is done.
      *
-     * @param id The child-to-remove's id
+     * @param child The child-to-remove
+     */
+    private void removeChild(Todo child) {
+        var index = indexOfChild(child);
+        if (index < 0) return;
+        System.arraycopy(children, index + 1, children, index, childCount - index - 1);
+        children[--childCount] = null;
+        if (childCount == 0) children = NO_CHILDREN;
+        if (!child.completed) --openChildren;
+        adjustRollups(-child.subtreeSize, -child.completedInSubtree);
+        if (child.earliestOpenDue != null && child.earliestOpenDue.equals(earliestOpenDue)) {
+            refreshEarliestOpenDue();
+        }
+    }
+
+    /**
+     * Adds the given deltas to the subtree counts of this todo and all its ancestors.
+     *
+     * @param size      The change in the size of the subtree
+     * @param completed The change in the number of completed todos in the subtree
+     */
+    private void adjustRollups(int size, int completed) {
+        for (var todo = this; todo != null; todo = todo.parent) {
+            todo.subtreeSize += size;
+            todo.completedInSubtree += completed;
+        }
+    }
+
+    /**
+     * Recalculates the earliest open due instant of this todo from its own due instant and
+     * those of its children, then does the same for the ancestors, as long as the value
+     * changes.
      */
-    private void removeChild(UUID id) {
-        children.remove(id);
+    private void refreshEarliestOpenDue() {
+        for (var todo = this; todo != null; todo = todo.parent) {
+            var earliest = todo.completed ? null : todo.getDueInstant();
+            for (int i = 0; i < todo.childCount; ++i) {
+                earliest = earlier(earliest, todo.children[i].earliestOpenDue);
+            }
+            if (Objects.equals(earliest, todo.earliestOpenDue)) return;
+            todo.earliestOpenDue = earliest;
+        }
+    }
+
+    /**
+     * Lowers the earliest open due instant of this todo and its ancestors to the given
+     * instant, where it is earlier than the current value.
+     *
+     * @param due The due instant of an open todo added to the subtree
+     */
+    private void propagateEarlierOpenDue(@Nullable Instant due) {
+        if (due == null) return;
+        for (var todo = this; todo != null; todo = todo.parent) {
+            if (todo.earliestOpenDue != null && !due.isBefore(todo.earliestOpenDue)) return;
+            todo.earliestOpenDue = due;
+        }
+    }
+
+    /**
+     * Returns the earlier of two instants, where null counts as later than any instant.
+     *
+     * @param a The first instant
+     * @param b The second instant
+     * @return The earlier instant
+     */
+    private static @Nullable Instant earlier(@Nullable Instant a, @Nullable Instant b) {
+        if (a == null) return b;
+        if (b == null) return a;
+        return a.isBefore(b) ? a : b;
+    }
+
+    /**
+     * Creates a copy of this todo in another store, without its parent and children.
+     *
+     * @param other The store to create the copy in
+     * @return The copy of the todo
+     */
+    Todo copyInto(@NotNull TodoStore other) {
+        try {
+            return new Todo(other,
+                    id,
+                    name,
+                    description.toString(),
+                    completed,
+                    dueDate == null ? null : new Date(dueDate.getTime()),
+                    dueTime,
+                    null);
+        } catch (BadTodoOperation ex) {
+            throw new IllegalStateException("todo invariants were broken", ex);
+        }
     }
 
     /**
@@ -435,29 +962,186 @@ public class Todo implements Serializable {
 
     /**
      * Destroy this todo, and all its children along with it.
+     * The todo is removed from the children of its parent.
+     * The subtree is collected without recursion, so deep branches can be destroyed
+     * as well, and is removed from the store in one pass, in time linear in its size.
      */
     public void destroyTree() {
-        for (var child : children) {
-            store.removeBranchAtId(child);
+        var branch = new ArrayList<Todo>(subtreeSize);
+        var stack = new ArrayDeque<Todo>();
+        stack.push(this);
+        while (!stack.isEmpty()) {
+            var todo = stack.pop();
+            branch.add(todo);
+            for (int i = 0; i < todo.childCount; ++i) {
+                stack.push(todo.children[i]);
+            }
         }
-        store.unlink(this);
+
+        var index = parent == null ? -1 : parent.indexOfChild(this);
+        store.unlinkBranch(this, branch);
+        if (parent != null) {
+            parent.removeChild(this);
+        }
+        var oldParent = parent;
+        store.recordUndo(this, () -> restore(oldParent, index, branch));
+        store.onBranchRemoved(this, parent, index);
     }
 
+    /**
+     * Puts a destroyed branch back into the store, at its former place.
+     * Used to roll back the destruction in a transaction.
+     *
+     * @param oldParent The former parent of the branch's root
+     * @param index     The former position of the branch's root
+     * @param branch    All todos of the branch, including its root
+     */
+    private void restore(@Nullable Todo oldParent, int index, List<Todo> branch) {
+        parent = null;
+        store.relinkBranch(this, branch);
+        if (oldParent != null) moveTo(oldParent, index);
+    }
+
+    /**
+     * A read-only view of the children of the todo.
+     * Views are created on demand, so todos do not keep one.
+     */
+    /**
+     * Writes the todo to a stream.
+     * The links to the parent and the children are not written as objects, as that
+     * would recurse once per level of the hierarchy; the ids of the children are written
+     * instead, and the links are restored by {@link #relinkChildren(Map)}.
+     *
+     * @param out The stream to write to
+     * @throws IOException If writing failed
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        var ids = new UUID[childCount];
+        for (int i = 0; i < childCount; ++i) {
+            ids[i] = children[i].id;
+        }
+        out.writeObject(ids);
+    }
+
+    /**
+     * Reads the todo from a stream.
+     * The todo has no parent or children until {@link #relinkChildren(Map)} is called.
+     *
+     * @param in The stream to read from
+     * @throws IOException            If reading failed
+     * @throws ClassNotFoundException If a class of the serialized objects is not found
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        serializedChildren = (UUID[]) in.readObject();
+        children = NO_CHILDREN;
+    }
+
+    /**
+     * Restores the links to the children of a deserialized todo, and the links of the
+     * children to it.
+     * Called by the store for each of its todos, once all of them have been read.
+     *
+     * @param todos The todos of the store, by their ids
+     */
+    void relinkChildren(Map<UUID, Todo> todos) {
+        var ids = serializedChildren;
+        serializedChildren = null;
+        if (ids == null || ids.length == 0) return;
+
+        children = new Todo[ids.length];
+        for (int i = 0; i < ids.length; ++i) {
+            var child = todos.get(ids[i]);
+            children[i] = child;
+            child.parent = this;
+        }
+        childCount = ids.length;
+    }
+
+    private class ChildTodos extends AbstractList<Todo> implements RandomAccess {
+        @Override
+        public Todo get(int index) {
+            Objects.checkIndex(index, childCount);
+            return children[index];
+        }
+
+        @Override
+        public int size() {
+            return childCount;
+        }
+    }
+
+    /**
+     * A read-only view of the identifiers of the children of the todo.
+     * Views are created on demand, so todos do not keep one.
+     */
+    private class ChildIds extends AbstractList<UUID> implements RandomAccess {
+        @Override
+        public UUID get(int index) {
+            Objects.checkIndex(index, childCount);
+            return children[index].id;
+        }
+
+        @Override
+        public int size() {
+            return childCount;
+        }
+    }
+
+    private static final Todo[] NO_CHILDREN = new Todo[0];
+    private static final int MIN_CHILDREN = 4;
+
     @NotNull
     private final UUID id;
     @NotNull
     private String name;
+    /**
+     * The description of the todo, a string until it is first edited by
+     * {@link #editDescription(int, int, CharSequence)} or viewed by
+     * {@link #getDescriptionText()}, and the same {@link TodoText} after that.
+     */
     @NotNull
-    private String description;
+    private CharSequence description;
     private boolean completed;
     @Nullable
     private Date dueDate;
     @Nullable
     private LocalTime dueTime;
     @Nullable
-    private UUID parentId;
+    private transient Todo parent;
+    /**
+     * The children of the todo, in their first {@code childCount} slots.
+     * Todos without children share an empty array, so leaves do not allocate any.
+     * Serialized as the ids of the children, see {@link #writeObject(ObjectOutputStream)}.
+     */
     @NotNull
-    private final List<UUID> children = new ArrayList<>();
+    private transient Todo[] children = NO_CHILDREN;
+    private transient int childCount;
+    /**
+     * The ids of the children of a deserialized todo, until its links are restored.
+     */
+    @Nullable
+    private transient UUID[] serializedChildren;
     @NotNull
     private final TodoStore store;
+    private int subtreeSize = 1;
+    private int completedInSubtree;
+    private int openChildren;
+    @Nullable
+    private Instant earliestOpenDue;
+    /**
+     * The key of the todo in the due index of its store, or null if it is not indexed.
+     * Only maintained by {@link TodoDueIndex}.
+     */
+    @Nullable
+    TodoDueIndex.DueKey dueKey;
+    /**
+     * The marks of the todo in the order of its store, or null if it is not in the store.
+     * Only maintained by {@link TodoOrder}, and rebuilt when the store is deserialized.
+     */
+    @Nullable
+    transient TodoOrder.Mark enter;
+    @Nullable
+    transient TodoOrder.Mark exit;
 }
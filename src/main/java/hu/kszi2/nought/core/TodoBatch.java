@@ -0,0 +1,127 @@
+package hu.kszi2.nought.core;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * <p>
+ * A batch of mutations on a store, whose events are delivered together when the batch
+ * is closed, instead of one by one as they happen.
+ * Batches are opened using {@link TodoStore#batch()}, and should be used in a
+ * try-with-resources statement.
+ * Batches can be nested, in which case the events are delivered when the outermost
+ * batch is closed.
+ * </p>
+ * <p>
+ * Before delivery, the events of a batch are coalesced:
+ * <ul>
+ *     <li>repeated changes to the same field of a todo are reported once</li>
+ *     <li>changes to todos created inside the batch are not reported, as the
+ *     listeners see the final state of the todo at its creation event</li>
+ *     <li>completion toggles that flip a todo back to its original status are
+ *     not reported</li>
+ * </ul>
+ * </p>
+ *
+ * @see TodoStore#batch()
+ */
+public class TodoBatch implements AutoCloseable {
+    /**
+     * Opens a batch on the given store.
+     *
+     * @param store The store whose events are batched
+     */
+    TodoBatch(TodoStore store) {
+        this.store = store;
+    }
+
+    /**
+     * Closes the batch.
+     * If this is the outermost batch, the coalesced events are delivered to the
+     * listeners of the store.
+     */
+    @Override
+    public void close() {
+        if (--depth > 0) return;
+        store.endBatch(coalesce());
+    }
+
+    /**
+     * Opens a nested batch.
+     */
+    void nest() {
+        ++depth;
+    }
+
+    /**
+     * Queues an event until the batch is closed.
+     *
+     * @param event The event to queue
+     */
+    void add(TodoEvent event) {
+        events.add(event);
+    }
+
+    /**
+     * Returns the number of events queued in the batch.
+     *
+     * @return The number of queued events
+     */
+    int size() {
+        return events.size();
+    }
+
+    /**
+     * Drops the events queued after the given number of events, as the mutations they
+     * report have been rolled back.
+     *
+     * @param kept The number of events to keep
+     */
+    void discard(int kept) {
+        events.subList(kept, events.size()).clear();
+    }
+
+    /**
+     * Coalesces the events queued in the batch.
+     *
+     * @return The events to deliver, in their original order
+     */
+    private List<TodoEvent> coalesce() {
+        var created = new HashSet<Todo>();
+        var toggles = new HashMap<Todo, Integer>();
+        for (var event : events) {
+            switch (event.getKind()) {
+                case CREATED -> created.add(event.getTodo());
+                case COMPLETED_TOGGLED -> toggles.merge(event.getTodo(), 1, Integer::sum);
+                default -> {
+                }
+            }
+        }
+
+        var result = new ArrayList<TodoEvent>(events.size());
+        Set<List<Object>> changed = new HashSet<>();
+        Set<Todo> toggled = new HashSet<>();
+        for (var event : events) {
+            var todo = event.getTodo();
+            switch (event.getKind()) {
+                case FIELD_CHANGED -> {
+                    if (created.contains(todo) || !changed.add(List.of(todo, event.getField()))) continue;
+                }
+                case COMPLETED_TOGGLED -> {
+                    if (created.contains(todo) || toggles.get(todo) % 2 == 0 || !toggled.add(todo)) continue;
+                }
+                default -> {
+                }
+            }
+            result.add(event);
+        }
+        return result;
+    }
+
+    private int depth = 1;
+    private final TodoStore store;
+    private final List<TodoEvent> events = new ArrayList<>();
+}
@@ -47,13 +47,53 @@ public class TodoBuilder implements Serializable {
      */
     @Contract("->new")
     public Todo build() throws IllegalArgumentException, BadTodoOperation {
+        var todo = buildTodo();
+        for (var child : children) {
+            todo.addChild(child);
+        }
+        return todo;
+    }
+
+    /**
+     * Constructs the Todo object from the previously provided values, like {@link #build()},
+     * but instead of linking its children immediately, records them in the given linker.
+     * This way the children do not need to be part of the object store when the todo is built,
+     * only when {@link TodoLinker#link()} is called.
+     *
+     * @param linker The linker to record the children of the todo in
+     * @return The new todo object.
+     * @throws IllegalArgumentException If not all the required methods were called on this object
+     *                                  before this method.
+     * @throws BadTodoOperation         If a todo object were to be constructed using the provided
+     *                                  arguments, it would violate the {@link Todo} class'
+     *                                  invariants.
+     * @see TodoLinker
+     */
+    @Contract("_->new")
+    public Todo build(TodoLinker linker) throws IllegalArgumentException, BadTodoOperation {
+        var todo = buildTodo();
+        for (var child : children) {
+            linker.defer(todo, child);
+        }
+        return todo;
+    }
+
+    /**
+     * Constructs the Todo object from the previously provided values, without any children.
+     *
+     * @return The new todo object.
+     * @throws IllegalArgumentException If not all the required methods were called on this object
+     *                                  before this method.
+     * @throws BadTodoOperation         If the todo object would violate its invariants.
+     */
+    private Todo buildTodo() throws IllegalArgumentException, BadTodoOperation {
         if (id == null
                 || name == null
                 || desc == null) {
             throw new IllegalArgumentException("required setters have not been called");
         }
 
-        var todo = new Todo(store,
+        return new Todo(store,
                 id,
                 name,
                 desc,
@@ -61,10 +101,6 @@ public class TodoBuilder implements Serializable {
                 dueDate,
                 dueTime,
                 null);
-        for (var child : children) {
-            todo.addChild(child);
-        }
-        return todo;
     }
 
     /**
@@ -0,0 +1,159 @@
+package hu.kszi2.nought.core;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.Serializable;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.UUID;
+
+/**
+ * <p>
+ * A secondary index of the todos of a store, sorted by their due instant.
+ * The index is kept up to date by the store, whenever a todo is added or removed,
+ * or its due date, due time or completion status changes.
+ * </p>
+ * <p>
+ * Two sorted maps are kept: one of all todos having a due date, and one of those
+ * which are not completed.
+ * Both are keyed by the due instant of the todo, and its id to break ties, so range
+ * queries take O(log n + k) time, where k is the number of todos returned.
+ * </p>
+ *
+ * @see Todo#getDueInstant()
+ */
+class TodoDueIndex implements Serializable {
+    /**
+     * Adds a todo to the index, if it has a due date.
+     *
+     * @param todo The todo to add
+     */
+    void add(@NotNull Todo todo) {
+        var instant = todo.getDueInstant();
+        if (instant == null) return;
+
+        var key = new DueKey(toMillis(instant), todo.getId());
+        todo.dueKey = key;
+        due.put(key, todo);
+        if (!todo.isCompleted()) open.put(key, todo);
+    }
+
+    /**
+     * Removes a todo from the index.
+     *
+     * @param todo The todo to remove
+     */
+    void remove(@NotNull Todo todo) {
+        var key = todo.dueKey;
+        if (key == null) return;
+
+        todo.dueKey = null;
+        due.remove(key);
+        open.remove(key);
+    }
+
+    /**
+     * Updates the position of a todo in the index, after its due instant or
+     * completion status has changed.
+     *
+     * @param todo The changed todo
+     */
+    void update(@NotNull Todo todo) {
+        remove(todo);
+        add(todo);
+    }
+
+    /**
+     * Returns the todos due in the given time range, in the order of their due instant.
+     *
+     * @param from The start of the range, inclusive
+     * @param to   The end of the range, exclusive
+     * @return The todos due in the range
+     */
+    List<Todo> between(@NotNull Instant from, @NotNull Instant to) {
+        if (!from.isBefore(to)) return new ArrayList<>();
+        return new ArrayList<>(due.subMap(lowest(from), true, lowest(to), false).values());
+    }
+
+    /**
+     * Returns the todos which are not completed, and are due before the given instant,
+     * in the order of their due instant.
+     *
+     * @param now The current instant
+     * @return The overdue todos
+     */
+    List<Todo> overdue(@NotNull Instant now) {
+        return new ArrayList<>(open.headMap(lowest(now), false).values());
+    }
+
+    /**
+     * Returns the smallest key at the given instant, which is before all keys of
+     * todos due at that instant.
+     *
+     * @param instant The instant
+     * @return The smallest key
+     */
+    private static DueKey lowest(Instant instant) {
+        return new DueKey(toMillis(instant), MIN_ID);
+    }
+
+    /**
+     * Converts an instant to milliseconds since the epoch, saturating instants
+     * which cannot be represented, like {@link Instant#MIN}.
+     *
+     * @param instant The instant to convert
+     * @return The milliseconds since the epoch
+     */
+    private static long toMillis(Instant instant) {
+        try {
+            return instant.toEpochMilli();
+        } catch (ArithmeticException ex) {
+            return instant.isBefore(Instant.EPOCH) ? Long.MIN_VALUE : Long.MAX_VALUE;
+        }
+    }
+
+    /**
+     * The sort key of a todo in the index.
+     * Todos are sorted by their due instant, then by their id.
+     */
+    static final class DueKey implements Comparable<DueKey>, Serializable {
+        /**
+         * Constructs a key.
+         *
+         * @param millis The due instant in milliseconds since the epoch
+         * @param id     The id of the todo
+         */
+        DueKey(long millis, UUID id) {
+            this.millis = millis;
+            this.id = id;
+        }
+
+        @Override
+        public int compareTo(@NotNull DueKey o) {
+            var cmp = Long.compare(millis, o.millis);
+            if (cmp != 0) return cmp;
+            return id.compareTo(o.id);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof DueKey key && compareTo(key) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(millis) * 31 + id.hashCode();
+        }
+
+        private final long millis;
+        private final UUID id;
+    }
+
+    private static final UUID MIN_ID = new UUID(Long.MIN_VALUE, Long.MIN_VALUE);
+
+    private final NavigableMap<DueKey, Todo> due = new TreeMap<>();
+    private final NavigableMap<DueKey, Todo> open = new TreeMap<>();
+}
@@ -0,0 +1,23 @@
+package hu.kszi2.nought.core;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A sequence of mutations to be applied to a store as a single transaction, using
+ * {@link TodoStore#batch(TodoEdit)}.
+ *
+ * @see TodoStore#batch(TodoEdit)
+ */
+@FunctionalInterface
+public interface TodoEdit {
+    /**
+     * Applies the mutations to the store.
+     * Invariants are only checked once all mutations have been applied, so the store
+     * may pass through invalid states in between.
+     *
+     * @param store The store to mutate
+     * @throws BadTodoOperation If the edit fails, in which case all its mutations are
+     *                          rolled back
+     */
+    void apply(@NotNull TodoStore store) throws BadTodoOperation;
+}
@@ -0,0 +1,221 @@
+package hu.kszi2.nought.core;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Describes a single mutation of a todo object in a store.
+ * Events are delivered to the {@link TodoStoreListener} objects registered in the store.
+ *
+ * @see TodoStoreListener
+ */
+public class TodoEvent {
+    /**
+     * The kinds of mutations reported by the store.
+     */
+    public enum Kind {
+        /**
+         * A new todo was added to the store.
+         */
+        CREATED,
+        /**
+         * One of the fields of the todo was changed, the changed field is available
+         * through {@link #getField()}.
+         */
+        FIELD_CHANGED,
+        /**
+         * The completion status of the todo was flipped.
+         */
+        COMPLETED_TOGGLED,
+        /**
+         * The todo was added as the last child of its parent, available through
+         * {@link #getParent()} and {@link #getIndex()}.
+         * If the todo had a parent before, it is available through
+         * {@link #getPreviousParent()} and {@link #getPreviousIndex()}.
+         */
+        CHILD_ADDED,
+        /**
+         * The single, childless todo was removed from the store.
+         * Its former parent and position are available through {@link #getParent()} and
+         * {@link #getPreviousIndex()}.
+         */
+        REMOVED,
+        /**
+         * The todo, along with all its children, was removed from the store.
+         * Its former parent and position are available through {@link #getParent()} and
+         * {@link #getPreviousIndex()}.
+         */
+        BRANCH_REMOVED,
+        /**
+         * The todo, along with all its children, was moved to a new place in the hierarchy.
+         * Its new parent and position are available through {@link #getParent()} and
+         * {@link #getIndex()}, the old ones through {@link #getPreviousParent()} and
+         * {@link #getPreviousIndex()}.
+         */
+        MOVED,
+        /**
+         * The todo, along with all todos in its subtree, was completed at once.
+         */
+        BRANCH_COMPLETED,
+        /**
+         * The todo, along with all its ancestors, was reopened at once.
+         */
+        PATH_REOPENED
+    }
+
+    /**
+     * Constructs an event object.
+     *
+     * @param kind   The kind of the mutation
+     * @param todo   The todo the mutation happened to
+     * @param parent The parent involved in the mutation, if any
+     * @param field  The changed field, for {@link Kind#FIELD_CHANGED} events
+     */
+    TodoEvent(@NotNull Kind kind, @NotNull Todo todo, @Nullable Todo parent, @Nullable TodoField field) {
+        this(kind, todo, parent, field, null, -1, -1);
+    }
+
+    /**
+     * Constructs an event changing the place of a todo in the hierarchy.
+     *
+     * @param kind           The kind of the mutation
+     * @param todo           The moved todo
+     * @param parent         The new parent of the todo, or the former one for removals
+     * @param index          The new position of the todo among its siblings, or -1
+     * @param previousParent The former parent of the todo, or {@code null} if it was a root
+     * @param previousIndex  The former position of the todo among its siblings, or -1
+     */
+    TodoEvent(@NotNull Kind kind,
+              @NotNull Todo todo,
+              @Nullable Todo parent,
+              int index,
+              @Nullable Todo previousParent,
+              int previousIndex) {
+        this(kind, todo, parent, null, previousParent, index, previousIndex);
+    }
+
+    /**
+     * Constructs an event object with all information.
+     *
+     * @param kind           The kind of the mutation
+     * @param todo           The todo the mutation happened to
+     * @param parent         The parent involved in the mutation, if any
+     * @param field          The changed field, for {@link Kind#FIELD_CHANGED} events
+     * @param previousParent The former parent, for events moving the todo
+     * @param index          The new position, for events moving the todo
+     * @param previousIndex  The former position, for events moving or removing the todo
+     */
+    private TodoEvent(@NotNull Kind kind,
+                      @NotNull Todo todo,
+                      @Nullable Todo parent,
+                      @Nullable TodoField field,
+                      @Nullable Todo previousParent,
+                      int index,
+                      int previousIndex) {
+        this.kind = kind;
+        this.todo = todo;
+        this.parent = parent;
+        this.field = field;
+        this.previousParent = previousParent;
+        this.index = index;
+        this.previousIndex = previousIndex;
+    }
+
+    /**
+     * Returns the kind of the mutation.
+     *
+     * @return The event's kind
+     */
+    public @NotNull Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * Returns the todo the mutation happened to.
+     * For {@link Kind#CHILD_ADDED} events, this is the child.
+     *
+     * @return The mutated todo
+     */
+    public @NotNull Todo getTodo() {
+        return todo;
+    }
+
+    /**
+     * Returns the parent involved in the mutation.
+     * For {@link Kind#CHILD_ADDED} and {@link Kind#MOVED} events this is the new parent
+     * of the todo, for removals this is the parent the todo was removed from, if any.
+     *
+     * @return The parent todo, or {@code null}
+     */
+    public @Nullable Todo getParent() {
+        return parent;
+    }
+
+    /**
+     * Returns the changed field for {@link Kind#FIELD_CHANGED} events.
+     *
+     * @return The changed field, or {@code null} for other kinds of events
+     */
+    public @Nullable TodoField getField() {
+        return field;
+    }
+
+    /**
+     * Returns the former parent of the todo for {@link Kind#MOVED} and
+     * {@link Kind#CHILD_ADDED} events.
+     *
+     * @return The former parent todo, or {@code null} if the todo was a root, or for
+     * other kinds of events
+     */
+    public @Nullable Todo getPreviousParent() {
+        return previousParent;
+    }
+
+    /**
+     * Returns the new position of the todo among the children of its new parent for
+     * {@link Kind#MOVED} and {@link Kind#CHILD_ADDED} events.
+     * Is -1 if the todo became a root.
+     *
+     * @return The new index of the todo, or -1 for other kinds of events
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * Returns the former position of the todo among the children of its former parent
+     * for {@link Kind#MOVED}, {@link Kind#CHILD_ADDED} and removal events.
+     * Is -1 if the todo was a root.
+     *
+     * @return The former index of the todo, or -1 for other kinds of events
+     */
+    public int getPreviousIndex() {
+        return previousIndex;
+    }
+
+    /**
+     * Returns a short textual representation of the event, for debugging.
+     *
+     * @return The event as a string
+     */
+    @Override
+    public String toString() {
+        var str = kind + " " + todo;
+        if (field != null) str += " " + field;
+        if (parent != null) str += " (parent: " + parent + ")";
+        return str;
+    }
+
+    @NotNull
+    private final Kind kind;
+    @NotNull
+    private final Todo todo;
+    @Nullable
+    private final Todo parent;
+    @Nullable
+    private final TodoField field;
+    @Nullable
+    private final Todo previousParent;
+    private final int index;
+    private final int previousIndex;
+}
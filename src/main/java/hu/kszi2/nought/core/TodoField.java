@@ -0,0 +1,28 @@
+package hu.kszi2.nought.core;
+
+/**
+ * The user editable fields of a todo object, reported by
+ * {@link TodoEvent.Kind#FIELD_CHANGED} events.
+ * The completion status has its own event kind, since changing it has implications
+ * on the todo's family.
+ *
+ * @see TodoEvent
+ */
+public enum TodoField {
+    /**
+     * The name of the todo.
+     */
+    NAME,
+    /**
+     * The description of the todo.
+     */
+    DESCRIPTION,
+    /**
+     * The due date of the todo.
+     */
+    DUE_DATE,
+    /**
+     * The due time of the todo.
+     */
+    DUE_TIME
+}
@@ -0,0 +1,86 @@
+package hu.kszi2.nought.core;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * <p>
+ * A pending table of child references that are linked to their parents in one final
+ * pass, instead of when their parent todo is built.
+ * This allows building todos in any order, for example parents before their children,
+ * when reading them from a file.
+ * </p>
+ * <p>
+ * Todos built through {@link TodoBuilder#build(TodoLinker)} record their children in
+ * the linker, which are then resolved in the store by calling {@link #link()}.
+ * The order of the children of each todo is kept.
+ * </p>
+ *
+ * @see TodoBuilder
+ * @see TodoStore#newLinker()
+ */
+public class TodoLinker {
+    /**
+     * Creates a new linker which resolves references in the given store.
+     *
+     * @param store The store to resolve references in
+     * @see TodoStore
+     */
+    TodoLinker(TodoStore store) {
+        this.store = store;
+    }
+
+    /**
+     * Records that the todo with the given id is to be linked as a child of the given
+     * parent todo.
+     *
+     * @param parent  The parent todo object
+     * @param childId The id of the child todo
+     */
+    void defer(@NotNull Todo parent, @NotNull UUID childId) {
+        parents.add(parent);
+        childIds.add(childId);
+    }
+
+    /**
+     * Returns the number of references waiting to be linked.
+     *
+     * @return The number of pending references
+     */
+    public int pending() {
+        return childIds.size();
+    }
+
+    /**
+     * Links all pending references in the store.
+     * Every reference that can be resolved is linked, even if others cannot; the
+     * dangling references are reported together at the end.
+     * After the call, the linker is empty and can be reused.
+     *
+     * @throws UnresolvedReferenceException If any of the referenced todos is not part of
+     *                                      the store
+     */
+    public void link() throws UnresolvedReferenceException {
+        var missing = new ArrayList<UUID>();
+        for (int i = 0; i < childIds.size(); ++i) {
+            var childId = childIds.get(i);
+            var child = store.find(childId);
+            if (child == null) {
+                missing.add(childId);
+                continue;
+            }
+            parents.get(i).addChild(child);
+        }
+        parents.clear();
+        childIds.clear();
+
+        if (!missing.isEmpty()) throw new UnresolvedReferenceException(missing);
+    }
+
+    private final TodoStore store;
+    private final List<Todo> parents = new ArrayList<>();
+    private final List<UUID> childIds = new ArrayList<>();
+}
@@ -0,0 +1,267 @@
+package hu.kszi2.nought.core;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+
+/**
+ * <p>
+ * The pre- and post-order labels of the todos of a store, which answer whether a todo
+ * is a descendant of another in O(1).
+ * </p>
+ * <p>
+ * Every todo has an enter and an exit mark in a linked list, which holds the marks in
+ * the order a depth-first walk of the todo forest enters and exits the todos.
+ * The marks of a subtree are therefore contiguous, and nested between the marks of its
+ * root.
+ * Each mark has a numeric label increasing along the list, so a todo is a descendant of
+ * another, if its labels are between those of the other.
+ * </p>
+ * <p>
+ * New marks get a label halfway between their neighbors.
+ * If there is no room left, the labels around the place of the insertion are spread out
+ * over the smallest aligned range of labels that is sparse enough, which takes amortized
+ * O(log n) time per insertion.
+ * </p>
+ *
+ * @see Todo#isDescendantOf(Todo)
+ */
+class TodoOrder {
+    /**
+     * Constructs an empty order.
+     */
+    TodoOrder() {
+        head.label = -1;
+        tail.label = 1L << LABEL_BITS;
+        head.next = tail;
+        tail.prev = head;
+    }
+
+    /**
+     * Adds the marks of a todo without children to the end of the order, as the last root.
+     *
+     * @param todo The todo to add
+     */
+    void add(@NotNull Todo todo) {
+        todo.enter = new Mark();
+        todo.exit = new Mark();
+        insertAfter(tail.prev, todo.enter);
+        insertAfter(todo.enter, todo.exit);
+    }
+
+    /**
+     * Adds the marks of a whole branch to the end of the order, with its root as the last
+     * root.
+     * The branch is walked without recursion, so deep branches can be added as well.
+     *
+     * @param root The root of the branch, whose todos have no marks
+     */
+    void addBranch(@NotNull Todo root) {
+        var at = tail.prev;
+        var path = new ArrayDeque<Todo>();
+        var pending = new ArrayDeque<Iterator<Todo>>();
+        var todo = root;
+        while (true) {
+            if (todo != null) {
+                todo.enter = new Mark();
+                todo.exit = new Mark();
+                insertAfter(at, todo.enter);
+                at = todo.enter;
+                path.push(todo);
+                pending.push(todo.getChildTodos().iterator());
+            }
+            if (pending.peek().hasNext()) {
+                todo = pending.peek().next();
+                continue;
+            }
+            todo = null;
+            pending.pop();
+            var done = path.pop();
+            insertAfter(at, done.exit);
+            at = done.exit;
+            if (path.isEmpty()) return;
+        }
+    }
+
+    /**
+     * Removes the marks of a todo from the order.
+     * The marks of its children are not removed.
+     *
+     * @param todo The todo to remove
+     */
+    void remove(@NotNull Todo todo) {
+        if (todo.enter == null) return;
+        unlink(todo.enter, todo.enter);
+        unlink(todo.exit, todo.exit);
+        todo.enter = null;
+        todo.exit = null;
+    }
+
+    /**
+     * Removes the marks of a whole branch from the order.
+     * The marks of the branch are contiguous, so they are unlinked at once.
+     *
+     * @param root   The root of the branch
+     * @param branch All todos of the branch, including its root
+     */
+    void removeBranch(@NotNull Todo root, @NotNull Iterable<Todo> branch) {
+        if (root.enter == null) return;
+        unlink(root.enter, root.exit);
+        for (var todo : branch) {
+            todo.enter = null;
+            todo.exit = null;
+        }
+    }
+
+    /**
+     * Moves the marks of a todo and its subtree to be the last ones under its new parent.
+     * Takes amortized O(k log n) time, where k is the size of the moved subtree.
+     * If both todos were roots, and the tree of the parent is the smaller, the marks of the
+     * parent are moved around those of the child instead, as the order of the roots
+     * does not matter.
+     * This keeps building a tree from the leaves up linear.
+     *
+     * @param parent       The new parent of the todo, which already has the todo as its child
+     * @param child        The moved todo
+     * @param childWasRoot Whether the child was a root before
+     */
+    void moveUnder(@NotNull Todo parent, @NotNull Todo child, boolean childWasRoot) {
+        var childSize = child.getSubtreeSize();
+        if (childWasRoot && parent.getParent() == null && parent.getSubtreeSize() - childSize < childSize) {
+            var first = parent.enter;
+            var last = parent.exit.prev;
+            unlink(first, last);
+            unlink(parent.exit, parent.exit);
+            insertRun(child.enter.prev, first, last);
+            insertAfter(child.exit, parent.exit);
+            return;
+        }
+
+        unlink(child.enter, child.exit);
+        insertRun(parent.exit.prev, child.enter, child.exit);
+    }
+
+    /**
+     * Moves the marks of a todo and its subtree before the given mark, or to the end of
+     * the order.
+     * Takes amortized O(k log n) time, where k is the size of the moved subtree.
+     *
+     * @param child  The moved todo
+     * @param before The mark to move the todo before, or null to make it the last root
+     */
+    void moveBefore(@NotNull Todo child, @Nullable Mark before) {
+        unlink(child.enter, child.exit);
+        insertRun((before == null ? tail : before).prev, child.enter, child.exit);
+    }
+
+    /**
+     * Links a run of marks into the list after a mark.
+     *
+     * @param at    The mark to insert after
+     * @param first The first mark of the run
+     * @param last  The last mark of the run
+     */
+    private void insertRun(Mark at, Mark first, Mark last) {
+        var mark = first;
+        while (true) {
+            var next = mark.next;
+            insertAfter(at, mark);
+            if (mark == last) return;
+            at = mark;
+            mark = next;
+        }
+    }
+
+    /**
+     * Unlinks a contiguous run of marks from the list.
+     * The links between the marks of the run are kept.
+     *
+     * @param first The first mark of the run
+     * @param last  The last mark of the run
+     */
+    private static void unlink(Mark first, Mark last) {
+        first.prev.next = last.next;
+        last.next.prev = first.prev;
+    }
+
+    /**
+     * Links a mark into the list after another, and gives it a label between its neighbors.
+     *
+     * @param at   The mark to insert after
+     * @param mark The mark to insert
+     */
+    private void insertAfter(Mark at, Mark mark) {
+        if (at.next.label - at.label < 2) {
+            spread(at == head ? at.next : at);
+        }
+        mark.label = at.label + (at.next.label - at.label) / 2;
+        mark.prev = at;
+        mark.next = at.next;
+        at.next.prev = mark;
+        at.next = mark;
+    }
+
+    /**
+     * Spreads out the labels around a mark, over the smallest aligned range of labels
+     * containing the mark, in which the marks are sparse enough.
+     * The density allowed shrinks with the size of the range, so larger ranges are left
+     * with more room.
+     *
+     * @param around The mark to make room around, which may not be a sentinel
+     */
+    private static void spread(Mark around) {
+        var allowed = 1.0;
+        for (int bits = 1; bits <= LABEL_BITS; ++bits) {
+            allowed *= 4.0 / 3.0;
+            var base = around.label >> bits << bits;
+            var end = base + (1L << bits);
+
+            long count = 1;
+            var first = around;
+            while (first.prev.prev != null && first.prev.label >= base) {
+                first = first.prev;
+                ++count;
+            }
+            var last = around;
+            while (last.next.next != null && last.next.label < end) {
+                last = last.next;
+                ++count;
+            }
+
+            // leave room for the marks about to be inserted
+            if (count + 1 > allowed && bits < LABEL_BITS) continue;
+            var step = (1L << bits) / (count + 1);
+            var label = base + step / 2;
+            for (var mark = first; ; mark = mark.next) {
+                mark.label = label;
+                label += step;
+                if (mark == last) return;
+            }
+        }
+    }
+
+    /**
+     * A place in the order, which is the enter or exit mark of a todo.
+     */
+    static final class Mark {
+        /**
+         * Returns the label of the mark, which increases along the order.
+         *
+         * @return The label of the mark
+         */
+        long label() {
+            return label;
+        }
+
+        private long label;
+        private Mark prev;
+        private Mark next;
+    }
+
+    private static final int LABEL_BITS = 62;
+
+    private final Mark head = new Mark();
+    private final Mark tail = new Mark();
+}
@@ -0,0 +1,305 @@
+package hu.kszi2.nought.core;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.ToIntBiFunction;
+
+/**
+ * <p>
+ * An inverted index of the words in the names and descriptions of the todos of a store.
+ * The index is kept up to date by the store, whenever a todo is added or removed, or its
+ * name or description changes.
+ * </p>
+ * <p>
+ * The words are the maximal runs of letters and digits, compared case-insensitively.
+ * For each word, the index holds the todos containing it, along with the number of its
+ * occurrences, where occurrences in the name count {@value #NAME_WEIGHT} times.
+ * The words are kept sorted, so that prefixes can be searched as well.
+ * </p>
+ * <p>
+ * Queries are made of terms separated by whitespace.
+ * All terms need to match a todo, unless they are separated by the word {@code OR}, in which
+ * case either side can match.
+ * A term ending in {@code *} matches all words starting with it.
+ * The matching todos are ranked by the sum of the occurrences of the terms in them.
+ * </p>
+ */
+class TodoSearchIndex implements Serializable {
+    /**
+     * Adds a todo to the index.
+     *
+     * @param todo The todo to add
+     */
+    void add(@NotNull Todo todo) {
+        var counts = new HashMap<String, Integer>();
+        count(todo.getName(), NAME_WEIGHT, counts);
+        count(todo.getDescriptionSequence(), 1, counts);
+        for (var entry : counts.entrySet()) {
+            postings.computeIfAbsent(entry.getKey(), k -> new HashMap<>())
+                    .put(todo, entry.getValue());
+        }
+        terms.put(todo, counts.keySet().toArray(new String[0]));
+    }
+
+    /**
+     * Removes a todo from the index.
+     *
+     * @param todo The todo to remove
+     */
+    void remove(@NotNull Todo todo) {
+        var words = terms.remove(todo);
+        if (words == null) return;
+
+        for (var word : words) {
+            var list = postings.get(word);
+            list.remove(todo);
+            if (list.isEmpty()) postings.remove(word);
+        }
+    }
+
+    /**
+     * Updates the index after the name or description of a todo has changed.
+     *
+     * @param todo The changed todo
+     */
+    void update(@NotNull Todo todo) {
+        remove(todo);
+        add(todo);
+    }
+
+    /**
+     * Returns the best matching todos for a query, best match first.
+     * The returned todos with equal scores are ordered by their names, then by their ids,
+     * which also decides which of them are returned if they do not all fit in the limit.
+     *
+     * @param query  The query to search for
+     * @param limit  The maximum number of todos to return
+     * @param filter The condition the returned todos need to satisfy
+     * @return The matching todos
+     */
+    List<Todo> search(@NotNull String query, int limit, @NotNull Predicate<Todo> filter) {
+        if (limit <= 0) return new ArrayList<>();
+
+        var alternatives = new ArrayList<Map<Todo, Integer>>();
+        for (var alternative : query.trim().split("\\s+OR\\s+")) {
+            var matches = matchAll(alternative);
+            if (matches != null) alternatives.add(matches);
+        }
+        if (alternatives.isEmpty()) return new ArrayList<>();
+
+        var scores = alternatives.get(0);
+        if (alternatives.size() > 1) {
+            var merged = new HashMap<Todo, Integer>();
+            for (var matches : alternatives) {
+                matches.forEach((todo, score) -> merged.merge(todo, score, Integer::sum));
+            }
+            scores = merged;
+        }
+
+        // keep the best matches in a heap with the worst kept one on top, so ties at the
+        // cut-off are broken by name and id, independently of the iteration order
+        var top = new PriorityQueue<Map.Entry<Todo, Integer>>(limit + 1, RANKING.reversed());
+        for (var entry : scores.entrySet()) {
+            if (top.size() == limit && RANKING.compare(entry, top.peek()) >= 0) continue;
+            if (!filter.test(entry.getKey())) continue;
+            top.add(entry);
+            if (top.size() > limit) top.poll();
+        }
+        var best = new ArrayList<>(top);
+        best.sort(RANKING);
+        var result = new ArrayList<Todo>(best.size());
+        for (var entry : best) {
+            result.add(entry.getKey());
+        }
+        return result;
+    }
+
+    /**
+     * Returns a function scoring the name and description of a todo against a query
+     * without an index, as the todo is scored by {@link #search(String, int, Predicate)}.
+     * The function keeps no state, so it can be called from multiple threads at once.
+     *
+     * @param query The query to score against
+     * @return The scoring function, which returns 0 if the texts do not match the query,
+     * or null if the query has no terms
+     */
+    static @Nullable ToIntBiFunction<CharSequence, CharSequence> scorer(@NotNull String query) {
+        var alternatives = new ArrayList<List<String>>();
+        for (var alternative : query.trim().split("\\s+OR\\s+")) {
+            var terms = new ArrayList<String>();
+            for (var term : alternative.split("\\s+")) {
+                var prefix = term.endsWith("*");
+                var words = new ArrayList<String>();
+                tokenize(prefix ? term.substring(0, term.length() - 1) : term, words::add);
+                for (int i = 0; i < words.size(); ++i) {
+                    var last = i == words.size() - 1;
+                    terms.add(prefix && last ? words.get(i) + "*" : words.get(i));
+                }
+            }
+            if (!terms.isEmpty()) alternatives.add(terms);
+        }
+        if (alternatives.isEmpty()) return null;
+
+        return (name, description) -> {
+            var counts = new TreeMap<String, Integer>();
+            count(name, NAME_WEIGHT, counts);
+            count(description, 1, counts);
+            var score = 0;
+            for (var terms : alternatives) {
+                score += scoreAll(terms, counts);
+            }
+            return score;
+        };
+    }
+
+    /**
+     * Sums the occurrences of all terms of a query in the counted words of a todo.
+     *
+     * @param terms  The words to match, ending in {@code *} if words starting with them
+     *               match as well
+     * @param counts The weighted number of occurrences of each word of the todo
+     * @return The total score, or 0 if any of the terms is missing
+     */
+    private static int scoreAll(List<String> terms, NavigableMap<String, Integer> counts) {
+        var score = 0;
+        for (var term : terms) {
+            var count = 0;
+            if (term.endsWith("*")) {
+                var word = term.substring(0, term.length() - 1);
+                for (var matching : counts.subMap(word, true, word + Character.MAX_VALUE, false).values()) {
+                    count += matching;
+                }
+            } else {
+                count = counts.getOrDefault(term, 0);
+            }
+            if (count == 0) return 0;
+            score += count;
+        }
+        return score;
+    }
+
+    /**
+     * Returns the todos matching all terms of a query, along with their scores.
+     *
+     * @param query The terms to match, separated by whitespace
+     * @return The matching todos and their scores, or null if the query has no terms.
+     * The returned map may be a part of the index, and must not be modified.
+     */
+    private @Nullable Map<Todo, Integer> matchAll(String query) {
+        var termMatches = new ArrayList<Map<Todo, Integer>>();
+        for (var term : query.split("\\s+")) {
+            var prefix = term.endsWith("*");
+            var words = new ArrayList<String>();
+            tokenize(prefix ? term.substring(0, term.length() - 1) : term, words::add);
+            for (int i = 0; i < words.size(); ++i) {
+                var last = i == words.size() - 1;
+                termMatches.add(match(words.get(i), prefix && last));
+            }
+        }
+        if (termMatches.isEmpty()) return null;
+
+        if (termMatches.size() == 1) return termMatches.get(0);
+
+        // intersect starting from the rarest term, so the working set is as small as possible
+        termMatches.sort(Comparator.comparingInt(Map::size));
+        var result = new HashMap<Todo, Integer>();
+        for (var entry : termMatches.get(0).entrySet()) {
+            var score = scoreInAll(entry.getKey(), entry.getValue(), termMatches);
+            if (score > 0) result.put(entry.getKey(), score);
+        }
+        return result;
+    }
+
+    /**
+     * Sums the scores of a todo in all the matches of the terms of a query.
+     *
+     * @param todo        The todo to score
+     * @param score       The score of the todo in the first matches
+     * @param termMatches The matches of each term
+     * @return The total score, or 0 if the todo is missing from any of the matches
+     */
+    private static int scoreInAll(Todo todo, int score, List<Map<Todo, Integer>> termMatches) {
+        for (int i = 1; i < termMatches.size(); ++i) {
+            var count = termMatches.get(i).get(todo);
+            if (count == null) return 0;
+            score += count;
+        }
+        return score;
+    }
+
+    /**
+     * Returns the todos containing a word, or a word starting with it.
+     *
+     * @param word   The word to search for
+     * @param prefix Whether to match words starting with the given word
+     * @return The matching todos and their number of occurrences
+     */
+    private Map<Todo, Integer> match(String word, boolean prefix) {
+        if (!prefix) return postings.getOrDefault(word, Collections.emptyMap());
+
+        var matching = postings.subMap(word, true, word + Character.MAX_VALUE, false);
+        if (matching.size() == 1) return matching.firstEntry().getValue();
+        var result = new HashMap<Todo, Integer>();
+        for (var list : matching.values()) {
+            list.forEach((todo, count) -> result.merge(todo, count, Integer::sum));
+        }
+        return result;
+    }
+
+    /**
+     * Counts the words of a text into the given map.
+     *
+     * @param text   The text to count the words of
+     * @param weight The number to count each occurrence as
+     * @param counts The map to count into
+     */
+    private static void count(CharSequence text, int weight, Map<String, Integer> counts) {
+        tokenize(text, word -> counts.merge(word, weight, Integer::sum));
+    }
+
+    /**
+     * Splits a text into lower case words, which are maximal runs of letters and digits.
+     *
+     * @param text The text to split
+     * @param sink The consumer of the words
+     */
+    private static void tokenize(CharSequence text, Consumer<String> sink) {
+        var word = new StringBuilder();
+        for (int i = 0; i <= text.length(); ++i) {
+            var c = i < text.length() ? text.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                word.append(c);
+            } else if (word.length() > 0) {
+                sink.accept(word.toString().toLowerCase(Locale.ROOT));
+                word.setLength(0);
+            }
+        }
+    }
+
+    /**
+     * Orders search results from the best to the worst.
+     */
+    private static final Comparator<Map.Entry<Todo, Integer>> RANKING =
+            Comparator.<Map.Entry<Todo, Integer>>comparingInt(Map.Entry::getValue).reversed()
+                    .thenComparing(entry -> entry.getKey().getName())
+                    .thenComparing(entry -> entry.getKey().getId());
+
+    private static final int NAME_WEIGHT = 3;
+
+    private final NavigableMap<String, Map<Todo, Integer>> postings = new TreeMap<>();
+    private final Map<Todo, String[]> terms = new HashMap<>();
+}
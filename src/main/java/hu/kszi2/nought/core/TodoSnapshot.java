@@ -0,0 +1,284 @@
+package hu.kszi2.nought.core;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.time.LocalTime;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+/**
+ * <p>
+ * An immutable snapshot of the todos of a store, created by {@link TodoStore#freeze()}.
+ * The snapshot is not affected by later changes to the store, and can be read from any
+ * thread without locking, while the store keeps being changed.
+ * </p>
+ * <p>
+ * The todos are laid out in flat arrays, in the pre-order of the todo forest, and are
+ * referred to by their index in it.
+ * The subtree of a todo is therefore the range of indices starting at the todo, as long
+ * as its subtree size, and its first child, if any, directly follows it.
+ * The roots follow each other the same way, starting at index 0.
+ * </p>
+ *
+ * @see TodoStore#freeze()
+ */
+public final class TodoSnapshot {
+    /**
+     * Copies the todos of a store into a snapshot, walking the todo forest once, without
+     * recursion.
+     *
+     * @param roots The roots of the store, in their order
+     * @param size  The number of todos in the store
+     */
+    TodoSnapshot(@NotNull Collection<Todo> roots, int size) {
+        ids = new UUID[size];
+        names = new String[size];
+        descriptions = new String[size];
+        completed = new boolean[size];
+        dueDates = new long[size];
+        dueTimes = new LocalTime[size];
+        subtreeSizes = new int[size];
+        parents = new int[size];
+
+        var stack = new ArrayDeque<Todo>();
+        var rootArray = roots.toArray(new Todo[0]);
+        for (int i = rootArray.length - 1; i >= 0; --i) {
+            stack.push(rootArray[i]);
+        }
+        var ancestors = new int[size];
+        var depth = 0;
+        var index = 0;
+        while (!stack.isEmpty()) {
+            var todo = stack.pop();
+            if (index == size) throw new IllegalStateException("store holds more todos than its size");
+
+            ids[index] = todo.getId();
+            names[index] = todo.getName();
+            descriptions[index] = todo.getDescription();
+            completed[index] = todo.isCompleted();
+            var dueDate = todo.getDueDate();
+            dueDates[index] = dueDate == null ? NO_DUE_DATE : dueDate.getTime();
+            dueTimes[index] = todo.getDueTime();
+            subtreeSizes[index] = todo.getSubtreeSize();
+
+            while (depth > 0 && ancestors[depth - 1] + subtreeSizes[ancestors[depth - 1]] <= index) {
+                --depth;
+            }
+            parents[index] = depth == 0 ? -1 : ancestors[depth - 1];
+            ancestors[depth++] = index;
+
+            var children = todo.getChildTodos();
+            for (int i = children.size() - 1; i >= 0; --i) {
+                stack.push(children.get(i));
+            }
+            ++index;
+        }
+        if (index != size) throw new IllegalStateException("store holds fewer todos than its size");
+    }
+
+    /**
+     * Returns the number of todos in the snapshot.
+     *
+     * @return The number of todos
+     */
+    public int size() {
+        return ids.length;
+    }
+
+    /**
+     * Returns the id of a todo.
+     *
+     * @param index The index of the todo
+     * @return The id of the todo
+     */
+    public @NotNull UUID getId(int index) {
+        return ids[index];
+    }
+
+    /**
+     * Returns the name of a todo.
+     *
+     * @param index The index of the todo
+     * @return The name of the todo
+     */
+    public @NotNull String getName(int index) {
+        return names[index];
+    }
+
+    /**
+     * Returns the description of a todo.
+     *
+     * @param index The index of the todo
+     * @return The description of the todo
+     */
+    public @NotNull String getDescription(int index) {
+        return descriptions[index];
+    }
+
+    /**
+     * Returns whether a todo is completed.
+     *
+     * @param index The index of the todo
+     * @return Whether the todo is completed
+     */
+    public boolean isCompleted(int index) {
+        return completed[index];
+    }
+
+    /**
+     * Returns the due date of a todo.
+     *
+     * @param index The index of the todo
+     * @return A new date object holding the due date, or null if the todo has none
+     */
+    public @Nullable Date getDueDate(int index) {
+        return dueDates[index] == NO_DUE_DATE ? null : new Date(dueDates[index]);
+    }
+
+    /**
+     * Returns the due time of a todo.
+     *
+     * @param index The index of the todo
+     * @return The due time, or null if the todo has none
+     */
+    public @Nullable LocalTime getDueTime(int index) {
+        return dueTimes[index];
+    }
+
+    /**
+     * Returns the index of the parent of a todo.
+     *
+     * @param index The index of the todo
+     * @return The index of the parent, or -1 if the todo is a root
+     */
+    public int getParent(int index) {
+        return parents[index];
+    }
+
+    /**
+     * Returns the number of todos in the subtree of a todo, including the todo itself.
+     *
+     * @param index The index of the todo
+     * @return The size of the subtree
+     */
+    public int getSubtreeSize(int index) {
+        return subtreeSizes[index];
+    }
+
+    /**
+     * Returns the index of the first child of a todo.
+     *
+     * @param index The index of the todo
+     * @return The index of the first child, or -1 if the todo has no children
+     */
+    public int getFirstChild(int index) {
+        return subtreeSizes[index] > 1 ? index + 1 : -1;
+    }
+
+    /**
+     * Returns the index of the todo following a todo among the children of its parent,
+     * or among the roots.
+     * The next sibling directly follows the subtree of the todo.
+     *
+     * @param index The index of the todo
+     * @return The index of the next sibling, or -1 if the todo is the last one
+     */
+    public int getNextSibling(int index) {
+        var next = index + subtreeSizes[index];
+        if (next >= ids.length || parents[next] != parents[index]) return -1;
+        return next;
+    }
+
+    /**
+     * Returns the number of children of a todo.
+     * Takes time proportional to the number of children.
+     *
+     * @param index The index of the todo
+     * @return The number of children
+     */
+    public int getChildCount(int index) {
+        var count = 0;
+        for (var child = getFirstChild(index); child >= 0; child = getNextSibling(child)) {
+            ++count;
+        }
+        return count;
+    }
+
+    /**
+     * Returns the index of the todo with the given id.
+     * The lookup table is built at the first call, in linear time.
+     *
+     * @param id The id of the todo
+     * @return The index of the todo
+     * @throws NoSuchElementException If the snapshot holds no todo with the id
+     */
+    public int indexOf(@NotNull UUID id) throws NoSuchElementException {
+        var lookup = indices;
+        if (lookup == null) {
+            lookup = new HashMap<>(ids.length * 4 / 3 + 1);
+            for (int i = 0; i < ids.length; ++i) {
+                lookup.put(ids[i], i);
+            }
+            indices = lookup;
+        }
+        var index = lookup.get(id);
+        if (index == null) throw new NoSuchElementException("no todo with id " + id + " in snapshot");
+        return index;
+    }
+
+    /**
+     * Searches the names and descriptions of the todos, and returns the indices of the
+     * best matching ones, best match first.
+     * The query is interpreted, and the matches are ranked, as by
+     * {@link TodoStore#search(String, int)}.
+     * There is no index to search in, so all todos are scored, in parallel.
+     *
+     * @param query The query to search for
+     * @param limit The maximum number of todos to return
+     * @return The indices of the matching todos
+     */
+    public int[] search(@NotNull String query, int limit) {
+        var scorer = TodoSearchIndex.scorer(query);
+        if (scorer == null || limit <= 0) return new int[0];
+
+        var scores = new int[ids.length];
+        IntStream.range(0, ids.length).parallel()
+                .forEach(i -> scores[i] = scorer.applyAsInt(names[i], descriptions[i]));
+
+        var ranking = Comparator.<Integer>comparingInt(i -> scores[i]).reversed()
+                .thenComparing(i -> names[i])
+                .thenComparing(i -> ids[i]);
+        var top = new PriorityQueue<Integer>(limit + 1, ranking.reversed());
+        for (int i = 0; i < scores.length; ++i) {
+            if (scores[i] == 0) continue;
+            top.add(i);
+            if (top.size() > limit) top.poll();
+        }
+        return top.stream().sorted(ranking).mapToInt(Integer::intValue).toArray();
+    }
+
+    private static final long NO_DUE_DATE = Long.MIN_VALUE;
+
+    private final UUID[] ids;
+    private final String[] names;
+    private final String[] descriptions;
+    private final boolean[] completed;
+    private final long[] dueDates;
+    private final LocalTime[] dueTimes;
+    private final int[] subtreeSizes;
+    private final int[] parents;
+    /**
+     * The index of each id, built at the first lookup.
+     * Racing threads may each build it, but only publish complete tables.
+     */
+    private volatile Map<UUID, Integer> indices;
+}
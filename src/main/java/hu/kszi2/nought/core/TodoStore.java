@@ -2,13 +2,21 @@ package hu.kszi2.nought.core;
 
 import hu.kszi2.nought.io.TodoExporter;
 import hu.kszi2.nought.io.TodoImporter;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
+import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * The class responsible for managing a set of todo objects during runtime.
  * Each todo object is associated with exactly one store.
+ * Todos are indexed by their unique id, so lookups, insertions and removals
+ * take constant time, while iteration still follows insertion order.
  */
 public class TodoStore implements Serializable {
     /**
@@ -21,6 +29,17 @@ public class TodoStore implements Serializable {
         return new TodoBuilder(this);
     }
 
+    /**
+     * Returns a {@link TodoLinker} object associated with this store object, which can
+     * be used to link todos built in an arbitrary order after all of them have been built.
+     *
+     * @return A new {@link TodoLinker}
+     * @see TodoLinker
+     */
+    public TodoLinker newLinker() {
+        return new TodoLinker(this);
+    }
+
     /**
      * Returns a {@link TodoImporter} object associated with this store object, using the default
      * implementation used by the store.
@@ -43,13 +62,61 @@ public class TodoStore implements Serializable {
         return TodoExporter.newDefault(this);
     }
 
+    /**
+     * Creates a deep copy of the store, which is not affected by later changes to
+     * this store, and vice versa.
+     * The copied todos keep their ids, field values and hierarchy, and the copy
+     * iterates them in the same order.
+     * Listeners are not copied.
+     *
+     * @return A new store holding copies of the todos of this store
+     */
+    public TodoStore copy() {
+        var copy = new TodoStore();
+        var copies = new IdentityHashMap<Todo, Todo>(todos.size());
+        for (var todo : todos.values()) {
+            copies.put(todo, todo.copyInto(copy));
+        }
+        for (var todo : todos.values()) {
+            var parent = copies.get(todo);
+            for (var child : todo.getChildTodos()) {
+                var childCopy = copies.get(child);
+                if (childCopy != null) parent.addChild(childCopy);
+            }
+        }
+        return copy;
+    }
+
+    /**
+     * Creates an immutable snapshot of the store, which can be read from any thread while
+     * this store keeps being changed.
+     * Unlike {@link #copy()}, the snapshot is a flat copy of the todos in pre-order,
+     * made in a single pass over the todo forest, without building todos or indexes.
+     * Inside a transaction, the snapshot holds the uncommitted state of the store.
+     *
+     * @return A new snapshot of the todos of this store
+     * @see TodoSnapshot
+     */
+    public TodoSnapshot freeze() {
+        return new TodoSnapshot(roots, todos.size());
+    }
+
     /**
      * Provides an iterator to the todo objects stored within the store.
      *
      * @return An iterator over the todos stored
      */
     public Iterator<Todo> iterator() {
-        return todos.iterator();
+        return todos.values().iterator();
+    }
+
+    /**
+     * Returns the number of todo objects stored within the store.
+     *
+     * @return The number of todos stored
+     */
+    public int size() {
+        return todos.size();
     }
 
     /**
@@ -62,9 +129,106 @@ public class TodoStore implements Serializable {
     public void add(Todo todo) throws IllegalArgumentException {
         if (todo == null) throw new IllegalArgumentException("added todo cannot be null");
 
-        if (todos.stream().noneMatch(elem -> elem.getId().equals(todo.getId()))) {
-            todos.add(todo);
+        var previous = todos.putIfAbsent(todo.getId(), todo);
+        if (previous != null) return;
+        if (todo.getParent() == null) roots.add(todo);
+        order.add(todo);
+        if (transaction != null) {
+            transaction.created(todo);
+            recordUndo(todo, () -> unlink(todo));
         }
+        reindex(todo, true, true);
+        fire(TodoEvent.Kind.CREATED, todo, null, null);
+    }
+
+    /**
+     * Returns the top-level (root) todos of the store, which do not have a parent.
+     * The returned set is a read-only view, which reflects later changes to the store,
+     * and iterates the roots in the order they were added to the store.
+     *
+     * @return The root todos of the store
+     */
+    public Set<Todo> getRoots() {
+        return rootsView;
+    }
+
+    /**
+     * Returns the todos due in the given time range, in the order they are due.
+     * Todos without a due time are due at the end of their due day.
+     * The query takes O(log n + k) time, where k is the number of todos returned.
+     *
+     * @param from The start of the range, inclusive
+     * @param to   The end of the range, exclusive
+     * @return A new list of the todos due in the range
+     * @see Todo#getDueInstant()
+     */
+    public List<Todo> findDueBetween(@NotNull Instant from, @NotNull Instant to) {
+        settleIndexes();
+        return dueIndex.between(from, to);
+    }
+
+    /**
+     * Returns the todos which are not completed, but are due before the given instant,
+     * in the order they are due.
+     * Todos without a due time are due at the end of their due day.
+     * The query takes O(log n + k) time, where k is the number of todos returned.
+     *
+     * @param now The current instant
+     * @return A new list of the overdue todos
+     * @see Todo#getDueInstant()
+     */
+    public List<Todo> findOverdue(@NotNull Instant now) {
+        settleIndexes();
+        return dueIndex.overdue(now);
+    }
+
+    /**
+     * <p>
+     * Searches the names and descriptions of the todos of the store, and returns the best
+     * matching ones, best match first.
+     * </p>
+     * <p>
+     * The query is made of terms separated by whitespace, all of which need to be found
+     * in a todo for it to match.
+     * Alternatives can be separated by the word {@code OR}, and a term ending in {@code *}
+     * matches all words starting with it.
+     * Words are matched case-insensitively, and matches in the name rank higher than
+     * those in the description.
+     * </p>
+     *
+     * @param query The query to search for
+     * @param limit The maximum number of todos to return
+     * @return A new list of the matching todos
+     */
+    public List<Todo> search(@NotNull String query, int limit) {
+        settleIndexes();
+        return searchIndex.search(query, limit, todo -> true);
+    }
+
+    /**
+     * Searches the names and descriptions of the todos in the subtree of a todo, including
+     * the todo itself, and returns the best matching ones, best match first.
+     * The query is interpreted as for {@link #search(String, int)}.
+     *
+     * @param query  The query to search for
+     * @param limit  The maximum number of todos to return
+     * @param within The root of the subtree to search in
+     * @return A new list of the matching todos
+     * @see Todo#isDescendantOf(Todo)
+     */
+    public List<Todo> search(@NotNull String query, int limit, @NotNull Todo within) {
+        settleIndexes();
+        return searchIndex.search(query, limit, todo -> todo == within || todo.isDescendantOf(within));
+    }
+
+    /**
+     * Checks whether the store contains a todo with the given id.
+     *
+     * @param id The id to search for.
+     * @return Whether a todo with the id is stored
+     */
+    public boolean contains(UUID id) {
+        return todos.containsKey(id);
     }
 
     /**
@@ -75,13 +239,102 @@ public class TodoStore implements Serializable {
      * @throws NoSuchElementException The store does not contain an element with the given id
      */
     public Todo findById(UUID id) throws NoSuchElementException {
-        var todo = todos
-                .stream()
-                .filter(elem -> elem.getId().equals(id))
-                .findAny(); // there can only be one elem with wanted GUID
+        var todo = todos.get(id);
+        if (todo == null) throw new NoSuchElementException();
+        return todo;
+    }
+
+    /**
+     * Searches for a todo object in the store based on its unique id, without failing
+     * if it does not exist.
+     *
+     * @param id The id to search for.
+     * @return The todo element in the store with the given id, or {@code null}
+     */
+    @Nullable Todo find(UUID id) {
+        return todos.get(id);
+    }
 
-        if (todo.isEmpty()) throw new NoSuchElementException();
-        return todo.get();
+    /**
+     * <p>
+     * Moves a todo, along with all its children, to a new place in the hierarchy.
+     * The todo is removed from the children of its parent, and inserted into the children
+     * of the new parent at the given position.
+     * If the new parent is {@code null}, the todo becomes the last root todo, and the
+     * position is ignored.
+     * </p>
+     * <p>
+     * The move only updates the todos on the paths from the old and the new place to their
+     * roots, and is reported as a single {@link TodoEvent.Kind#MOVED} event.
+     * </p>
+     *
+     * @param childId     The id of the todo to move
+     * @param newParentId The id of the new parent, or {@code null}
+     * @param index       The position among the children of the new parent, counted without
+     *                    the moved todo
+     * @throws NoSuchElementException    The store does not contain one of the todos
+     * @throws IllegalArgumentException  The new parent is the todo or one of its descendants
+     * @throws IndexOutOfBoundsException The position is out of the range of the children
+     * @throws BadTodoOperation          The todo is not completed, but the new parent is.
+     *                                   Inside a transaction, this is only checked at commit.
+     */
+    public void move(UUID childId, @Nullable UUID newParentId, int index)
+            throws NoSuchElementException, BadTodoOperation {
+        var child = findById(childId);
+        var newParent = newParentId == null ? null : findById(newParentId);
+        if (newParent != null) {
+            if (newParent == child || newParent.isDescendantOf(child))
+                throw new IllegalArgumentException("Todo cannot be moved under itself");
+            if (transaction == null && newParent.isCompleted() && !child.isCompleted())
+                throw new BadTodoOperation(child, "Cannot move incomplete todo under completed todo");
+
+            var siblings = newParent.getChildTodos().size();
+            if (child.getParent() == newParent) --siblings;
+            if (index < 0 || index > siblings)
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + siblings);
+        }
+
+        child.moveTo(newParent, index);
+    }
+
+    /**
+     * Completes a todo along with all todos in its subtree, in a single pass over the
+     * todos not yet completed.
+     * The change is reported as a single {@link TodoEvent.Kind#BRANCH_COMPLETED} event,
+     * unless every todo in the subtree was already completed.
+     *
+     * @param id The id of the root of the subtree
+     * @throws NoSuchElementException The store does not contain a todo with the given id
+     */
+    public void completeBranch(UUID id) throws NoSuchElementException {
+        var root = findById(id);
+        var changed = root.completeSubtree();
+        if (changed.isEmpty()) return;
+
+        for (var todo : changed) {
+            reindex(todo, true, false);
+        }
+        fire(TodoEvent.Kind.BRANCH_COMPLETED, root, null, null);
+    }
+
+    /**
+     * Reopens a todo along with all its ancestors, as a todo can only be open if its
+     * parent is open as well.
+     * The change is reported as a single {@link TodoEvent.Kind#PATH_REOPENED} event,
+     * unless the todo was already open.
+     *
+     * @param id The id of the todo to reopen
+     * @throws NoSuchElementException The store does not contain a todo with the given id
+     */
+    public void reopenPath(UUID id) throws NoSuchElementException {
+        var todo = findById(id);
+        var changed = todo.reopenPath();
+        if (changed.isEmpty()) return;
+
+        for (var reopened : changed) {
+            reindex(reopened, true, false);
+        }
+        fire(TodoEvent.Kind.PATH_REOPENED, todo, null, null);
     }
 
     /**
@@ -118,8 +371,492 @@ public class TodoStore implements Serializable {
      * @param todo The todo to remove.
      */
     void unlink(Todo todo) {
-        todos.remove(todo);
+        if (todos.get(todo.getId()) != todo) return;
+        rememberOrder(todo, List.of(todo));
+        todos.remove(todo.getId());
+        roots.remove(todo);
+        order.remove(todo);
+        unindex(todo);
+    }
+
+    /**
+     * Removes a whole branch of todos from the store in one pass.
+     * If the root of the branch is not part of the current store, the function is nop.
+     *
+     * @param root   The root of the branch
+     * @param branch All todos of the branch, including its root
+     */
+    void unlinkBranch(Todo root, List<Todo> branch) {
+        if (todos.get(root.getId()) != root) return;
+
+        rememberOrder(root, branch);
+        roots.remove(root);
+        order.removeBranch(root, branch);
+        for (var todo : branch) {
+            todos.remove(todo.getId(), todo);
+            unindex(todo);
+        }
+    }
+
+    /**
+     * Puts a removed branch of todos back into the store, with its root as the last root.
+     * Used to roll back the removal of the branch.
+     *
+     * @param root   The root of the branch, which has no parent
+     * @param branch All todos of the branch, including its root
+     */
+    void relinkBranch(Todo root, List<Todo> branch) {
+        for (var todo : branch) {
+            todos.put(todo.getId(), todo);
+            reindex(todo, true, true);
+        }
+        roots.add(root);
+        order.addBranch(root);
+    }
+
+    /**
+     * Registers a listener to be notified of all later mutations to the todos of the store.
+     * The listener is not notified of the todos already in the store.
+     *
+     * @param listener The listener to register
+     * @see TodoStoreListener
+     */
+    public void addListener(@NotNull TodoStoreListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Unregisters a previously registered listener.
+     * If the listener is not registered, the function is nop.
+     *
+     * @param listener The listener to unregister
+     */
+    public void removeListener(@NotNull TodoStoreListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * <p>
+     * Opens a batch, which collects the events of all mutations made until it is closed,
+     * and delivers them coalesced to the listeners when it is.
+     * If a batch is already open, it is nested into that.
+     * </p>
+     * <pre>
+     * try (var batch = store.batch()) {
+     *     ...
+     * }
+     * </pre>
+     *
+     * @return The open batch
+     * @see TodoBatch
+     */
+    public TodoBatch batch() {
+        if (batch == null) {
+            batch = new TodoBatch(this);
+        } else {
+            batch.nest();
+        }
+        return batch;
     }
 
-    private final List<Todo> todos = new ArrayList<>();
+    /**
+     * <p>
+     * Applies an edit to the store as a single transaction, which either succeeds as
+     * a whole, or has no effect at all.
+     * </p>
+     * <p>
+     * Inside the transaction, the invariants of the todos are not checked by the setters,
+     * so the edit may pass through invalid states, and the indexes of the store are only
+     * updated once per mutated todo.
+     * When the edit returns, the invariants of all mutated todos are checked.
+     * If the edit throws, or an invariant is broken, all mutations of the edit are rolled
+     * back, and the exception is rethrown.
+     * </p>
+     * <p>
+     * The events of the transaction are delivered coalesced, as if it were a {@link #batch()},
+     * and the events of a rolled back transaction are not delivered at all.
+     * Transactions can be nested, in which case the nested one can be rolled back on its own,
+     * but its mutations are only checked and committed with the outermost one.
+     * </p>
+     * <pre>
+     * store.batch(s -&gt; {
+     *     parent.setCompleted(true);
+     *     child.setCompleted(true);
+     * });
+     * </pre>
+     *
+     * @param edit The mutations to apply
+     * @throws BadTodoOperation If the edit breaks an invariant, or throws itself
+     * @see TodoEdit
+     */
+    public void batch(@NotNull TodoEdit edit) throws BadTodoOperation {
+        try (var events = batch()) {
+            if (transaction == null) transaction = new TodoTransaction();
+            var savepoint = transaction.open(events.size());
+            try {
+                edit.apply(this);
+                if (transaction.isOutermost(savepoint)) {
+                    commit();
+                } else {
+                    transaction.release();
+                }
+            } catch (Throwable ex) {
+                rollback(savepoint, events);
+                throw ex;
+            }
+        }
+    }
+
+    /**
+     * Returns whether a transaction is open on the store, in which case the invariants
+     * of the todos are checked at commit.
+     *
+     * @return Whether a transaction is open
+     * @see #batch(TodoEdit)
+     */
+    boolean isInTransaction() {
+        return transaction != null;
+    }
+
+    /**
+     * Records how a mutation can be undone, if a transaction is open.
+     *
+     * @param todo The mutated todo, whose invariants are checked at commit
+     * @param step The action undoing the mutation
+     */
+    void recordUndo(Todo todo, Runnable step) {
+        if (transaction != null) transaction.record(todo, step);
+    }
+
+    /**
+     * Checks the invariants of the todos mutated in the open transaction, and updates the
+     * indexes of the store.
+     *
+     * @throws BadTodoOperation If an invariant of a todo is broken
+     */
+    private void commit() throws BadTodoOperation {
+        for (var todo : transaction.getTouched()) {
+            if (todos.get(todo.getId()) == todo) todo.checkInvariants().orThrow();
+        }
+        var committed = transaction;
+        transaction = null;
+        settle(committed);
+    }
+
+    /**
+     * Undoes the mutations made since a savepoint of the open transaction, and drops their
+     * events.
+     * If the savepoint is the outermost one, the transaction is closed.
+     *
+     * @param savepoint The savepoint to roll back to
+     * @param events    The batch queuing the events of the transaction
+     */
+    private void rollback(TodoTransaction.Savepoint savepoint, TodoBatch events) {
+        var rolledBack = transaction;
+        var outermost = rolledBack.isOutermost(savepoint);
+        transaction = null;
+        rolledBack.undoTo(savepoint);
+        restoreOrder(savepoint);
+        events.discard(savepoint.getEvents());
+        if (outermost) {
+            settle(rolledBack);
+        } else {
+            transaction = rolledBack;
+        }
+    }
+
+    /**
+     * Restores the iteration order of the todos and the roots of the store, if it was
+     * copied at the savepoint.
+     *
+     * @param savepoint The savepoint rolled back to
+     */
+    private void restoreOrder(TodoTransaction.Savepoint savepoint) {
+        var savedRoots = savepoint.getRoots();
+        if (savedRoots != null) {
+            var kept = new ArrayList<Todo>(roots.size());
+            for (var root : savedRoots) {
+                if (roots.contains(root)) kept.add(root);
+            }
+            roots.clear();
+            roots.addAll(kept);
+        }
+        var savedTodos = savepoint.getTodos();
+        if (savedTodos != null) {
+            var kept = new ArrayList<Todo>(todos.size());
+            for (var todo : savedTodos) {
+                if (todos.get(todo.getId()) == todo) kept.add(todo);
+            }
+            todos.clear();
+            for (var todo : kept) {
+                todos.put(todo.getId(), todo);
+            }
+        }
+    }
+
+    /**
+     * Copies the iteration order of the store into the savepoints of the open transaction,
+     * before a todo is moved from its place among the roots, or removed from the store.
+     *
+     * @param todo    The todo about to be moved or removed
+     * @param removed The todos about to be removed from the store
+     */
+    private void rememberOrder(Todo todo, List<Todo> removed) {
+        if (transaction == null) return;
+        if (roots.contains(todo)) transaction.beforeRootRemoved(todo, roots);
+        for (var gone : removed) {
+            transaction.beforeTodoRemoved(gone, todos.values());
+        }
+    }
+
+    /**
+     * Updates the indexes of a todo after it has been added or mutated, or defers it to the
+     * commit of the open transaction.
+     *
+     * @param todo The mutated todo
+     * @param due  Whether the due index needs to be updated
+     * @param text Whether the search index needs to be updated
+     */
+    private void reindex(Todo todo, boolean due, boolean text) {
+        if (transaction != null) {
+            transaction.markDirty(todo);
+            return;
+        }
+        if (due) dueIndex.update(todo);
+        if (text) searchIndex.update(todo);
+    }
+
+    /**
+     * Removes a todo from the indexes, or defers it to the commit of the open transaction.
+     *
+     * @param todo The removed todo
+     */
+    private void unindex(Todo todo) {
+        if (transaction != null) {
+            transaction.markDirty(todo);
+            return;
+        }
+        dueIndex.remove(todo);
+        searchIndex.remove(todo);
+    }
+
+    /**
+     * Brings the indexes up to date with the mutations of the open transaction, so that
+     * queries made inside it see its mutations.
+     */
+    private void settleIndexes() {
+        if (transaction != null) settle(transaction);
+    }
+
+    /**
+     * Updates the indexes of the todos mutated in a transaction.
+     *
+     * @param mutated The transaction
+     */
+    private void settle(TodoTransaction mutated) {
+        for (var todo : mutated.takeDirty()) {
+            if (todos.get(todo.getId()) == todo) {
+                dueIndex.update(todo);
+                searchIndex.update(todo);
+            } else {
+                dueIndex.remove(todo);
+                searchIndex.remove(todo);
+            }
+        }
+    }
+
+    /**
+     * Called when the outermost batch is closed, to deliver its events.
+     * The events are delivered to every listener, even if some of them throw; the first
+     * exception is rethrown once all listeners have been called.
+     *
+     * @param events The coalesced events of the batch
+     */
+    void endBatch(List<TodoEvent> events) {
+        batch = null;
+        if (events.isEmpty()) return;
+
+        RuntimeException failure = null;
+        for (var listener : listeners) {
+            try {
+                listener.todosChanged(events);
+            } catch (RuntimeException ex) {
+                if (failure == null) {
+                    failure = ex;
+                } else {
+                    failure.addSuppressed(ex);
+                }
+            }
+        }
+        if (failure != null) throw failure;
+    }
+
+    /**
+     * Reports a field change of a todo.
+     * Changes to todos which are not part of the store, for example todos being
+     * constructed, are not reported.
+     *
+     * @param todo  The changed todo
+     * @param field The changed field
+     */
+    void onFieldChanged(Todo todo, TodoField field) {
+        if (todos.get(todo.getId()) != todo) return;
+        reindex(todo, field == TodoField.DUE_DATE || field == TodoField.DUE_TIME,
+                field == TodoField.NAME || field == TodoField.DESCRIPTION);
+        fire(TodoEvent.Kind.FIELD_CHANGED, todo, null, field);
+    }
+
+    /**
+     * Reports a change of the completion status of a todo.
+     *
+     * @param todo The changed todo
+     */
+    void onCompletedToggled(Todo todo) {
+        if (todos.get(todo.getId()) != todo) return;
+        reindex(todo, true, false);
+        fire(TodoEvent.Kind.COMPLETED_TOGGLED, todo, null, null);
+    }
+
+    /**
+     * Reports a new child link between two todos.
+     * The child is no longer a root todo.
+     *
+     * @param parent         The parent todo
+     * @param child          The new child
+     * @param previousParent The former parent of the child
+     * @param previousIndex  The former position of the child
+     */
+    void onChildAdded(Todo parent, Todo child, @Nullable Todo previousParent, int previousIndex) {
+        rememberOrder(child, List.of());
+        var wasRoot = roots.remove(child);
+        if (parent.enter != null && child.enter != null) order.moveUnder(parent, child, wasRoot);
+
+        if (listeners.isEmpty()) return;
+        dispatch(new TodoEvent(TodoEvent.Kind.CHILD_ADDED, child, parent,
+                parent.getChildTodos().size() - 1, previousParent, previousIndex));
+    }
+
+    /**
+     * Reports a moved todo, and moves it in the order of the store.
+     *
+     * @param todo           The moved todo, which is already at its new place
+     * @param previousParent The former parent of the todo
+     * @param previousIndex  The former position of the todo
+     * @param index          The new position of the todo
+     */
+    void onMoved(Todo todo, @Nullable Todo previousParent, int previousIndex, int index) {
+        var parent = todo.getParent();
+        rememberOrder(todo, List.of());
+        if (parent == null) {
+            roots.remove(todo);
+            roots.add(todo);
+            order.moveBefore(todo, null);
+        } else {
+            roots.remove(todo);
+            var siblings = parent.getChildTodos();
+            order.moveBefore(todo, index + 1 < siblings.size() ? siblings.get(index + 1).enter : parent.exit);
+        }
+
+        if (listeners.isEmpty()) return;
+        dispatch(new TodoEvent(TodoEvent.Kind.MOVED, todo, parent, index, previousParent, previousIndex));
+    }
+
+    /**
+     * Reports a removed todo.
+     *
+     * @param todo   The removed todo
+     * @param parent The parent the todo was removed from
+     * @param index  The former position of the todo among the children of its parent
+     */
+    void onRemoved(Todo todo, @Nullable Todo parent, int index) {
+        if (listeners.isEmpty()) return;
+        dispatch(new TodoEvent(TodoEvent.Kind.REMOVED, todo, parent, -1, null, index));
+    }
+
+    /**
+     * Reports a removed branch of todos.
+     *
+     * @param root   The root of the removed branch
+     * @param parent The parent of the branch's root
+     * @param index  The former position of the branch's root among the children of its parent
+     */
+    void onBranchRemoved(Todo root, @Nullable Todo parent, int index) {
+        if (listeners.isEmpty()) return;
+        dispatch(new TodoEvent(TodoEvent.Kind.BRANCH_REMOVED, root, parent, -1, null, index));
+    }
+
+    /**
+     * Creates an event and either queues it in the open batch, or delivers it to the
+     * listeners.
+     * If there are no listeners, no event is created.
+     *
+     * @param kind   The kind of the event
+     * @param todo   The mutated todo
+     * @param parent The parent involved in the mutation
+     * @param field  The changed field
+     */
+    private void fire(TodoEvent.Kind kind, Todo todo, @Nullable Todo parent, @Nullable TodoField field) {
+        if (listeners.isEmpty()) return;
+        dispatch(new TodoEvent(kind, todo, parent, field));
+    }
+
+    /**
+     * Either queues an event in the open batch, or delivers it to the listeners.
+     *
+     * @param event The event to dispatch
+     */
+    private void dispatch(TodoEvent event) {
+        if (batch != null) {
+            batch.add(event);
+        } else {
+            deliver(event);
+        }
+    }
+
+    /**
+     * Delivers an event to all listeners.
+     *
+     * @param event The event to deliver
+     */
+    private void deliver(TodoEvent event) {
+        for (var listener : listeners) {
+            listener.todoChanged(event);
+        }
+    }
+
+    /**
+     * Reads the store from a stream, recreating the transient state: a deserialized
+     * store has no listeners, the links between its todos are restored from the ids of
+     * their children, and the order of its todos is rebuilt from the roots.
+     *
+     * @param in The stream to read from
+     * @throws IOException            If reading failed
+     * @throws ClassNotFoundException If a class of the serialized objects is not found
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        listeners = new CopyOnWriteArrayList<>();
+        for (var todo : todos.values()) {
+            todo.relinkChildren(todos);
+        }
+        order = new TodoOrder();
+        for (var root : roots) {
+            order.addBranch(root);
+        }
+    }
+
+    private final Map<UUID, Todo> todos = new LinkedHashMap<>();
+    private final Set<Todo> roots = new LinkedHashSet<>();
+    private final Set<Todo> rootsView = Collections.unmodifiableSet(roots);
+    /**
+     * Not serialized, as its linked marks would be written recursively.
+     */
+    private transient TodoOrder order = new TodoOrder();
+    private final TodoDueIndex dueIndex = new TodoDueIndex();
+    private final TodoSearchIndex searchIndex = new TodoSearchIndex();
+    private transient List<TodoStoreListener> listeners = new CopyOnWriteArrayList<>();
+    @Nullable
+    private transient TodoBatch batch;
+    @Nullable
+    private transient TodoTransaction transaction;
 }
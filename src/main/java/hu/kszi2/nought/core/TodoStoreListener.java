@@ -0,0 +1,43 @@
+package hu.kszi2.nought.core;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+
+/**
+ * An interface for objects that are notified about the mutations made to the todos
+ * of a store.
+ * Listeners are registered using {@link TodoStore#addListener(TodoStoreListener)}.
+ *
+ * @see TodoEvent
+ * @see TodoStore
+ */
+@FunctionalInterface
+public interface TodoStoreListener {
+    /**
+     * Called after a mutation has been performed successfully on a todo of the store.
+     * Mutations which fail, because they would break an invariant, are not reported.
+     * Mutations done inside a batch are reported when the batch is closed, while those of
+     * a rolled back transaction are not reported at all.
+     *
+     * @param event The event describing the mutation
+     * @see TodoStore#batch()
+     */
+    void todoChanged(@NotNull TodoEvent event);
+
+    /**
+     * Called with the coalesced events of a batch, when the batch is closed.
+     * The events are delivered after all mutations of the batch, so the positions they
+     * carry may no longer match the state of the store; listeners which keep positions
+     * of todos should override this function, and check the events against the store.
+     * By default, the events are passed to {@link #todoChanged(TodoEvent)} in order.
+     *
+     * @param events The events of the batch, in the order of the mutations
+     * @see TodoStore#batch()
+     */
+    default void todosChanged(@NotNull List<TodoEvent> events) {
+        for (var event : events) {
+            todoChanged(event);
+        }
+    }
+}
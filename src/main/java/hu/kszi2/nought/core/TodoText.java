@@ -0,0 +1,265 @@
+package hu.kszi2.nought.core;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * <p>
+ * The text of a todo's description, stored as a piece table, so that it can be edited
+ * without copying the whole text.
+ * </p>
+ * <p>
+ * The text is made up of pieces, each referring to a range of either the original text,
+ * or of a buffer holding all inserted text.
+ * Replacing a range of the text only splits the pieces at its ends, and appends the
+ * inserted text to the buffer, taking time proportional to the number of pieces and the
+ * inserted text.
+ * Consecutive insertions, as made by typing, extend the last piece instead of adding new
+ * ones.
+ * Once there are too many pieces, the text is flattened back into a single piece.
+ * </p>
+ * <p>
+ * Instances are modified only through their todo, and are read as a {@link CharSequence}.
+ * Sequential reads with {@link #charAt(int)} take amortized O(1) time, and the string
+ * returned by {@link #toString()} is kept until the text is modified.
+ * </p>
+ *
+ * @see Todo#getDescriptionText()
+ * @see Todo#editDescription(int, int, CharSequence)
+ */
+public final class TodoText implements CharSequence, Serializable {
+    /**
+     * Constructs a text with the given contents.
+     *
+     * @param text The initial contents
+     */
+    TodoText(@NotNull String text) {
+        reset(text);
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        Objects.checkIndex(index, length);
+        var piece = pieces.get(locate(index));
+        return source(piece).charAt(piece.start + index - cursorStart);
+    }
+
+    @Override
+    public @NotNull CharSequence subSequence(int start, int end) {
+        Objects.checkFromToIndex(start, end, length);
+        if (flat != null) return flat.substring(start, end);
+
+        var result = new StringBuilder(end - start);
+        appendRange(result, start, end);
+        return result.toString();
+    }
+
+    /**
+     * Returns whether the text has the same contents as the given character sequence.
+     *
+     * @param other The character sequence to compare with
+     * @return Whether the contents are equal
+     */
+    public boolean contentEquals(@NotNull CharSequence other) {
+        if (other.length() != length) return false;
+        if (flat != null) return flat.contentEquals(other);
+
+        int i = 0;
+        for (var piece : pieces) {
+            var source = source(piece);
+            for (int j = piece.start; j < piece.start + piece.length; ++j, ++i) {
+                if (source.charAt(j) != other.charAt(i)) return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the contents of the text.
+     * The string is built once, and kept until the text is modified.
+     *
+     * @return The text as a string
+     */
+    @Override
+    public @NotNull String toString() {
+        if (flat == null) {
+            var result = new StringBuilder(length);
+            appendRange(result, 0, length);
+            flat = result.toString();
+        }
+        return flat;
+    }
+
+    /**
+     * Replaces a range of the text.
+     *
+     * @param offset  The start of the replaced range
+     * @param removed The length of the replaced range
+     * @param text    The text to insert in place of the range
+     * @throws IndexOutOfBoundsException If the range is not inside the text
+     */
+    void replace(int offset, int removed, @NotNull CharSequence text) {
+        Objects.checkFromIndexSize(offset, removed, length);
+        if (removed == 0 && text.length() == 0) return;
+
+        int from = split(offset);
+        int to = split(offset + removed);
+        pieces.subList(from, to).clear();
+        if (text.length() > 0) {
+            var previous = from > 0 ? pieces.get(from - 1) : null;
+            if (previous != null && previous.added && previous.start + previous.length == added.length()) {
+                pieces.set(from - 1, new Piece(true, previous.start, previous.length + text.length()));
+            } else {
+                pieces.add(from, new Piece(true, added.length(), text.length()));
+            }
+            added.append(text);
+        }
+        length += text.length() - removed;
+        flat = null;
+        cursorPiece = 0;
+        cursorStart = 0;
+
+        if (pieces.size() > MAX_PIECES) reset(toString());
+    }
+
+    /**
+     * Replaces the whole contents of the text.
+     *
+     * @param text The new contents
+     */
+    void set(@NotNull String text) {
+        reset(text);
+    }
+
+    /**
+     * Sets the contents of the text to a single piece of original text.
+     *
+     * @param text The new contents
+     */
+    private void reset(String text) {
+        original = text;
+        added = new StringBuilder();
+        pieces = new ArrayList<>();
+        if (!text.isEmpty()) pieces.add(new Piece(false, 0, text.length()));
+        length = text.length();
+        flat = text;
+        cursorPiece = 0;
+        cursorStart = 0;
+    }
+
+    /**
+     * Returns the index of the piece containing the given position, and moves the cursor
+     * onto it.
+     * The search starts from the cursor if the position is after it, so sequential reads
+     * do not rescan the pieces.
+     *
+     * @param index The position in the text
+     * @return The index of the piece
+     */
+    private int locate(int index) {
+        if (index < cursorStart) {
+            cursorPiece = 0;
+            cursorStart = 0;
+        }
+        while (cursorStart + pieces.get(cursorPiece).length <= index) {
+            cursorStart += pieces.get(cursorPiece).length;
+            ++cursorPiece;
+        }
+        return cursorPiece;
+    }
+
+    /**
+     * Splits the piece containing the given position, so that a piece starts at it.
+     *
+     * @param offset The position to split at
+     * @return The index of the piece starting at the position, or the number of pieces
+     * if the position is the end of the text
+     */
+    private int split(int offset) {
+        int start = 0;
+        for (int i = 0; i < pieces.size(); ++i) {
+            var piece = pieces.get(i);
+            if (offset == start) return i;
+            if (offset < start + piece.length) {
+                var head = offset - start;
+                pieces.set(i, new Piece(piece.added, piece.start, head));
+                pieces.add(i + 1, new Piece(piece.added, piece.start + head, piece.length - head));
+                return i + 1;
+            }
+            start += piece.length;
+        }
+        return pieces.size();
+    }
+
+    /**
+     * Appends a range of the text to a builder.
+     *
+     * @param out   The builder to append to
+     * @param start The start of the range
+     * @param end   The end of the range, exclusive
+     */
+    private void appendRange(StringBuilder out, int start, int end) {
+        int pieceStart = 0;
+        for (var piece : pieces) {
+            var pieceEnd = pieceStart + piece.length;
+            if (pieceEnd > start && pieceStart < end) {
+                var from = Math.max(start, pieceStart) - pieceStart + piece.start;
+                var to = Math.min(end, pieceEnd) - pieceStart + piece.start;
+                out.append(source(piece), from, to);
+            }
+            if (pieceEnd >= end) break;
+            pieceStart = pieceEnd;
+        }
+    }
+
+    /**
+     * Returns the buffer a piece refers to.
+     *
+     * @param piece The piece
+     * @return The original text or the buffer of inserted text
+     */
+    private CharSequence source(Piece piece) {
+        return piece.added ? added : original;
+    }
+
+    /**
+     * A range of either the original text, or the buffer of inserted text.
+     */
+    private static final class Piece implements Serializable {
+        /**
+         * Constructs a piece.
+         *
+         * @param added  Whether the piece refers to the buffer of inserted text
+         * @param start  The start of the range in the buffer
+         * @param length The length of the range
+         */
+        private Piece(boolean added, int start, int length) {
+            this.added = added;
+            this.start = start;
+            this.length = length;
+        }
+
+        private final boolean added;
+        private final int start;
+        private final int length;
+    }
+
+    private static final int MAX_PIECES = 1024;
+
+    private String original;
+    private StringBuilder added;
+    private List<Piece> pieces;
+    private int length;
+    private transient String flat;
+    private transient int cursorPiece;
+    private transient int cursorStart;
+}
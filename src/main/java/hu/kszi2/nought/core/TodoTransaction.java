@@ -0,0 +1,216 @@
+package hu.kszi2.nought.core;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * <p>
+ * The state of the transaction open on a store, used by {@link TodoStore#batch(TodoEdit)}.
+ * </p>
+ * <p>
+ * Every mutation made inside the transaction records how it can be undone, along with the
+ * todo whose invariants it may break.
+ * The invariants of these todos are checked, and the indexes of the store are updated,
+ * only once, when the transaction is committed.
+ * Nested transactions open savepoints, which can be rolled back on their own.
+ * </p>
+ * <p>
+ * Undoing mutations restores the hierarchy, but todos and roots put back into the store
+ * would be iterated last.
+ * To keep their iteration order, the order of the store is copied when a todo existing
+ * before a savepoint is first removed from it after the savepoint.
+ * </p>
+ */
+class TodoTransaction {
+    /**
+     * Opens a savepoint.
+     *
+     * @param events The number of events queued in the batch of the store
+     * @return The new savepoint
+     */
+    Savepoint open(int events) {
+        var savepoint = new Savepoint(undo.size(), events, ++clock);
+        savepoints.add(savepoint);
+        return savepoint;
+    }
+
+    /**
+     * Returns whether the given savepoint is the outermost one, that is, whether it is the
+     * transaction itself.
+     *
+     * @param savepoint The savepoint to check
+     * @return Whether the savepoint was the first opened
+     */
+    boolean isOutermost(Savepoint savepoint) {
+        return savepoints.get(0) == savepoint;
+    }
+
+    /**
+     * Closes the innermost savepoint, keeping its mutations in the transaction.
+     */
+    void release() {
+        savepoints.remove(savepoints.size() - 1);
+    }
+
+    /**
+     * Records how a mutation can be undone.
+     *
+     * @param todo The todo whose invariants are checked at commit
+     * @param step The action undoing the mutation
+     */
+    void record(@NotNull Todo todo, @NotNull Runnable step) {
+        undo.add(step);
+        touched.add(todo);
+    }
+
+    /**
+     * Marks a todo as created inside the transaction.
+     *
+     * @param todo The created todo
+     */
+    void created(@NotNull Todo todo) {
+        created.putIfAbsent(todo, ++clock);
+    }
+
+    /**
+     * Marks a todo as needing to be reindexed at commit.
+     *
+     * @param todo The mutated todo
+     */
+    void markDirty(@NotNull Todo todo) {
+        dirty.add(todo);
+    }
+
+    /**
+     * Returns the todos needing to be reindexed, and forgets them.
+     *
+     * @return The todos mutated since the last call
+     */
+    Set<Todo> takeDirty() {
+        var result = dirty;
+        dirty = new HashSet<>();
+        return result;
+    }
+
+    /**
+     * Returns the todos whose invariants need to be checked at commit.
+     *
+     * @return The todos touched by the transaction
+     */
+    Set<Todo> getTouched() {
+        return touched;
+    }
+
+    /**
+     * Copies the roots of the store into the savepoints which do not have them yet, if the
+     * removed todo existed before the savepoint.
+     *
+     * @param todo  The todo about to be removed from the roots
+     * @param roots The roots of the store
+     */
+    void beforeRootRemoved(@NotNull Todo todo, @NotNull Collection<Todo> roots) {
+        var createdAt = created.getOrDefault(todo, 0L);
+        for (var savepoint : savepoints) {
+            if (savepoint.roots == null && savepoint.openedAt > createdAt) {
+                savepoint.roots = new ArrayList<>(roots);
+            }
+        }
+    }
+
+    /**
+     * Copies the todos of the store into the savepoints which do not have them yet, if the
+     * removed todo existed before the savepoint.
+     *
+     * @param todo  The todo about to be removed from the store
+     * @param todos The todos of the store
+     */
+    void beforeTodoRemoved(@NotNull Todo todo, @NotNull Collection<Todo> todos) {
+        var createdAt = created.getOrDefault(todo, 0L);
+        for (var savepoint : savepoints) {
+            if (savepoint.todos == null && savepoint.openedAt > createdAt) {
+                savepoint.todos = new ArrayList<>(todos);
+            }
+        }
+    }
+
+    /**
+     * Undoes the mutations made since a savepoint, latest first, and closes the savepoint
+     * along with the ones nested into it.
+     *
+     * @param savepoint The savepoint to roll back to
+     */
+    void undoTo(@NotNull Savepoint savepoint) {
+        for (int i = undo.size() - 1; i >= savepoint.undoSize; --i) {
+            undo.remove(i).run();
+        }
+        savepoints.subList(savepoints.indexOf(savepoint), savepoints.size()).clear();
+    }
+
+    /**
+     * A point in the transaction, which can be rolled back to.
+     */
+    static final class Savepoint {
+        /**
+         * Constructs a savepoint.
+         *
+         * @param undoSize The number of mutations recorded before the savepoint
+         * @param events   The number of events queued before the savepoint
+         * @param openedAt The logical time the savepoint was opened
+         */
+        private Savepoint(int undoSize, int events, long openedAt) {
+            this.undoSize = undoSize;
+            this.events = events;
+            this.openedAt = openedAt;
+        }
+
+        /**
+         * Returns the number of events queued in the batch of the store before the
+         * savepoint.
+         *
+         * @return The number of events to keep when rolling back
+         */
+        int getEvents() {
+            return events;
+        }
+
+        /**
+         * Returns the roots of the store, in their order before the first root existing
+         * before the savepoint was removed.
+         *
+         * @return The copied roots, or null if no such root was removed
+         */
+        List<Todo> getRoots() {
+            return roots;
+        }
+
+        /**
+         * Returns the todos of the store, in their order before the first todo existing
+         * before the savepoint was removed.
+         *
+         * @return The copied todos, or null if no such todo was removed
+         */
+        List<Todo> getTodos() {
+            return todos;
+        }
+
+        private final int undoSize;
+        private final int events;
+        private final long openedAt;
+        private List<Todo> roots;
+        private List<Todo> todos;
+    }
+
+    private long clock;
+    private final List<Savepoint> savepoints = new ArrayList<>();
+    private final List<Runnable> undo = new ArrayList<>();
+    private final Set<Todo> touched = new HashSet<>();
+    private final Map<Todo, Long> created = new HashMap<>();
+    private Set<Todo> dirty = new HashSet<>();
+}
@@ -0,0 +1,81 @@
+package hu.kszi2.nought.core;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * The result of checking whether an operation would keep the invariants of a todo.
+ * Checking does not throw, and the error message of a failed check is only built when
+ * it is asked for, so the checks are cheap enough to be used for enabling controls.
+ *
+ * @see Todo#checkCompleted(boolean)
+ * @see BadTodoOperation
+ */
+public final class TodoValidation {
+    /**
+     * Constructs a validation result.
+     *
+     * @param todo   The todo that was checked, or null if the check passed
+     * @param reason The reason of the failure, or null if the check passed
+     */
+    private TodoValidation(Todo todo, String reason) {
+        this.todo = todo;
+        this.reason = reason;
+    }
+
+    /**
+     * Returns the result of a passed check.
+     *
+     * @return The shared successful result
+     */
+    static TodoValidation ok() {
+        return OK;
+    }
+
+    /**
+     * Returns the result of a failed check.
+     *
+     * @param todo   The todo that was checked
+     * @param reason The custom error message of the failure
+     * @return The failed result
+     */
+    static TodoValidation fail(@NotNull Todo todo, @NotNull String reason) {
+        return new TodoValidation(todo, reason);
+    }
+
+    /**
+     * Returns whether the checked operation would keep the invariants.
+     *
+     * @return Whether the check passed
+     */
+    public boolean isValid() {
+        return reason == null;
+    }
+
+    /**
+     * Returns the error message of a failed check, which contains the hierarchy of the
+     * todo, as in {@link BadTodoOperation}.
+     * Unlike the exception, the result does not capture the hierarchy when the check is
+     * made, so the message describes the hierarchy at the time it is asked for.
+     *
+     * @return The error message, or null if the check passed
+     */
+    public String getMessage() {
+        if (reason == null) return null;
+        return BadTodoOperation.makeMessage(todo, reason);
+    }
+
+    /**
+     * Throws if the check failed.
+     * The thrown exception captures the hierarchy of the todo at the time of the call.
+     *
+     * @throws BadTodoOperation If the checked operation would break an invariant
+     */
+    public void orThrow() throws BadTodoOperation {
+        if (reason != null) throw new BadTodoOperation(todo, reason);
+    }
+
+    private static final TodoValidation OK = new TodoValidation(null, null);
+
+    private final Todo todo;
+    private final String reason;
+}
@@ -0,0 +1,59 @@
+package hu.kszi2.nought.core;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Exception class thrown, when deferred child references could not be linked,
+ * because the referenced todos do not exist in the store.
+ * All dangling references found during linking are reported together.
+ *
+ * @see TodoLinker
+ */
+public class UnresolvedReferenceException extends Exception {
+    /**
+     * Constructs the exception from the list of ids that could not be resolved.
+     *
+     * @param missing The ids of the referenced, but not existing todos
+     */
+    public UnresolvedReferenceException(@NotNull List<UUID> missing) {
+        super(makeMessage(missing));
+        this.missing = Collections.unmodifiableList(missing);
+    }
+
+    /**
+     * Returns the ids of all the todos that were referenced, but could not be found.
+     *
+     * @return The list of unresolved ids
+     */
+    public @NotNull List<UUID> getMissing() {
+        return missing;
+    }
+
+    /**
+     * Constructs the error message from the unresolved ids.
+     * At most the first few ids are listed in the message, the rest are only counted.
+     *
+     * @param missing The ids of the referenced, but not existing todos
+     * @return The formatted error message
+     */
+    private static String makeMessage(List<UUID> missing) {
+        var builder = new StringBuilder();
+        builder.append(missing.size());
+        builder.append(" unresolved todo reference(s): ");
+        var shown = Math.min(missing.size(), MAX_SHOWN);
+        for (int i = 0; i < shown; ++i) {
+            if (i != 0) builder.append(", ");
+            builder.append(missing.get(i));
+        }
+        if (shown < missing.size()) builder.append(", ...");
+        return builder.toString();
+    }
+
+    private static final int MAX_SHOWN = 5;
+
+    private final List<UUID> missing;
+}
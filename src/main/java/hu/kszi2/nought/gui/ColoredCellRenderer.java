@@ -7,6 +7,8 @@ import java.awt.*;
 /**
  * Special TreeCellRender that sets the font color for TreeNode render elements
  * whose Todo instance is completed.
+ * Todos with subtodos are also shown with a badge counting the completed todos
+ * under them, like {@code "(3/17 done)"}.
  */
 public class ColoredCellRenderer extends DefaultTreeCellRenderer {
     @Override
@@ -18,6 +20,14 @@ public class ColoredCellRenderer extends DefaultTreeCellRenderer {
                 && !selected) {
             def.setForeground(new Color(156, 177, 158));
         }
+        if (value instanceof TodoNode node && node.getTodo() != null) {
+            var todo = node.getTodo();
+            var descendants = todo.getSubtreeSize() - 1;
+            if (descendants > 0) {
+                var done = todo.getCompletedInSubtree() - (todo.isCompleted() ? 1 : 0);
+                setText(getText() + " (" + done + "/" + descendants + " done)");
+            }
+        }
 
         return def;
     }
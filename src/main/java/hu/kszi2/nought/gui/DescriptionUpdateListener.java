@@ -0,0 +1,204 @@
+package hu.kszi2.nought.gui;
+
+import hu.kszi2.nought.core.BadTodoOperation;
+import hu.kszi2.nought.core.Todo;
+import hu.kszi2.nought.core.TodoStore;
+
+import javax.swing.Timer;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.JTextComponent;
+import java.awt.event.FocusEvent;
+import java.awt.event.FocusListener;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * <p>
+ * Document change listener, which applies the changes of a description field to the
+ * edited todo as edits of its description, instead of replacing the whole description.
+ * </p>
+ * <p>
+ * Like a coalescing {@link FieldUpdateListener}, the changes are collected, and only
+ * applied once no change has occurred for the given delay, when the field loses focus,
+ * or when {@link #flush()} is called.
+ * Only the inserted text is read from the document, and consecutive insertions or
+ * removals, as made by typing, are merged into a single edit.
+ * The collected edits are applied in a single transaction, so they are reported as a
+ * single change of the description.
+ * </p>
+ *
+ * @see Todo#editDescription(int, int, CharSequence)
+ */
+class DescriptionUpdateListener implements DocumentListener, FocusListener {
+    /**
+     * Constructs a listener.
+     *
+     * @param store  The supplier of the store the edited todos are part of
+     * @param source The supplier of the edited todo
+     * @param delay  The milliseconds without changes after which the changes are applied
+     */
+    public DescriptionUpdateListener(Supplier<TodoStore> store, Supplier<Todo> source, int delay) {
+        this.store = store;
+        this.source = source;
+        this.timer = new Timer(delay, ae -> flush());
+        timer.setRepeats(false);
+    }
+
+    /**
+     * Creates a listener for a text component, and attaches it to both the document and
+     * the focus of the component.
+     *
+     * @param field  The text component to listen to
+     * @param store  The supplier of the store the edited todos are part of
+     * @param source The supplier of the edited todo
+     * @param delay  The milliseconds without changes after which the changes are applied
+     * @return The attached listener
+     */
+    public static DescriptionUpdateListener attach(JTextComponent field,
+                                                   Supplier<TodoStore> store,
+                                                   Supplier<Todo> source,
+                                                   int delay) {
+        var listener = new DescriptionUpdateListener(store, source, delay);
+        field.getDocument().addDocumentListener(listener);
+        field.addFocusListener(listener);
+        return listener;
+    }
+
+    @Override
+    public void insertUpdate(DocumentEvent e) {
+        if (!begin()) return;
+        try {
+            var text = e.getDocument().getText(e.getOffset(), e.getLength());
+            add(e.getOffset(), 0, text);
+        } catch (BadLocationException ex) {
+            throw new IllegalStateException("inserted text is not in the document", ex);
+        }
+    }
+
+    @Override
+    public void removeUpdate(DocumentEvent e) {
+        if (!begin()) return;
+        add(e.getOffset(), e.getLength(), "");
+    }
+
+    @Override
+    public void changedUpdate(DocumentEvent e) {
+        /* attribute changes do not change the text */
+    }
+
+    @Override
+    public void focusGained(FocusEvent e) {
+        /* nop */
+    }
+
+    @Override
+    public void focusLost(FocusEvent e) {
+        flush();
+    }
+
+    /**
+     * Applies the pending changes to the todo right away, if there are any.
+     */
+    public void flush() {
+        if (pending == null) return;
+
+        timer.stop();
+        var todo = pending;
+        var applied = edits;
+        pending = null;
+        edits = new ArrayList<>();
+        try {
+            store.get().batch(s -> {
+                for (var edit : applied) {
+                    todo.editDescription(edit.offset, edit.removed, edit.text);
+                }
+            });
+        } catch (BadTodoOperation ex) {
+            /* editing the description cannot break invariants */
+        }
+    }
+
+    /**
+     * Forgets the pending changes, without applying them.
+     * Used when the contents of the document are set from the todo itself.
+     */
+    public void discard() {
+        timer.stop();
+        pending = null;
+        edits = new ArrayList<>();
+    }
+
+    /**
+     * Returns whether there are changes not yet applied to the todo.
+     *
+     * @return Whether the listener has pending changes
+     */
+    public boolean isPending() {
+        return pending != null;
+    }
+
+    /**
+     * Starts collecting changes for the edited todo, unless already collecting, and
+     * restarts the timer.
+     *
+     * @return Whether a todo is edited, and the change should be collected
+     */
+    private boolean begin() {
+        if (pending == null) {
+            pending = source.get();
+            if (pending == null) return false;
+        }
+        timer.restart();
+        return true;
+    }
+
+    /**
+     * Collects an edit, merging it into the previous one if it continues it.
+     *
+     * @param offset  The start of the replaced range
+     * @param removed The length of the replaced range
+     * @param text    The inserted text
+     */
+    private void add(int offset, int removed, String text) {
+        var last = edits.isEmpty() ? null : edits.get(edits.size() - 1);
+        if (last != null && removed == 0 && offset == last.offset + last.text.length()) {
+            edits.set(edits.size() - 1, new Edit(last.offset, last.removed, last.text + text));
+        } else if (last != null && text.isEmpty() && last.text.isEmpty()
+                && (offset == last.offset || offset + removed == last.offset)) {
+            edits.set(edits.size() - 1, new Edit(offset, last.removed + removed, ""));
+        } else {
+            edits.add(new Edit(offset, removed, text));
+        }
+    }
+
+    /**
+     * A replacement of a range of the description.
+     */
+    private static final class Edit {
+        /**
+         * Constructs an edit.
+         *
+         * @param offset  The start of the replaced range
+         * @param removed The length of the replaced range
+         * @param text    The inserted text
+         */
+        private Edit(int offset, int removed, String text) {
+            this.offset = offset;
+            this.removed = removed;
+            this.text = text;
+        }
+
+        private final int offset;
+        private final int removed;
+        private final String text;
+    }
+
+    private final Supplier<TodoStore> store;
+    private final Supplier<Todo> source;
+    private final Timer timer;
+    private Todo pending;
+    private List<Edit> edits = new ArrayList<>();
+}
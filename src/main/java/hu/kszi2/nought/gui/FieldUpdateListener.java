@@ -1,13 +1,19 @@
 package hu.kszi2.nought.gui;
 
+import javax.swing.Timer;
 import javax.swing.event.DocumentEvent;
 import javax.swing.event.DocumentListener;
+import javax.swing.text.JTextComponent;
+import java.awt.event.FocusEvent;
+import java.awt.event.FocusListener;
 import java.util.function.BiConsumer;
 import java.util.function.Supplier;
 
 /**
+ * <p>
  * Universal document change listener.
  * Takes three parameters:
+ * </p>
  * <dl>
  *     <dt><strong>Source</strong></dt>
  *     <dd>
@@ -25,14 +31,23 @@ import java.util.function.Supplier;
  *         to whenever any change occurs in the listened to document.
  *     </dd>
  * </dl>
+ * <p>
+ * If constructed with a delay, changes are coalesced: the document is only marked as
+ * changed, and the input is read and passed to the consumer once, when no change has
+ * occurred for the given delay, when the field loses focus, or when {@link #flush()} is
+ * called.
+ * The source is read at the first change after a commit, so the coalesced changes are
+ * passed along with the object that was edited when they were made.
+ * </p>
  *
  * @param <T> The type of the parameter to pass to the consumer parameter when
  *            invoking it
  */
-class FieldUpdateListener<T> implements DocumentListener {
+class FieldUpdateListener<T> implements DocumentListener, FocusListener {
 
     /**
      * Takes the three callback parameters and stores them in the class.
+     * Every change is passed to the consumer immediately.
      *
      * @param source The source supplier
      * @param input  The input supplier
@@ -44,6 +59,50 @@ class FieldUpdateListener<T> implements DocumentListener {
         this.source = source;
         this.input = input;
         this.consumer = consumer;
+        this.timer = null;
+    }
+
+    /**
+     * Takes the three callback parameters and stores them in the class.
+     * Changes are coalesced, and passed to the consumer after the given delay.
+     *
+     * @param source   The source supplier
+     * @param input    The input supplier
+     * @param consumer The consumer
+     * @param delay    The milliseconds without changes after which the changes are
+     *                 passed to the consumer
+     */
+    public FieldUpdateListener(Supplier<T> source,
+                               Supplier<String> input,
+                               BiConsumer<T, String> consumer,
+                               int delay) {
+        this.source = source;
+        this.input = input;
+        this.consumer = consumer;
+        this.timer = new Timer(delay, ae -> flush());
+        timer.setRepeats(false);
+    }
+
+    /**
+     * Creates a coalescing listener for a text component, and attaches it to both the
+     * document and the focus of the component.
+     *
+     * @param field    The text component to listen to
+     * @param source   The source supplier
+     * @param consumer The consumer, which is passed the text of the component
+     * @param delay    The milliseconds without changes after which the changes are
+     *                 passed to the consumer
+     * @param <T>      The type of the parameter to pass to the consumer
+     * @return The attached listener
+     */
+    public static <T> FieldUpdateListener<T> attach(JTextComponent field,
+                                                    Supplier<T> source,
+                                                    BiConsumer<T, String> consumer,
+                                                    int delay) {
+        var listener = new FieldUpdateListener<>(source, field::getText, consumer, delay);
+        field.getDocument().addDocumentListener(listener);
+        field.addFocusListener(listener);
+        return listener;
     }
 
     @Override
@@ -61,19 +120,71 @@ class FieldUpdateListener<T> implements DocumentListener {
         updateField();
     }
 
+    @Override
+    public void focusGained(FocusEvent e) {
+        /* nop */
+    }
+
+    @Override
+    public void focusLost(FocusEvent e) {
+        flush();
+    }
+
+    /**
+     * Passes the pending changes to the consumer right away, if there are any.
+     */
+    public void flush() {
+        if (pending == null) return;
+
+        if (timer != null) timer.stop();
+        var todo = pending;
+        pending = null;
+        consumer.accept(todo, input.get());
+    }
+
+    /**
+     * Forgets the pending changes, without passing them to the consumer.
+     * Used when the contents of the document are set from the source itself.
+     */
+    public void discard() {
+        if (timer != null) timer.stop();
+        pending = null;
+    }
+
+    /**
+     * Returns whether there are changes not yet passed to the consumer.
+     *
+     * @return Whether the listener has pending changes
+     */
+    public boolean isPending() {
+        return pending != null;
+    }
+
     /**
      * Unified update handler.
      * Calls the source supplier, and if it does not return null,
      * it calls the consumer with the outputs of the two input callbacks.
+     * If changes are coalesced, the call is only scheduled.
      */
     private void updateField() {
-        var todo = source.get();
-        if (todo != null) {
-            consumer.accept(todo, input.get());
+        if (timer == null) {
+            var todo = source.get();
+            if (todo != null) {
+                consumer.accept(todo, input.get());
+            }
+            return;
+        }
+
+        if (pending == null) {
+            pending = source.get();
+            if (pending == null) return;
         }
+        timer.restart();
     }
 
     private final Supplier<T> source;
     private final Supplier<String> input;
     private final BiConsumer<T, String> consumer;
+    private final Timer timer;
+    private T pending;
 }
@@ -3,21 +3,25 @@ package hu.kszi2.nought.gui;
 import hu.kszi2.nought.core.BadTodoOperation;
 import hu.kszi2.nought.core.Todo;
 import hu.kszi2.nought.core.TodoStore;
+import hu.kszi2.nought.core.TodoStoreListener;
+import hu.kszi2.nought.io.TodoFormat;
+import hu.kszi2.nought.io.TodoJournal;
 import org.jetbrains.annotations.*;
 
 import javax.swing.*;
-import javax.swing.tree.DefaultTreeModel;
-import javax.swing.tree.TreeNode;
 import javax.swing.tree.TreeSelectionModel;
 import java.awt.*;
 import java.awt.event.KeyEvent;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileWriter;
+import java.io.IOException;
 import java.text.SimpleDateFormat;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
 
 /**
  * The main frame of the Nought application.
@@ -33,6 +37,7 @@ public class MainFrame extends JFrame {
      */
     public MainFrame(TodoStore store) {
         this.store = store;
+        store.addListener(unsavedListener);
         try {
             setLayout(new GridBagLayout());
 
@@ -73,12 +78,12 @@ public class MainFrame extends JFrame {
         // File > Save
         JMenuItem saveMenu = new JMenuItem("Save", KeyEvent.VK_S);
         saveMenu.setAccelerator(KeyStroke.getKeyStroke("control S"));
-        saveMenu.addActionListener(ae -> saveStore());
+        saveMenu.addActionListener(ae -> saveStore(null));
         fileMenu.add(saveMenu);
         // File > SaveAs
         JMenuItem saveAsMenu = new JMenuItem("Save as", KeyEvent.VK_A);
         saveAsMenu.setAccelerator(KeyStroke.getKeyStroke("control shift S"));
-        saveAsMenu.addActionListener(ae -> saveStoreAs());
+        saveAsMenu.addActionListener(ae -> saveStoreAs(null));
         fileMenu.add(saveAsMenu);
         // --
         fileMenu.addSeparator();
@@ -118,6 +123,25 @@ public class MainFrame extends JFrame {
         deleteTreeMenu.addActionListener(ae -> deleteSelectedTree());
         deleteTreeMenu.setAccelerator(KeyStroke.getKeyStroke("control shift D"));
         todoMenu.add(deleteTreeMenu);
+        // --
+        todoMenu.addSeparator();
+        // Todo > Complete with subtodos
+        completeTreeMenu = new JMenuItem("Complete with subtodoes", KeyEvent.VK_C);
+        completeTreeMenu.addActionListener(ae -> completeSelectedTree());
+        completeTreeMenu.setAccelerator(KeyStroke.getKeyStroke("control shift C"));
+        todoMenu.add(completeTreeMenu);
+        // Todo > Reopen with parents
+        reopenPathMenu = new JMenuItem("Reopen with parents", KeyEvent.VK_R);
+        reopenPathMenu.addActionListener(ae -> reopenSelectedPath());
+        reopenPathMenu.setAccelerator(KeyStroke.getKeyStroke("control shift R"));
+        todoMenu.add(reopenPathMenu);
+        // --
+        todoMenu.addSeparator();
+        // Todo > Find
+        var findMenu = new JMenuItem("Find", KeyEvent.VK_F);
+        findMenu.addActionListener(ae -> search.requestFocusInWindow());
+        findMenu.setAccelerator(KeyStroke.getKeyStroke("control F"));
+        todoMenu.add(findMenu);
 
         jmb.add(fileMenu);
         jmb.add(todoMenu);
@@ -131,6 +155,7 @@ public class MainFrame extends JFrame {
      * This dialog can abort closing the window, by the user selecting cancel.
      */
     private void closeSelf() {
+        commitEdits();
         if (!saved) {
             var yes = 0;
             var cancel = 2;
@@ -140,8 +165,19 @@ public class MainFrame extends JFrame {
                     JOptionPane.YES_NO_CANCEL_OPTION,
                     JOptionPane.QUESTION_MESSAGE);
             if (userSure == cancel) return;
-            if (userSure == yes) saveStore();
+            if (userSure == yes) {
+                saveStore(this::closeNow);
+                return;
+            }
         }
+        closeNow();
+    }
+
+    /**
+     * Closes the frame without asking about unsaved changes.
+     */
+    private void closeNow() {
+        closeJournal();
         dispose();
     }
 
@@ -162,11 +198,7 @@ public class MainFrame extends JFrame {
                 .anchor(GridBagConstraints.LINE_START).build());
 
         name = new JTextField();
-        name.getDocument().addDocumentListener(new FieldUpdateListener<>(this::getEdited, name::getText,
-                (todo, value) -> {
-                    todo.setName(value);
-                    reloadTreeAtSelected();
-                }));
+        fieldUpdates.add(FieldUpdateListener.attach(name, this::getEdited, Todo::setName, EDIT_DELAY));
         add(name, builder.ipad(3, 3)
                 .grid(1, 0)
                 .insets(topInsets)
@@ -182,7 +214,8 @@ public class MainFrame extends JFrame {
                 .anchor(GridBagConstraints.LINE_START)
                 .build());
         description = new JTextArea();
-        description.getDocument().addDocumentListener(new FieldUpdateListener<>(this::getEdited, description::getText, Todo::setDescription));
+        descriptionUpdates = DescriptionUpdateListener.attach(description, () -> store, this::getEdited,
+                EDIT_DELAY);
         add(new JScrollPane(description), builder.ipad(3, 3)
                 .grid(1, 1)
                 .gridwidth(2)
@@ -204,14 +237,14 @@ public class MainFrame extends JFrame {
                 .anchor(GridBagConstraints.LINE_START)
                 .build());
         dueDate = new JTextField();
-        dueDate.getDocument().addDocumentListener(new FieldUpdateListener<>(this::getEdited, dueDate::getText,
+        fieldUpdates.add(FieldUpdateListener.attach(dueDate, this::getEdited,
                 (todo, value) -> {
                     try {
                         todo.setDueDate(value);
                     } catch (Exception ex) {
                         /* ignore */
                     }
-                }));
+                }, EDIT_DELAY));
         add(dueDate, builder.ipad(3, 3)
                 .grid(2, 2)
                 .insets(innerInsets)
@@ -226,14 +259,15 @@ public class MainFrame extends JFrame {
                 .anchor(GridBagConstraints.LINE_START)
                 .build());
         dueTime = new JTextField();
-        dueTime.getDocument().addDocumentListener(new FieldUpdateListener<>(this::getEdited, dueTime::getText,
+        fieldUpdates.add(FieldUpdateListener.attach(dueTime, this::getEdited,
                 (todo, value) -> {
+                    if (!todo.canSetDueTime()) return;
                     try {
                         todo.setDueTime(value);
                     } catch (Exception ex) {
                         /* ignore */
                     }
-                }));
+                }, EDIT_DELAY));
         add(dueTime, builder.ipad(3, 3)
                 .grid(2, 3)
                 .insets(innerInsets)
@@ -254,7 +288,9 @@ public class MainFrame extends JFrame {
         completed = new JCheckBox("Completed");
         completed.addActionListener(ae -> {
             try {
-                if (edited != null) {
+                if (edited != null && !edited.checkCompleted(completed.isSelected()).isValid()) {
+                    completed.setSelected(edited.isCompleted());
+                } else if (edited != null) {
                     edited.setCompleted(completed.isSelected());
                     newTodoMenu.setEnabled(!completed.isEnabled());
                     addSubtodo.setEnabled(!completed.isSelected());
@@ -289,16 +325,28 @@ public class MainFrame extends JFrame {
     }
 
     /**
-     * Creates the todo explorer controls; this contains the tree and the new
-     * button.
+     * Creates the todo explorer controls; this contains the search field, the tree
+     * and the new button.
      */
     private void constructTodoExplorer() {
         var builder = new GridBagConstraintBuilder();
 
+        search = new JTextField();
+        search.setToolTipText("Search todos, like: report* OR meeting");
+        search.addActionListener(ae -> findNext());
+        add(search, builder.ipad(3, 3)
+                .grid(3, 0)
+                .insets(8, 0, 3, 8)
+                .anchor(GridBagConstraints.LINE_END)
+                .fill(GridBagConstraints.HORIZONTAL)
+                .build());
+
         tree = new JTree(new TodoTree(store));
         tree.setCellRenderer(new ColoredCellRenderer());
-        tree.getModel().addTreeModelListener(new TreeModificationListener(e -> setSaved(false)));
         tree.getSelectionModel().setSelectionMode(TreeSelectionModel.SINGLE_TREE_SELECTION);
+        tree.setDragEnabled(true);
+        tree.setDropMode(DropMode.ON_OR_INSERT);
+        tree.setTransferHandler(new TodoTransferHandler());
         tree.addTreeSelectionListener(e -> {
             var path = e.getNewLeadSelectionPath();
             if (path == null) {
@@ -309,12 +357,12 @@ public class MainFrame extends JFrame {
             changeEdited(node.getTodo());
         });
         add(new JScrollPane(tree), builder.ipad(3, 3)
-                .grid(3, 0)
-                .gridheight(5)
+                .grid(3, 1)
+                .gridheight(4)
                 .weight(.4, 1.)
                 .anchor(GridBagConstraints.CENTER)
                 .fill(GridBagConstraints.BOTH)
-                .insets(8, 0, 3, 8)
+                .insets(3, 0, 3, 8)
                 .build());
 
         JButton addNew = new JButton("New");
@@ -327,46 +375,117 @@ public class MainFrame extends JFrame {
                 .build());
     }
 
+    /**
+     * Selects the next todo matching the text of the search field in the tree,
+     * expanding the tree up to it.
+     * Searching for the same text again steps to the next best match, wrapping
+     * around after the last one.
+     */
+    private void findNext() {
+        commitEdits();
+        var query = search.getText();
+        if (!query.equals(lastQuery)) {
+            lastQuery = query;
+            searchResults = store.search(query, SEARCH_LIMIT);
+            searchPosition = 0;
+        }
+        if (searchResults.isEmpty()) {
+            UIManager.getLookAndFeel().provideErrorFeedback(search);
+            return;
+        }
+
+        var todo = searchResults.get(searchPosition);
+        searchPosition = (searchPosition + 1) % searchResults.size();
+        var path = ((TodoTree) tree.getModel()).pathTo(todo);
+        if (path == null) { // removed since searching
+            lastQuery = null;
+            findNext();
+            return;
+        }
+        tree.setSelectionPath(path);
+        tree.expandPath(path);
+        tree.scrollPathToVisible(path);
+    }
+
     /**
      * Shows a file selection dialog to the user, and if they do not cancel it,
      * it imports the todo list from the file into a new store and sets that
      * as our new list of todos to work with.
+     * The format of the file is recognized from its contents, and further saves
+     * to the same file keep using that format.
+     * After loading the file, its journal is replayed on the new store.
+     * The file is loaded in the background, and the tree is only replaced once
+     * the loading has finished.
      */
     private void loadNewStore() {
-        try {
-            var dlg = new FileDialog(this, "Nought - Load", FileDialog.LOAD);
-            var file = showFileDialog(dlg);
-            if (file == null) return; // cancel
-
-            var newStore = new TodoStore();
-            var importer = newStore.newImporter();
-            importer.importFrom(new FileInputStream(file));
-
-            changeCurrentFile(file);
-            store = newStore;
-            var todoTree = new TodoTree(store);
-            tree.setModel(todoTree);
-        } catch (Exception ex) {
-            ex.printStackTrace();
-            JOptionPane.showMessageDialog(
-                    this,
-                    "Could not open file: \n" + ex.getMessage(),
-                    "Error",
-                    JOptionPane.ERROR_MESSAGE);
-        }
+        if (fileTask != null) return;
+        commitEdits();
+
+        var dlg = new FileDialog(this, "Nought - Load", FileDialog.LOAD);
+        var file = showFileDialog(dlg);
+        if (file == null) return; // cancel
+
+        var task = new StoreLoadTask(file);
+        runFileTask(task, "Loading " + file.getName() + "...", () -> {
+            try {
+                var newStore = task.get();
+
+                closeJournal();
+                journal = task.getJournal();
+                changeCurrentFile(file);
+                currentFormat = task.getFormat();
+                store.removeListener(unsavedListener);
+                store = newStore;
+                store.addListener(unsavedListener);
+                var todoTree = new TodoTree(store);
+                tree.setModel(todoTree);
+                lastQuery = null;
+                setSaved(true);
+            } catch (CancellationException ex) {
+                /* nop */
+            } catch (ExecutionException | InterruptedException ex) {
+                var cause = ex.getCause() == null ? ex : ex.getCause();
+                cause.printStackTrace();
+                JOptionPane.showMessageDialog(
+                        this,
+                        "Could not open file: \n" + cause.getMessage(),
+                        "Error",
+                        JOptionPane.ERROR_MESSAGE);
+            }
+        });
     }
 
     /**
      * Saves to the currently opened file.
      * If there is no file open, it behaves as if saveStoreAs was called.
+     * The changes are only appended to the file's journal, which is compacted in
+     * the background once it grows large enough.
+     *
+     * @param onSaved Called after the store has been saved successfully, or {@code null}
      */
-    private void saveStore() {
+    private void saveStore(@Nullable Runnable onSaved) {
+        commitEdits();
         if (currentFile == null) {
-            saveStoreAs();
+            saveStoreAs(onSaved);
+            return;
+        }
+        if (journal == null) {
+            saveStoreTo(currentFile, onSaved);
             return;
         }
 
-        saveStoreTo(store, currentFile);
+        try {
+            journal.flush();
+            setSaved(true);
+            if (journal.size() > JOURNAL_COMPACTION_SIZE) journal.compactInBackground();
+            if (onSaved != null) onSaved.run();
+        } catch (IOException ex) {
+            JOptionPane.showMessageDialog(
+                    this,
+                    "Could not save to file " + currentFile + ":\n" + ex.getMessage(),
+                    "Error",
+                    JOptionPane.ERROR_MESSAGE);
+        }
     }
 
     /**
@@ -374,52 +493,104 @@ public class MainFrame extends JFrame {
      * we save our current list of todos to this file.
      * This file becomes the currently opened file, and any further saves which
      * do not specify a file will be saved to this file.
+     * Files with the {@link TodoFormat#BINARY_EXTENSION} extension are saved in
+     * the binary format, others as XML.
+     *
+     * @param onSaved Called after the store has been saved successfully, or {@code null}
      */
-    private void saveStoreAs() {
+    private void saveStoreAs(@Nullable Runnable onSaved) {
+        commitEdits();
         var dlg = new FileDialog(this, "Nought - Save as...", FileDialog.SAVE);
         var file = showFileDialog(dlg);
         if (file == null) return; // cancel
 
         changeCurrentFile(file);
-        saveStoreTo(store, currentFile);
+        currentFormat = TodoFormat.forFileName(file.getName());
+        saveStoreTo(currentFile, onSaved);
     }
 
     /**
-     * Implementation of saving a store to a file.
-     * Creates the store's default exporter class and exports it into the
-     * file given as a parameter.
+     * Implementation of saving the store to a file.
+     * Takes a snapshot of the store, and exports it into the file given as a
+     * parameter in the background, in the format of the current file.
+     * Changes made to the store while it is being saved are recorded in the new
+     * journal of the file.
      * If any failures occur, an error message is shown to the user and the
      * save is aborted.
      *
-     * @param store The store to save
-     * @param file  The file to save to
+     * @param file    The file to save to
+     * @param onSaved Called after the store has been saved successfully, or {@code null}
      */
-    private void saveStoreTo(TodoStore store, File file) {
-        try {
-            var exporter = store.newExporter();
-            exporter.export(new FileWriter(file));
-            setSaved(true);
-        } catch (Exception ex) {
-            JOptionPane.showMessageDialog(
-                    this,
-                    "Could not save to file " + file + ":\n" + ex.getMessage(),
-                    "Error",
-                    JOptionPane.ERROR_MESSAGE);
-        }
+    private void saveStoreTo(File file, @Nullable Runnable onSaved) {
+        if (fileTask != null) return;
+
+        closeJournal();
+        var snapshot = store.freeze();
+        var newJournal = TodoJournal.begin(file.toPath(), currentFormat, store);
+        var task = new StoreSaveTask(snapshot, file, currentFormat, newJournal);
+        runFileTask(task, "Saving " + file.getName() + "...", () -> {
+            try {
+                task.get();
+                journal = newJournal;
+                if (!newJournal.hasPending()) setSaved(true);
+                if (onSaved != null) onSaved.run();
+            } catch (CancellationException ex) {
+                closeQuietly(newJournal);
+            } catch (ExecutionException | InterruptedException ex) {
+                closeQuietly(newJournal);
+                var cause = ex.getCause() == null ? ex : ex.getCause();
+                JOptionPane.showMessageDialog(
+                        this,
+                        "Could not save to file " + file + ":\n" + cause.getMessage(),
+                        "Error",
+                        JOptionPane.ERROR_MESSAGE);
+            }
+        });
+    }
+
+    /**
+     * Runs a load or save task in the background, showing its progress in a
+     * progress monitor, which allows the user to cancel it.
+     * Only one such task may run at a time.
+     *
+     * @param task    The task to run
+     * @param message The message shown in the progress monitor
+     * @param onDone  Called on the event dispatch thread once the task has finished
+     *                or has been cancelled
+     */
+    private void runFileTask(SwingWorker<?, ?> task, String message, Runnable onDone) {
+        fileTask = task;
+        var monitor = new ProgressMonitor(this, message, null, 0, 100);
+        var cancelPoll = new Timer(200, ae -> {
+            if (monitor.isCanceled()) task.cancel(true);
+        });
+        task.addPropertyChangeListener(e -> {
+            if ("progress".equals(e.getPropertyName())) {
+                monitor.setProgress((Integer) e.getNewValue());
+            } else if (task.isDone() && fileTask == task) {
+                cancelPoll.stop();
+                monitor.close();
+                fileTask = null;
+                onDone.run();
+            }
+        });
+        cancelPoll.start();
+        task.execute();
     }
 
     /**
      * Sets common settings on a file dialog window and presents it to the user.
      * If the user cancels the selection the function returns {@code null},
      * otherwise it returns the full file-path to the selected file.
-     * Also filters for files ending in {@code .not}, however, this does not
+     * Also filters for files ending in {@code .not} or {@code .notb}, however, this does not
      * seem to work on Windows.
      *
      * @param dlg The file dialog to show
      * @return The selected file
      */
     private @Nullable File showFileDialog(@NotNull FileDialog dlg) {
-        dlg.setFilenameFilter((dir, filename) -> filename.endsWith(".not"));
+        dlg.setFilenameFilter((dir, filename) -> filename.endsWith(".not")
+                                                 || filename.endsWith(TodoFormat.BINARY_EXTENSION));
         dlg.setVisible(true);
 
         var dir = dlg.getDirectory();
@@ -432,21 +603,15 @@ public class MainFrame extends JFrame {
 
     /**
      * Adds a new root to the current todo tree and store.
-     * The subtree is refreshed as to immediately allow the user to see the changes.
+     * The todo is built into the store, which shows it in the tree.
      */
     private void newRoot() {
-        var built = getNewTodo();
-        if (built == null) return;
-
-        var treeModel = (TodoTree) tree.getModel();
-        treeModel.addRootTodo(built);
-        treeModel.reload(((TodoNode) treeModel.getRoot()));
+        getNewTodo();
     }
 
     /**
      * Adds a new node to the current todo tree and store, as a child node to
      * whichever node is currently selected for editing.
-     * The subtree is refreshed as to immediately allow the user to see the changes.
      */
     private void newChild() {
         var built = getNewTodo();
@@ -455,7 +620,6 @@ public class MainFrame extends JFrame {
         var treeModel = (TodoTree) tree.getModel();
         var node = ((TodoNode) tree.getLastSelectedPathComponent());
         treeModel.addTodoAsChildToNode(node, built, true);
-        treeModel.reload(node);
     }
 
     /**
@@ -468,6 +632,7 @@ public class MainFrame extends JFrame {
      */
     @Nullable
     private Todo getNewTodo() {
+        commitEdits();
         var todoDlg = new NewTodoDialog(this, store.newBuilder());
         todoDlg.setVisible(true);
         return todoDlg.getBuilt();
@@ -480,13 +645,11 @@ public class MainFrame extends JFrame {
      * message is shown to the user and no action is taken.
      */
     private void deleteSelected() {
+        commitEdits();
         try {
             if (edited != null) {
-                var id = edited.getId();
-                store.removeById(id);
-
                 var node = (TodoNode) tree.getLastSelectedPathComponent();
-                ((DefaultTreeModel) tree.getModel()).removeNodeFromParent(node);
+                ((TodoTree) tree.getModel()).removeTodo(node);
                 changeEdited(null);
             }
         } catch (BadTodoOperation ex) {
@@ -505,6 +668,7 @@ public class MainFrame extends JFrame {
      * This is a really destructive operation, handle with care.
      */
     private void deleteSelectedTree() {
+        commitEdits();
         if (edited != null) {
             var yes = 0;
             var userSure = JOptionPane.showConfirmDialog(this,
@@ -514,15 +678,58 @@ public class MainFrame extends JFrame {
                     JOptionPane.QUESTION_MESSAGE);
             if (userSure != yes) return;
 
-            var id = edited.getId();
-            store.removeBranchAtId(id);
-
             var node = (TodoNode) tree.getLastSelectedPathComponent();
-            ((DefaultTreeModel) tree.getModel()).removeNodeFromParent(node);
+            ((TodoTree) tree.getModel()).removeBranch(node);
             changeEdited(null);
         }
     }
 
+    /**
+     * Completes the selected todo along with all its subtodos.
+     */
+    private void completeSelectedTree() {
+        if (edited == null) return;
+
+        commitEdits();
+        store.completeBranch(edited.getId());
+        changeEdited(edited);
+    }
+
+    /**
+     * Reopens the selected todo along with all its parents.
+     */
+    private void reopenSelectedPath() {
+        if (edited == null) return;
+
+        commitEdits();
+        store.reopenPath(edited.getId());
+        changeEdited(edited);
+    }
+
+    /**
+     * Stops recording changes into the journal of the current file, if there is one.
+     * Changes that have not been saved are discarded from the journal.
+     */
+    private void closeJournal() {
+        if (journal == null) return;
+
+        closeQuietly(journal);
+        journal = null;
+    }
+
+    /**
+     * Closes a journal, ignoring any failures.
+     *
+     * @param journal The journal to close
+     */
+    private static void closeQuietly(TodoJournal journal) {
+        try {
+            journal.close();
+        } catch (IOException ex) {
+            /* nop */
+        }
+    }
+
     /**
      * Basically a setter for the currently open file.
      * Updates all file related redundant information: the file variable
@@ -552,6 +759,7 @@ public class MainFrame extends JFrame {
      * @param todo The todo to set as the currently edited todo
      */
     private void changeEdited(Todo todo) {
+        commitEdits();
         edited = todo;
         if (edited == null) {
             name.setEnabled(false);
@@ -569,6 +777,9 @@ public class MainFrame extends JFrame {
             newTodoMenu.setEnabled(false);
             deleteMenu.setEnabled(false);
             deleteTreeMenu.setEnabled(false);
+            completeTreeMenu.setEnabled(false);
+            reopenPathMenu.setEnabled(false);
+            discardEdits();
             return;
         }
         name.setEnabled(true);
@@ -590,15 +801,7 @@ public class MainFrame extends JFrame {
             dueDate.setText("");
         }
 
-        var childrenOk = todo.getChildren().stream()
-                .map(id -> store.findById(id))
-                .allMatch(Todo::isCompleted);
-        var parent = todo.getParent();
-        boolean parentOk = true;
-        if (parent != null) {
-            parentOk = !parent.isCompleted();
-        }
-        completed.setEnabled(childrenOk && parentOk);
+        completed.setEnabled(edited.canComplete() && edited.canReopen());
         completed.setSelected(edited.isCompleted());
 
         addSubtodo.setEnabled(!edited.isCompleted());
@@ -606,6 +809,32 @@ public class MainFrame extends JFrame {
         newTodoMenu.setEnabled(true);
         deleteMenu.setEnabled(true);
         deleteTreeMenu.setEnabled(true);
+        completeTreeMenu.setEnabled(edited.getCompletedInSubtree() < edited.getSubtreeSize());
+        reopenPathMenu.setEnabled(edited.isCompleted());
+        discardEdits();
+    }
+
+    /**
+     * Passes the pending edits of the text fields to the edited todo.
+     * Called before anything that reads the store, or changes which todo is edited,
+     * as the fields only commit their edits once the user stops typing.
+     */
+    private void commitEdits() {
+        for (var update : fieldUpdates) {
+            update.flush();
+        }
+        descriptionUpdates.flush();
+    }
+
+    /**
+     * Forgets the pending edits of the text fields.
+     * Called after the fields have been filled from the edited todo.
+     */
+    private void discardEdits() {
+        for (var update : fieldUpdates) {
+            update.discard();
+        }
+        descriptionUpdates.discard();
     }
 
     /**
@@ -618,16 +847,6 @@ public class MainFrame extends JFrame {
         return edited;
     }
 
-    /**
-     * Instructs the jtree to reload itself at the currently selected node.
-     * If there is nothing selected, the function is nop.
-     */
-    private void reloadTreeAtSelected() {
-        if (edited != null) {
-            ((DefaultTreeModel) tree.getModel()).reload(((TreeNode) tree.getLastSelectedPathComponent()));
-        }
-    }
-
     /**
      * Sets the saved status of the currently open todo store.
      * If the saved status is set to true and the title starts with an asterisk,
@@ -652,18 +871,34 @@ public class MainFrame extends JFrame {
 
     private boolean saved = true;
     private JMenuItem deleteTreeMenu;
+    private JMenuItem completeTreeMenu;
+    private JMenuItem reopenPathMenu;
     private JMenuItem deleteMenu;
     private JMenuItem newTodoMenu;
     private TodoStore store;
+    private final TodoStoreListener unsavedListener = e -> setSaved(false);
     private JTree tree;
+    private JTextField search;
+    private String lastQuery;
+    private List<Todo> searchResults = List.of();
+    private int searchPosition;
     private JTextField name;
     private JTextArea description;
     private JTextField dueDate;
     private JTextField dueTime;
     private JCheckBox completed;
+    private final List<FieldUpdateListener<Todo>> fieldUpdates = new ArrayList<>();
+    private DescriptionUpdateListener descriptionUpdates;
 
     private JButton addSubtodo;
     private JButton remove;
     private Todo edited;
     private File currentFile;
+    private TodoFormat currentFormat = TodoFormat.XML;
+    private TodoJournal journal;
+    private SwingWorker<?, ?> fileTask;
+
+    private static final long JOURNAL_COMPACTION_SIZE = 1 << 20;
+    private static final int SEARCH_LIMIT = 100;
+    private static final int EDIT_DELAY = 300;
 }
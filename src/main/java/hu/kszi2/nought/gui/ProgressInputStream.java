@@ -0,0 +1,84 @@
+package hu.kszi2.nought.gui;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.function.BooleanSupplier;
+import java.util.function.IntConsumer;
+
+/**
+ * An input stream which reports the percentage of the expected bytes read through
+ * it, and aborts reading if the operation using it has been cancelled.
+ * Used to track the progress of the importers, which read their whole input through
+ * the stream.
+ */
+class ProgressInputStream extends FilterInputStream {
+    /**
+     * Wraps a stream with progress reporting.
+     *
+     * @param in        The stream to read from
+     * @param total     The expected number of bytes to be read
+     * @param progress  The callback receiving the read percentage, whenever it changes
+     * @param cancelled The supplier which tells whether reading should be aborted
+     */
+    ProgressInputStream(InputStream in, long total, IntConsumer progress, BooleanSupplier cancelled) {
+        super(in);
+        this.total = Math.max(total, 1);
+        this.progress = progress;
+        this.cancelled = cancelled;
+    }
+
+    @Override
+    public int read() throws IOException {
+        checkCancelled();
+        var b = super.read();
+        if (b >= 0) advance(1);
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        checkCancelled();
+        var count = super.read(b, off, len);
+        if (count > 0) advance(count);
+        return count;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        checkCancelled();
+        var count = super.skip(n);
+        if (count > 0) advance(count);
+        return count;
+    }
+
+    /**
+     * Throws if the operation reading the stream has been cancelled.
+     *
+     * @throws InterruptedIOException If the operation has been cancelled
+     */
+    private void checkCancelled() throws InterruptedIOException {
+        if (cancelled.getAsBoolean()) throw new InterruptedIOException("reading was cancelled");
+    }
+
+    /**
+     * Counts the read bytes, and reports the new percentage if it changed.
+     *
+     * @param count The number of bytes read
+     */
+    private void advance(long count) {
+        read += count;
+        var percent = (int) Math.min(100, read * 100 / total);
+        if (percent != reported) {
+            reported = percent;
+            progress.accept(percent);
+        }
+    }
+
+    private final long total;
+    private final IntConsumer progress;
+    private final BooleanSupplier cancelled;
+    private long read;
+    private int reported;
+}
@@ -1,19 +1,40 @@
 package hu.kszi2.nought.gui;
 
+import hu.kszi2.nought.core.Todo;
+import hu.kszi2.nought.core.TodoStore;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 /**
  * Special TodoNode which represents the up-most root element of the tree.
  * This is needed for the JTree can only render trees and not forests, hence
  * by taking all the subtrees in the forest and adding them under a common root
  * node, we make them into one tree.
  * This is what this class does.
+ * The children of the node are the root todos of the store.
  */
 public class RootTodoNode extends TodoNode {
+    /**
+     * Constructs a RootTodoNode without any children.
+     */
+    public RootTodoNode() {
+        this((TodoStore) null);
+    }
+
     /**
      * Constructs a RootTodoNode by passing a string to the superclass of
      * TodoNode using the protected constructor.
+     * The root todos of the given store are shown as its children.
+     *
+     * @param store The store whose root todos to show, or {@code null}
      */
-    public RootTodoNode() {
+    public RootTodoNode(TodoStore store) {
         super("Todos");
+        this.store = store;
     }
 
     /**
@@ -36,4 +57,71 @@ public class RootTodoNode extends TodoNode {
     public String toString() {
         return "Todos";
     }
+
+    /**
+     * Drops the cached list of root todos, so that it is rebuilt from the store
+     * when next needed.
+     * Needs to be called whenever the roots of the store change.
+     */
+    void invalidateRoots() {
+        roots = null;
+        rootIndices = null;
+    }
+
+    /**
+     * Removes a former root todo from the cached list of root todos.
+     * The cached list follows the events of the store, instead of being rebuilt from the
+     * store, so that the positions stay correct when the events of a batch are delivered
+     * after all its mutations.
+     *
+     * @param todo The former root todo
+     * @return The former position of the todo, or -1 if it was not a root
+     */
+    int rootRemoved(Todo todo) {
+        var index = indexOfChild(todo);
+        if (index < 0) return index;
+        roots.remove(index);
+        rootIndices = null;
+        return index;
+    }
+
+    /**
+     * Appends a new root todo to the cached list of root todos, as new roots are always
+     * last in the store.
+     *
+     * @param todo The new root todo
+     * @return The position of the new root
+     */
+    int rootAppended(Todo todo) {
+        if (roots == null) return indexOfChild(todo);
+        if (rootIndices != null && rootIndices.containsKey(todo)) return rootIndices.get(todo);
+        roots.add(todo);
+        if (rootIndices != null) rootIndices.put(todo, roots.size() - 1);
+        return roots.size() - 1;
+    }
+
+    @Override
+    protected List<Todo> childTodos() {
+        if (store == null) return Collections.emptyList();
+        if (roots == null) {
+            roots = new ArrayList<>(store.getRoots());
+        }
+        return roots;
+    }
+
+    @Override
+    protected int indexOfChild(Todo child) {
+        if (rootIndices == null) {
+            var list = childTodos();
+            rootIndices = new HashMap<>(list.size() * 2);
+            for (int i = 0; i < list.size(); ++i) {
+                rootIndices.put(list.get(i), i);
+            }
+        }
+        return rootIndices.getOrDefault(child, -1);
+    }
+
+    private final TodoStore store;
+    private List<Todo> roots;
+    private Map<Todo, Integer> rootIndices;
 }
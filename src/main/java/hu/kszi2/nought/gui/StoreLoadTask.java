@@ -0,0 +1,88 @@
+package hu.kszi2.nought.gui;
+
+import hu.kszi2.nought.core.TodoStore;
+import hu.kszi2.nought.io.TodoFormat;
+import hu.kszi2.nought.io.TodoJournal;
+
+import javax.swing.*;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.concurrent.CancellationException;
+
+/**
+ * A background task which loads a todo file into a new store, without blocking the
+ * event dispatch thread.
+ * The format of the file is recognized from its contents, and the journal of the file
+ * is replayed on the loaded store.
+ * Progress is reported as the percentage of the file read; binary files are memory
+ * mapped instead of read, so their progress is not tracked.
+ */
+class StoreLoadTask extends SwingWorker<TodoStore, Void> {
+    /**
+     * Constructs the task loading the given file.
+     *
+     * @param file The file to load
+     */
+    StoreLoadTask(File file) {
+        this.file = file;
+    }
+
+    @Override
+    protected TodoStore doInBackground() throws Exception {
+        var path = file.toPath();
+        format = TodoFormat.detect(path);
+        var store = new TodoStore();
+        var importer = format.newImporter(store);
+        if (format == TodoFormat.BINARY) {
+            importer.importFrom(path);
+        } else {
+            try (var strm = new ProgressInputStream(Files.newInputStream(path),
+                    Files.size(path),
+                    this::setProgress,
+                    this::isCancelled)) {
+                importer.importFrom(strm);
+            }
+        }
+
+        journal = TodoJournal.open(path, format, store);
+        if (isCancelled()) {
+            journal.close();
+            throw new CancellationException();
+        }
+        setProgress(100);
+        return store;
+    }
+
+    /**
+     * Returns the loaded file.
+     *
+     * @return The file
+     */
+    File getFile() {
+        return file;
+    }
+
+    /**
+     * Returns the recognized format of the loaded file.
+     * Only valid after the task has completed successfully.
+     *
+     * @return The format of the file
+     */
+    TodoFormat getFormat() {
+        return format;
+    }
+
+    /**
+     * Returns the journal of the file, which records the changes of the loaded store.
+     * Only valid after the task has completed successfully.
+     *
+     * @return The opened journal
+     */
+    TodoJournal getJournal() {
+        return journal;
+    }
+
+    private final File file;
+    private volatile TodoFormat format;
+    private volatile TodoJournal journal;
+}
@@ -0,0 +1,76 @@
+package hu.kszi2.nought.gui;
+
+import hu.kszi2.nought.core.TodoSnapshot;
+import hu.kszi2.nought.io.TodoFormat;
+import hu.kszi2.nought.io.TodoJournal;
+
+import javax.swing.*;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.CancellationException;
+
+/**
+ * A background task which saves a snapshot of a store to a file, without blocking the
+ * event dispatch thread.
+ * Since the snapshot is immutable, the store itself can be changed while it is saved;
+ * these changes are recorded by the new journal of the file.
+ * The file is first written to a temporary file, which replaces the file once it is
+ * complete, so a failed or cancelled save leaves the old file intact.
+ * Progress is reported as the percentage of todos written.
+ */
+class StoreSaveTask extends SwingWorker<Void, Void> {
+    /**
+     * Constructs the task saving the given snapshot.
+     *
+     * @param snapshot The snapshot of the store to save
+     * @param file     The file to save to
+     * @param format   The format to save in
+     * @param journal  The journal begun for the file when the snapshot was taken
+     */
+    StoreSaveTask(TodoSnapshot snapshot, File file, TodoFormat format, TodoJournal journal) {
+        this.snapshot = snapshot;
+        this.file = file;
+        this.format = format;
+        this.journal = journal;
+    }
+
+    @Override
+    protected Void doInBackground() throws Exception {
+        var path = file.toPath();
+        var total = Math.max(snapshot.size(), 1);
+        var exporter = format.newExporter(snapshot);
+        exporter.setProgressListener(written -> {
+            if (isCancelled()) throw new CancellationException();
+            setProgress(written * 100 / total);
+        });
+
+        var tmp = path.resolveSibling(path.getFileName() + ".saving");
+        try (var strm = new FileOutputStream(tmp.toFile())) {
+            exporter.export(strm);
+            strm.getFD().sync();
+        } catch (Exception ex) {
+            Files.deleteIfExists(tmp);
+            throw ex;
+        }
+
+        journal.start(tmp);
+        Files.move(tmp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        return null;
+    }
+
+    /**
+     * Returns the journal recording the changes made since the snapshot was taken.
+     *
+     * @return The journal of the saved file
+     */
+    TodoJournal getJournal() {
+        return journal;
+    }
+
+    private final TodoSnapshot snapshot;
+    private final File file;
+    private final TodoFormat format;
+    private final TodoJournal journal;
+}
@@ -1,12 +1,32 @@
 package hu.kszi2.nought.gui;
 
 import hu.kszi2.nought.core.Todo;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import javax.swing.tree.DefaultMutableTreeNode;
 import javax.swing.tree.MutableTreeNode;
+import javax.swing.tree.TreeNode;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 
 /**
+ * <p>
  * A node in the TodoTree GUI element showing a specific todo object.
+ * </p>
+ * <p>
+ * The children of the node are not stored in the node, they are answered straight
+ * from the children of the todo object.
+ * The nodes of the children are only created when they are first asked for, which
+ * happens when the node is expanded on the GUI; so only the visible part of the todo
+ * hierarchy is materialized as nodes.
+ * Once created, the node of a child is kept, so that the tree paths stay valid.
+ * </p>
  */
 public class TodoNode extends DefaultMutableTreeNode {
     /**
@@ -36,16 +56,153 @@ public class TodoNode extends DefaultMutableTreeNode {
      * Special add function which adds the component under this in the GUI,
      * and if linkToParent is true, also links the given child's todo object
      * to that of ours.
-     * This maintains the tree structure provided in the GUI layer in the backend
-     * layer.
+     * Since the children of the node are those of its todo, an unlinked child
+     * only shows up in the GUI once the todos are linked.
      *
      * @param newChild     The child to add under this
      * @param linkToParent Whether to link the child's todo under ours
      */
     public void add(MutableTreeNode newChild, boolean linkToParent) {
-        super.add(newChild);
+        var child = (TodoNode) newChild;
+        adopt(child.getTodo(), child);
         if (linkToParent && todo != null)
-            todo.addChild(((TodoNode) newChild).getTodo());
+            todo.addChild(child.getTodo());
+    }
+
+    /**
+     * Children are taken from the todo hierarchy, they cannot be inserted directly.
+     *
+     * @param newChild The child to insert
+     * @param index    The index to insert at
+     * @throws UnsupportedOperationException Always, use {@link #add(MutableTreeNode, boolean)}
+     */
+    @Override
+    public void insert(MutableTreeNode newChild, int index) {
+        throw new UnsupportedOperationException("todo nodes are backed by the todo hierarchy");
+    }
+
+    /**
+     * Forgets the node of a child whose todo has been removed from the hierarchy.
+     *
+     * @param child The child node to forget
+     */
+    void forget(@NotNull TodoNode child) {
+        if (childNodes != null && childNodes.remove(child.getTodo(), child)) {
+            child.setParent(null);
+        }
+    }
+
+    /**
+     * Forgets the nodes of all todos which are no longer children of this node.
+     */
+    void forgetStale() {
+        if (childNodes == null) return;
+
+        var live = new HashSet<>(childTodos());
+        childNodes.values().removeIf(child -> {
+            if (live.contains(child.getTodo())) return false;
+            child.setParent(null);
+            return true;
+        });
+    }
+
+    /**
+     * Returns the node of a child todo, if it has already been created.
+     *
+     * @param child The child todo
+     * @return The node showing the child todo, or {@code null}
+     */
+    @Nullable TodoNode existingNodeFor(@NotNull Todo child) {
+        return childNodes == null ? null : childNodes.get(child);
+    }
+
+    /**
+     * Returns the nodes of the children which have already been created.
+     *
+     * @return The created child nodes
+     */
+    Collection<TodoNode> existingChildNodes() {
+        return childNodes == null ? Collections.emptyList() : childNodes.values();
+    }
+
+    @Override
+    public int getChildCount() {
+        return childTodos().size();
+    }
+
+    @Override
+    public TreeNode getChildAt(int index) {
+        return nodeFor(childTodos().get(index));
+    }
+
+    @Override
+    public int getIndex(TreeNode node) {
+        if (!(node instanceof TodoNode child) || child.getParent() != this) return -1;
+        return indexOfChild(child.getTodo());
+    }
+
+    @Override
+    public Enumeration<TreeNode> children() {
+        var it = childTodos().iterator();
+        return new Enumeration<>() {
+            @Override
+            public boolean hasMoreElements() {
+                return it.hasNext();
+            }
+
+            @Override
+            public TreeNode nextElement() {
+                return nodeFor(it.next());
+            }
+        };
+    }
+
+    /**
+     * Returns the todos shown as the children of this node.
+     *
+     * @return The list of child todos
+     */
+    protected List<Todo> childTodos() {
+        if (todo == null) return Collections.emptyList();
+        return todo.getChildTodos();
+    }
+
+    /**
+     * Returns the index of a child todo among the children of this node.
+     *
+     * @param child The child todo to search for
+     * @return The index of the child, or -1
+     */
+    protected int indexOfChild(Todo child) {
+        return childTodos().indexOf(child);
+    }
+
+    /**
+     * Returns the node of a child todo, creating it if it does not exist yet.
+     *
+     * @param child The child todo
+     * @return The node showing the child todo
+     */
+    protected TodoNode nodeFor(Todo child) {
+        if (childNodes != null) {
+            var node = childNodes.get(child);
+            if (node != null) return node;
+        }
+        var node = new TodoNode(child);
+        adopt(child, node);
+        return node;
+    }
+
+    /**
+     * Sets a node as the node of a child todo.
+     *
+     * @param child The child todo
+     * @param node  The node to show the child with
+     */
+    private void adopt(Todo child, TodoNode node) {
+        if (childNodes == null) childNodes = new HashMap<>();
+        childNodes.put(child, node);
+        node.setParent(this);
     }
 
     /**
@@ -80,4 +237,5 @@ public class TodoNode extends DefaultMutableTreeNode {
     }
 
     private final Todo todo;
+    private Map<Todo, TodoNode> childNodes;
 }
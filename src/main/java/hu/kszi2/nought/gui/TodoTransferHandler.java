@@ -0,0 +1,124 @@
+package hu.kszi2.nought.gui;
+
+import hu.kszi2.nought.core.BadTodoOperation;
+
+import javax.swing.*;
+import java.awt.datatransfer.DataFlavor;
+import java.awt.datatransfer.Transferable;
+import java.awt.datatransfer.UnsupportedFlavorException;
+import java.io.IOException;
+
+/**
+ * Transfer handler of the todo tree, which allows moving todos in the hierarchy by
+ * dragging and dropping their nodes.
+ * Dropping a node onto another makes it the last child of that, while dropping it
+ * between nodes inserts it at that position.
+ * The move itself is performed by {@link TodoTree#moveTodo(TodoNode, TodoNode, int)}.
+ */
+public class TodoTransferHandler extends TransferHandler {
+    @Override
+    public int getSourceActions(JComponent c) {
+        return MOVE;
+    }
+
+    @Override
+    protected Transferable createTransferable(JComponent c) {
+        var path = ((JTree) c).getSelectionPath();
+        if (path == null || !(path.getLastPathComponent() instanceof TodoNode node)) return null;
+        if (node.getTodo() == null) return null;
+        return new NodeTransferable(node);
+    }
+
+    @Override
+    public boolean canImport(TransferSupport support) {
+        if (!support.isDrop() || !support.isDataFlavorSupported(NODE_FLAVOR)) return false;
+
+        var node = draggedNode(support);
+        var location = (JTree.DropLocation) support.getDropLocation();
+        if (node == null || location.getPath() == null) return false;
+
+        var target = (TodoNode) location.getPath().getLastPathComponent();
+        var targetTodo = target.getTodo();
+        if (targetTodo == null) return true;
+        if (targetTodo == node.getTodo() || targetTodo.isDescendantOf(node.getTodo())) return false;
+        return !targetTodo.isCompleted() || node.getTodo().isCompleted();
+    }
+
+    @Override
+    public boolean importData(TransferSupport support) {
+        if (!canImport(support)) return false;
+
+        var node = draggedNode(support);
+        var tree = (JTree) support.getComponent();
+        var location = (JTree.DropLocation) support.getDropLocation();
+        var target = (TodoNode) location.getPath().getLastPathComponent();
+        var index = location.getChildIndex();
+        if (index < 0) {
+            index = target.getChildCount();
+        }
+        if (node.getParent() == target && target.getIndex(node) < index) {
+            --index; // the node is removed before it is inserted
+        }
+        if (index > target.getChildCount() - (node.getParent() == target ? 1 : 0)) return false;
+
+        try {
+            var model = (TodoTree) tree.getModel();
+            model.moveTodo(node, target, index);
+            var path = model.pathTo(node.getTodo());
+            tree.setSelectionPath(path);
+            tree.scrollPathToVisible(path);
+            return true;
+        } catch (BadTodoOperation | IllegalArgumentException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Returns the node being dragged, if it comes from this application.
+     *
+     * @param support The transfer being handled
+     * @return The dragged node, or {@code null}
+     */
+    private static TodoNode draggedNode(TransferSupport support) {
+        try {
+            return (TodoNode) support.getTransferable().getTransferData(NODE_FLAVOR);
+        } catch (UnsupportedFlavorException | IOException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * The transferable of a dragged node, which is only meaningful within the application.
+     */
+    private static class NodeTransferable implements Transferable {
+        /**
+         * Constructs the transferable of a node.
+         *
+         * @param node The dragged node
+         */
+        NodeTransferable(TodoNode node) {
+            this.node = node;
+        }
+
+        @Override
+        public DataFlavor[] getTransferDataFlavors() {
+            return new DataFlavor[]{NODE_FLAVOR};
+        }
+
+        @Override
+        public boolean isDataFlavorSupported(DataFlavor flavor) {
+            return NODE_FLAVOR.equals(flavor);
+        }
+
+        @Override
+        public Object getTransferData(DataFlavor flavor) throws UnsupportedFlavorException {
+            if (!isDataFlavorSupported(flavor)) throw new UnsupportedFlavorException(flavor);
+            return node;
+        }
+
+        private final TodoNode node;
+    }
+
+    private static final DataFlavor NODE_FLAVOR =
+            new DataFlavor(DataFlavor.javaJVMLocalObjectMimeType + ";class=" + TodoNode.class.getName(), "Todo node");
+}
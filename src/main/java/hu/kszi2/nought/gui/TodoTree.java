@@ -1,15 +1,50 @@
 package hu.kszi2.nought.gui;
 
+import hu.kszi2.nought.core.BadTodoOperation;
 import hu.kszi2.nought.core.Todo;
+import hu.kszi2.nought.core.TodoEvent;
 import hu.kszi2.nought.core.TodoStore;
+import hu.kszi2.nought.core.TodoStoreListener;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import javax.swing.tree.DefaultTreeModel;
+import javax.swing.tree.TreePath;
+import java.util.ArrayDeque;
+import java.util.Arrays;
 import java.util.HashSet;
+import java.util.List;
 
 /**
+ * <p>
  * The class for providing the model for the JTree showing the tree structure
  * of the Todo objects.
+ * </p>
+ * <p>
+ * The model is backed by the store: the children of each node are answered
+ * straight from the children lists of the todo objects, and the root todos of
+ * the store.
+ * Nodes are only created for the paths the JTree asks for, that is, the
+ * expanded ones, so constructing the model does not depend on the size of the
+ * store.
+ * </p>
+ * <p>
+ * The model listens to the store, and translates each mutation into targeted
+ * events about the nodes affected: a changed todo only updates its own row and
+ * those of its ancestors, whose badges count it, while added, removed and moved
+ * todos are reported as inserted and removed nodes.
+ * Nodes which have not been created are not reported, as the JTree does not show
+ * them; so the cost of a mutation does not depend on the size of the subtree
+ * under the mutated todo.
+ * </p>
+ * <p>
+ * The events of a batch are delivered after all its mutations, when the positions they
+ * carry may be stale, so the structural events of a batch are not translated one by one.
+ * Instead, the structure of each affected parent is reported as changed once, after the
+ * batch, while the other events are translated as usual.
+ * </p>
+ *
+ * @see TodoNode
  */
 public class TodoTree extends DefaultTreeModel {
     /**
@@ -18,45 +53,100 @@ public class TodoTree extends DefaultTreeModel {
      * @param store The store of all todo elements
      */
     public TodoTree(TodoStore store) {
-        super(new RootTodoNode());
+        super(new RootTodoNode(store));
         this.store = store;
-        constructNodes();
+        store.addListener(new TodoStoreListener() {
+            @Override
+            public void todoChanged(@NotNull TodoEvent event) {
+                TodoTree.this.todoChanged(event);
+            }
+
+            @Override
+            public void todosChanged(@NotNull List<TodoEvent> events) {
+                batchChanged(events);
+            }
+        });
+    }
+
+    /**
+     * Translates a mutation of the store into events about the affected nodes.
+     *
+     * @param event The store event
+     */
+    private void todoChanged(TodoEvent event) {
+        var todo = event.getTodo();
+        switch (event.getKind()) {
+            case CREATED -> {
+                if (todo.getParent() != null) return;
+                var rootest = (RootTodoNode) getRoot();
+                nodesWereInserted(rootest, new int[]{rootest.rootAppended(todo)});
+            }
+            case FIELD_CHANGED -> nodeChanged(existingNode(todo));
+            case COMPLETED_TOGGLED, PATH_REOPENED -> pathChanged(todo);
+            case BRANCH_COMPLETED -> {
+                pathChanged(todo);
+                var node = existingNode(todo);
+                if (node != null) subtreeChanged(node);
+            }
+            case CHILD_ADDED, MOVED -> {
+                var node = nodeRemoved(event.getPreviousParent(), event.getPreviousIndex(), todo);
+                nodeInserted(event.getParent(), event.getIndex(), todo, node);
+            }
+            case REMOVED, BRANCH_REMOVED -> nodeRemoved(event.getParent(), event.getPreviousIndex(), todo);
+        }
     }
 
     /**
-     * Constructs all todo objects into the tree of the TodoNode objects to
-     * be shown on the GUI.
+     * Translates the events of a batch, delivered after all its mutations.
+     * The nodes of the parents whose children changed are brought up to date with the
+     * store, and reported as changed in structure; the other events are translated
+     * afterwards, as they would be outside a batch.
+     *
+     * @param events The events of the batch
      */
-    private void constructNodes() {
-        var it = store.iterator();
-        var roots = new HashSet<Todo>();
-
-        while (it.hasNext()) {
-            var todo = it.next();
-            while (todo.getParent() != null) {
-                todo = todo.getParent();
+    private void batchChanged(List<TodoEvent> events) {
+        var parents = new HashSet<Todo>(); // null stands for the root node
+        for (var event : events) {
+            switch (event.getKind()) {
+                case CREATED -> {
+                    if (event.getTodo().getParent() == null) parents.add(null);
+                }
+                case CHILD_ADDED, MOVED -> {
+                    parents.add(event.getPreviousParent());
+                    parents.add(event.getParent());
+                }
+                case REMOVED, BRANCH_REMOVED -> parents.add(event.getParent());
+                default -> { /* translated after the structure changes */ }
             }
-            // todo is now a root node
-            roots.add(todo);
         }
 
-        var rootest = ((TodoNode) getRoot());
-        it = roots.iterator();
-        while (it.hasNext()) {
-            var todo = it.next();
-            addTodoAsChildToNode(rootest, todo, false);
+        for (var parent : parents) {
+            if (parent != null && !store.contains(parent.getId())) continue;
+            var node = existingNode(parent);
+            if (node == null) continue;
+
+            if (node instanceof RootTodoNode rootest) rootest.invalidateRoots();
+            node.forgetStale();
+            nodeStructureChanged(node);
+            if (parent != null) pathChanged(parent);
+        }
+
+        for (var event : events) {
+            switch (event.getKind()) {
+                case CREATED, CHILD_ADDED, MOVED, REMOVED, BRANCH_REMOVED -> { /* reported above */ }
+                default -> todoChanged(event);
+            }
         }
     }
 
     /**
-     * Adds a new top-level (root) todo object to the tree.
+     * Adds a new top-level (root) todo object to the store, if it is not stored yet.
+     * The todo is shown in the tree when it is added to the store.
      *
      * @param todo The todo to add
      */
     public void addRootTodo(Todo todo) {
-        var node = new TodoNode(todo);
-        var rootest = ((TodoNode) getRoot());
-        rootest.add(node);
+        store.add(todo);
     }
 
     /**
@@ -64,6 +154,9 @@ public class TodoTree extends DefaultTreeModel {
      * specified todo node.
      * If linkToParent is specified, the todo is added in a way, that the todo
      * object itself will also be added to its parent to do object as a child.
+     * The children of the todo do not need to be added, they are shown
+     * through the todo.
+     * The tree is notified of the insertion by the store, once the todos are linked.
      *
      * @param node         The node object to insert the child under
      * @param todo         The todo object to insert
@@ -72,14 +165,183 @@ public class TodoTree extends DefaultTreeModel {
     public void addTodoAsChildToNode(@NotNull TodoNode node,
                                      Todo todo,
                                      boolean linkToParent) {
-        var todoNode = new TodoNode(todo);
-        node.add(todoNode, linkToParent);
-        var it = todo.getChildren().stream()
-                .map(store::findById).iterator();
-        while (it.hasNext()) {
-            var child = it.next();
-            addTodoAsChildToNode(todoNode, child, false);
+        node.add(new TodoNode(todo), linkToParent);
+    }
+
+    /**
+     * Destroys the todo of a childless node, and removes the node from the tree.
+     *
+     * @param node The node to remove
+     * @throws BadTodoOperation If the todo has children
+     */
+    public void removeTodo(@NotNull TodoNode node) throws BadTodoOperation {
+        node.getTodo().destroy();
+    }
+
+    /**
+     * Destroys the todo of a node along with all its children, and removes the
+     * node from the tree.
+     *
+     * @param node The node to remove
+     */
+    public void removeBranch(@NotNull TodoNode node) {
+        store.removeBranchAtId(node.getTodo().getId());
+    }
+
+    /**
+     * Moves the todo of a node, along with its subtree, under the todo of another node,
+     * and moves the node in the tree accordingly, keeping the node object itself.
+     * Moving under the root node makes the todo a root todo.
+     *
+     * @param node      The node to move
+     * @param newParent The node to move the node under
+     * @param index     The position among the children of the new parent, counted without
+     *                  the moved node; ignored when moving under the root node
+     * @throws BadTodoOperation If the todo is not completed, but the new parent is
+     * @see TodoStore#move(java.util.UUID, java.util.UUID, int)
+     */
+    public void moveTodo(@NotNull TodoNode node, @NotNull TodoNode newParent, int index) throws BadTodoOperation {
+        var target = newParent.getTodo();
+        store.move(node.getTodo().getId(), target == null ? null : target.getId(), index);
+    }
+
+    /**
+     * Returns the path of nodes leading to the node of a todo, creating the nodes
+     * along the path if needed.
+     * The returned path can be used to select and expand the node of the todo.
+     *
+     * @param todo The todo to find the path of
+     * @return The path to the node of the todo, or {@code null} if the todo is not in the store
+     */
+    public @Nullable TreePath pathTo(@NotNull Todo todo) {
+        if (!store.contains(todo.getId())) return null;
+
+        var ancestors = new ArrayDeque<Todo>();
+        for (var t = todo; t != null; t = t.getParent()) {
+            ancestors.push(t);
         }
+
+        TodoNode node = (RootTodoNode) getRoot();
+        var path = new TreePath(node);
+        for (var t : ancestors) {
+            node = node.nodeFor(t);
+            path = path.pathByAddingChild(node);
+        }
+        return path;
+    }
+
+    /**
+     * Returns the node of a todo, if it and the nodes of all its ancestors have already
+     * been created.
+     *
+     * @param todo The todo to find the node of, or {@code null} for the root node
+     * @return The node of the todo, or {@code null}
+     */
+    private @Nullable TodoNode existingNode(@Nullable Todo todo) {
+        var ancestors = new ArrayDeque<Todo>();
+        for (var t = todo; t != null; t = t.getParent()) {
+            ancestors.push(t);
+        }
+
+        TodoNode node = (RootTodoNode) getRoot();
+        for (var t : ancestors) {
+            node = node.existingNodeFor(t);
+            if (node == null) return null;
+        }
+        return node;
+    }
+
+    /**
+     * Notifies the listeners that the rows of a todo and all its ancestors have changed,
+     * as far as their nodes have been created.
+     *
+     * @param todo The changed todo
+     */
+    private void pathChanged(@NotNull Todo todo) {
+        var ancestors = new ArrayDeque<Todo>();
+        for (var t = todo; t != null; t = t.getParent()) {
+            ancestors.push(t);
+        }
+
+        TodoNode node = (RootTodoNode) getRoot();
+        for (var t : ancestors) {
+            node = node.existingNodeFor(t);
+            if (node == null) return;
+            nodeChanged(node);
+        }
+    }
+
+    /**
+     * Notifies the listeners that the rows of all created nodes under a node have changed.
+     *
+     * @param node The root of the changed subtree
+     */
+    private void subtreeChanged(@NotNull TodoNode node) {
+        var stack = new ArrayDeque<TodoNode>();
+        stack.push(node);
+        while (!stack.isEmpty()) {
+            var parent = stack.pop();
+            var created = parent.existingChildNodes();
+            if (created.isEmpty()) continue;
+
+            var indices = new int[created.size()];
+            var count = 0;
+            for (var child : created) {
+                var index = parent.getIndex(child);
+                if (index < 0) continue;
+                indices[count++] = index;
+                stack.push(child);
+            }
+            indices = Arrays.copyOf(indices, count);
+            Arrays.sort(indices);
+            nodesChanged(parent, indices);
+        }
+    }
+
+    /**
+     * Forgets the node of a todo removed from its parent, and notifies the listeners
+     * of the model, if the node of the parent has been created.
+     * The rows of the former ancestors are changed as well, as their badges count the
+     * removed todos.
+     *
+     * @param parent The former parent of the todo, or {@code null} if it was a root
+     * @param index  The former position of the todo, ignored for roots
+     * @param todo   The removed todo
+     * @return The former node of the todo, or {@code null} if it was not created
+     */
+    private @Nullable TodoNode nodeRemoved(@Nullable Todo parent, int index, @NotNull Todo todo) {
+        var parentNode = existingNode(parent);
+        if (parentNode == null) return null;
+
+        if (parentNode instanceof RootTodoNode rootest) index = rootest.rootRemoved(todo);
+        if (index < 0) return null;
+
+        var node = parentNode.existingNodeFor(todo);
+        if (node != null) parentNode.forget(node);
+        nodesWereRemoved(parentNode, new int[]{index}, new Object[]{node != null ? node : new TodoNode(todo)});
+        if (parent != null) pathChanged(parent);
+        return node;
+    }
+
+    /**
+     * Notifies the listeners of the model of a todo inserted under a parent, if the node
+     * of the parent has been created.
+     * The rows of the new ancestors are changed as well, as their badges count the
+     * inserted todos.
+     *
+     * @param parent The new parent of the todo, or {@code null} if it became a root
+     * @param index  The new position of the todo, ignored for roots
+     * @param todo   The inserted todo
+     * @param node   The former node of the todo to reuse, or {@code null}
+     */
+    private void nodeInserted(@Nullable Todo parent, int index, @NotNull Todo todo, @Nullable TodoNode node) {
+        var parentNode = existingNode(parent);
+        if (parentNode == null) return;
+
+        if (node != null) parentNode.add(node, false);
+        if (parentNode instanceof RootTodoNode rootest) index = rootest.rootAppended(todo);
+        if (index >= 0) nodesWereInserted(parentNode, new int[]{index});
+        if (parent != null) pathChanged(parent);
     }
 
     private final TodoStore store;
@@ -0,0 +1,20 @@
+package hu.kszi2.nought.io;
+
+/**
+ * The modes an importer can use to link the todos it reads to their children.
+ */
+public enum LinkMode {
+    /**
+     * Children are linked as soon as their parent is read, so every referenced
+     * todo needs to be defined earlier in the input than its parent.
+     */
+    IMMEDIATE,
+    /**
+     * Children are recorded in a pending table, and are linked in one final pass
+     * after the whole input has been read, so definitions can be in any order.
+     * Dangling references are reported together at the end.
+     *
+     * @see hu.kszi2.nought.core.TodoLinker
+     */
+    DEFERRED
+}
@@ -0,0 +1,113 @@
+package hu.kszi2.nought.io;
+
+import hu.kszi2.nought.core.TodoSnapshot;
+import hu.kszi2.nought.core.TodoStore;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.function.IntConsumer;
+
+/**
+ * Implements the {@link TodoExporter} interface with exporting to the compact binary
+ * format described in {@link TodoBinaryFormat}.
+ * The todos are written from a snapshot of the store, in its pre-order, so the index of
+ * each record is the index of the todo in the snapshot.
+ */
+public class TodoBinaryExporter implements TodoExporter {
+    /**
+     * Constructs an exporter object with setting the store to export to the given one.
+     *
+     * @param store The store to export
+     */
+    public TodoBinaryExporter(TodoStore store) {
+        this.store = store;
+        this.snapshot = null;
+    }
+
+    /**
+     * Constructs an exporter object writing the given snapshot of a store.
+     *
+     * @param snapshot The snapshot to export
+     */
+    public TodoBinaryExporter(TodoSnapshot snapshot) {
+        this.store = null;
+        this.snapshot = snapshot;
+    }
+
+    @Override
+    public void export(OutputStream strm) throws IOException {
+        var todos = snapshot != null ? snapshot : store.freeze();
+
+        var out = new DataOutputStream(new BufferedOutputStream(strm, BUFFER_SIZE));
+        out.write(TodoBinaryFormat.MAGIC);
+        out.writeInt(TodoBinaryFormat.VERSION);
+        out.writeInt(todos.size());
+        for (int todo = 0; todo < todos.size(); ++todo) {
+            writeTodo(out, todos, todo);
+            if (progress != null) progress.accept(todo + 1);
+        }
+        out.flush();
+    }
+
+    @Override
+    public void setProgressListener(@Nullable IntConsumer listener) {
+        progress = listener;
+    }
+
+    /**
+     * Writes a single todo record to the output.
+     *
+     * @param out   The output to write to
+     * @param todos The snapshot being written
+     * @param todo  The index of the todo to write
+     * @throws IOException If writing failed
+     */
+    private void writeTodo(DataOutputStream out, TodoSnapshot todos, int todo) throws IOException {
+        var id = todos.getId(todo);
+        out.writeLong(id.getMostSignificantBits());
+        out.writeLong(id.getLeastSignificantBits());
+
+        var dueDate = todos.getDueDate(todo);
+        byte flags = 0;
+        if (todos.isCompleted(todo)) flags |= TodoBinaryFormat.FLAG_COMPLETED;
+        if (dueDate != null) flags |= TodoBinaryFormat.FLAG_DUE;
+        out.writeByte(flags);
+        if (dueDate != null) {
+            out.writeLong(TodoBinaryFormat.packDue(dueDate, todos.getDueTime(todo)));
+        }
+
+        writeString(out, todos.getName(todo));
+        writeString(out, todos.getDescription(todo));
+
+        out.writeInt(todos.getChildCount(todo));
+        for (var child = todos.getFirstChild(todo); child >= 0; child = todos.getNextSibling(child)) {
+            out.writeInt(child);
+        }
+    }
+
+    /**
+     * Writes a length prefixed UTF-8 string to the output.
+     *
+     * @param out The output to write to
+     * @param str The string to write
+     * @throws IOException If writing failed
+     */
+    private static void writeString(DataOutputStream out, String str) throws IOException {
+        var bytes = str.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    @Nullable
+    private final TodoStore store;
+    @Nullable
+    private final TodoSnapshot snapshot;
+    @Nullable
+    private IntConsumer progress;
+}
@@ -0,0 +1,85 @@
+package hu.kszi2.nought.io;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.Date;
+
+/**
+ * <p>
+ * Constants and helper functions of the binary todo file format, shared by
+ * {@link TodoBinaryExporter} and {@link TodoBinaryImporter}.
+ * </p>
+ * <p>
+ * All values are stored big-endian. A file consists of a header, followed by the
+ * todo records in store order:
+ * <pre>
+ * header:  magic "NOTB" (4 bytes), version (int), record count (int)
+ * record:  id (2 longs: most, then least significant bits),
+ *          flags (byte: completed, has due date),
+ *          packed due date and time (long, only if the todo has a due date),
+ *          name (int length, UTF-8 bytes),
+ *          description (int length, UTF-8 bytes),
+ *          child count (int), child record indices (ints)
+ * </pre>
+ * </p>
+ */
+final class TodoBinaryFormat {
+    /**
+     * Not instantiable utility class.
+     */
+    private TodoBinaryFormat() {
+    }
+
+    /**
+     * Packs a due date, and an optional due time into a single long.
+     * The day of the date (in the system time zone) is stored in the upper bits, while
+     * the lower bits store the time of the day in milliseconds, plus one, or zero if there
+     * is no due time.
+     *
+     * @param date The due date
+     * @param time The due time, or {@code null}
+     * @return The packed value
+     */
+    static long packDue(Date date, @Nullable LocalTime time) {
+        var day = Instant.ofEpochMilli(date.getTime()).atZone(ZoneId.systemDefault()).toLocalDate().toEpochDay();
+        var millis = time == null ? 0 : time.toNanoOfDay() / 1_000_000 + 1;
+        return (day << TIME_BITS) | millis;
+    }
+
+    /**
+     * Unpacks the due date from a packed value.
+     * The date is at the start of the day in the system time zone.
+     *
+     * @param packed The packed value
+     * @return The due date
+     */
+    static Date unpackDueDate(long packed) {
+        var day = LocalDate.ofEpochDay(packed >> TIME_BITS);
+        Instant instant = day.atStartOfDay(ZoneId.systemDefault()).toInstant();
+        return Date.from(instant);
+    }
+
+    /**
+     * Unpacks the due time from a packed value.
+     *
+     * @param packed The packed value
+     * @return The due time, or {@code null} if there is none
+     */
+    static @Nullable LocalTime unpackDueTime(long packed) {
+        var millis = packed & ((1L << TIME_BITS) - 1);
+        if (millis == 0) return null;
+        return LocalTime.ofNanoOfDay((millis - 1) * 1_000_000);
+    }
+
+    static final byte[] MAGIC = {'N', 'O', 'T', 'B'};
+    static final int VERSION = 1;
+
+    static final byte FLAG_COMPLETED = 1;
+    static final byte FLAG_DUE = 1 << 1;
+
+    private static final int TIME_BITS = 27;
+}
@@ -0,0 +1,167 @@
+package hu.kszi2.nought.io;
+
+import hu.kszi2.nought.core.BadTodoOperation;
+import hu.kszi2.nought.core.Todo;
+import hu.kszi2.nought.core.TodoStore;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StreamCorruptedException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * Implements the {@link TodoImporter} interface by reading the compact binary format
+ * described in {@link TodoBinaryFormat}.
+ * Files are read through a memory mapped buffer, instead of being copied into memory.
+ */
+public class TodoBinaryImporter implements TodoImporter {
+    /**
+     * Constructs an importer, by setting the store to put the read todos into.
+     *
+     * @param todoStore The store to read the todos into
+     */
+    public TodoBinaryImporter(TodoStore todoStore) {
+        store = todoStore;
+    }
+
+    @Override
+    public TodoStore importFrom(InputStream strm) throws IOException, BadTodoOperation {
+        return importFrom(ByteBuffer.wrap(strm.readAllBytes()));
+    }
+
+    @Override
+    public TodoStore importFrom(Path file) throws IOException, BadTodoOperation {
+        try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            var buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return importFrom(buffer);
+        }
+    }
+
+    /**
+     * Reads the todos from the given buffer into the store.
+     *
+     * @param buffer The buffer containing a whole file
+     * @return The store the todos were read into
+     * @throws IOException      If the buffer does not contain a valid file
+     * @throws BadTodoOperation If a todo could not be constructed while keeping its invariants
+     */
+    private TodoStore importFrom(ByteBuffer buffer) throws IOException, BadTodoOperation {
+        try {
+            readHeader(buffer);
+            var count = buffer.getInt();
+            if (count < 0) throw new StreamCorruptedException("negative todo count");
+
+            var todos = new Todo[count];
+            var childStarts = new int[count + 1];
+            var childIndices = new int[Math.max(count, 1)];
+            var childCount = 0;
+            for (int i = 0; i < count; ++i) {
+                todos[i] = readTodo(buffer);
+
+                var children = buffer.getInt();
+                if (children < 0) throw new StreamCorruptedException("negative child count");
+                if (childCount + children > childIndices.length) {
+                    childIndices = Arrays.copyOf(childIndices,
+                            Math.max(childIndices.length * 2, childCount + children));
+                }
+                for (int c = 0; c < children; ++c) {
+                    childIndices[childCount++] = buffer.getInt();
+                }
+                childStarts[i + 1] = childCount;
+            }
+
+            for (int i = 0; i < count; ++i) {
+                for (int c = childStarts[i]; c < childStarts[i + 1]; ++c) {
+                    var index = childIndices[c];
+                    if (index < 0 || index >= count) {
+                        throw new StreamCorruptedException("child index out of range: " + index);
+                    }
+                    todos[i].addChild(todos[index]);
+                }
+            }
+        } catch (BufferUnderflowException ex) {
+            var eof = new StreamCorruptedException("unexpected end of binary todo file");
+            eof.initCause(ex);
+            throw eof;
+        }
+        return store;
+    }
+
+    /**
+     * Reads and verifies the magic bytes and the version of the file.
+     *
+     * @param buffer The buffer to read from
+     * @throws IOException If the buffer does not start with a known header
+     */
+    private void readHeader(ByteBuffer buffer) throws IOException {
+        var magic = new byte[TodoBinaryFormat.MAGIC.length];
+        buffer.get(magic);
+        if (!Arrays.equals(magic, TodoBinaryFormat.MAGIC)) {
+            throw new StreamCorruptedException("not a binary todo file");
+        }
+        var version = buffer.getInt();
+        if (version != TodoBinaryFormat.VERSION) {
+            throw new StreamCorruptedException("unsupported binary todo file version: " + version);
+        }
+    }
+
+    /**
+     * Reads a todo record, without its children, and builds it into the store.
+     *
+     * @param buffer The buffer to read from
+     * @return The built todo object
+     * @throws IOException      If the record is invalid
+     * @throws BadTodoOperation If the todo could not be constructed while keeping its invariants
+     */
+    private Todo readTodo(ByteBuffer buffer) throws IOException, BadTodoOperation {
+        var id = new UUID(buffer.getLong(), buffer.getLong());
+        var flags = buffer.get();
+        var builder = store.newBuilder()
+                .setId(id)
+                .setCompleted((flags & TodoBinaryFormat.FLAG_COMPLETED) != 0);
+        if ((flags & TodoBinaryFormat.FLAG_DUE) != 0) {
+            var due = buffer.getLong();
+            builder.setDueDate(TodoBinaryFormat.unpackDueDate(due))
+                    .setDueTime(TodoBinaryFormat.unpackDueTime(due));
+        }
+        builder.setName(readString(buffer))
+                .setDescription(readString(buffer));
+        return builder.build();
+    }
+
+    /**
+     * Reads a length prefixed UTF-8 string from the buffer.
+     *
+     * @param buffer The buffer to read from
+     * @return The read string
+     * @throws IOException If the length is invalid
+     */
+    private String readString(ByteBuffer buffer) throws IOException {
+        var length = buffer.getInt();
+        if (length < 0 || length > buffer.remaining()) {
+            throw new StreamCorruptedException("invalid string length: " + length);
+        }
+
+        String str;
+        if (buffer.hasArray()) {
+            str = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length,
+                    StandardCharsets.UTF_8);
+            buffer.position(buffer.position() + length);
+        } else {
+            if (scratch.length < length) scratch = new byte[Math.max(length, scratch.length * 2)];
+            buffer.get(scratch, 0, length);
+            str = new String(scratch, 0, length, StandardCharsets.UTF_8);
+        }
+        return str;
+    }
+
+    private final TodoStore store;
+    private byte[] scratch = new byte[256];
+}
@@ -3,11 +3,14 @@ package hu.kszi2.nought.io;
 import hu.kszi2.nought.core.TodoStore;
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
-import java.io.Writer;
+import java.io.OutputStream;
+import java.util.function.IntConsumer;
 
 /**
- * An interface representing classes that can export Todos to a given Writer.
+ * An interface representing classes that can export Todos to a given byte stream.
+ * Text based implementations may additionally export to character streams.
  */
 public interface TodoExporter {
     /**
@@ -22,10 +25,22 @@ public interface TodoExporter {
     }
 
     /**
-     * Exports todos to a given writer stream.
+     * Exports todos to a given byte stream.
+     * The stream is flushed, but not closed.
      *
-     * @param writer The writer stream to export the todos to.
+     * @param strm The output stream to export the todos to.
      * @throws Exception If an error occurs.
      */
-    void export(Writer writer) throws Exception;
+    void export(OutputStream strm) throws Exception;
+
+    /**
+     * Sets a listener which is called with the number of todos written so far during
+     * later exports.
+     * The listener may abort the export by throwing an unchecked exception.
+     * By default, the progress is not reported.
+     *
+     * @param listener The progress listener, or {@code null} to remove it
+     */
+    default void setProgressListener(@Nullable IntConsumer listener) {
+    }
 }
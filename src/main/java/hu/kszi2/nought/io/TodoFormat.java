@@ -0,0 +1,116 @@
+package hu.kszi2.nought.io;
+
+import hu.kszi2.nought.core.TodoSnapshot;
+import hu.kszi2.nought.core.TodoStore;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * The file formats todo stores can be saved in.
+ * XML is meant for interchange, while the binary format is meant for speed.
+ */
+public enum TodoFormat {
+    /**
+     * The XML format, valid to the schema found in the resources directory of the project.
+     */
+    XML {
+        @Override
+        public @NotNull TodoImporter newImporter(TodoStore store) {
+            return TodoImporter.newParallel(store);
+        }
+
+        @Override
+        public @NotNull TodoExporter newExporter(TodoStore store) {
+            return new TodoXMLExporter(store);
+        }
+
+        @Override
+        public @NotNull TodoExporter newExporter(TodoSnapshot snapshot) {
+            return new TodoXMLExporter(snapshot);
+        }
+    },
+    /**
+     * The compact binary format.
+     *
+     * @see TodoBinaryExporter
+     * @see TodoBinaryImporter
+     */
+    BINARY {
+        @Override
+        public @NotNull TodoImporter newImporter(TodoStore store) {
+            return new TodoBinaryImporter(store);
+        }
+
+        @Override
+        public @NotNull TodoExporter newExporter(TodoStore store) {
+            return new TodoBinaryExporter(store);
+        }
+
+        @Override
+        public @NotNull TodoExporter newExporter(TodoSnapshot snapshot) {
+            return new TodoBinaryExporter(snapshot);
+        }
+    };
+
+    /**
+     * Constructs an importer reading this format into the given store.
+     *
+     * @param store The store to import to
+     * @return A new importer
+     */
+    public abstract @NotNull TodoImporter newImporter(TodoStore store);
+
+    /**
+     * Constructs an exporter writing the given store in this format.
+     *
+     * @param store The store to export
+     * @return A new exporter
+     */
+    public abstract @NotNull TodoExporter newExporter(TodoStore store);
+
+    /**
+     * Constructs an exporter writing the given snapshot of a store in this format.
+     *
+     * @param snapshot The snapshot to export
+     * @return A new exporter
+     */
+    public abstract @NotNull TodoExporter newExporter(TodoSnapshot snapshot);
+
+    /**
+     * Recognizes the format of an existing file from its first bytes.
+     * Files starting with the magic bytes of the binary format are binary, everything
+     * else is assumed to be XML.
+     *
+     * @param file The file to check
+     * @return The format of the file
+     * @throws IOException If the file could not be read
+     */
+    public static @NotNull TodoFormat detect(Path file) throws IOException {
+        try (var strm = Files.newInputStream(file)) {
+            var magic = strm.readNBytes(TodoBinaryFormat.MAGIC.length);
+            if (Arrays.equals(magic, TodoBinaryFormat.MAGIC)) return BINARY;
+        }
+        return XML;
+    }
+
+    /**
+     * Chooses the format to save a new file in based on its name.
+     * Files with the {@code .notb} extension are binary, everything else is XML.
+     *
+     * @param fileName The name of the file
+     * @return The format to save the file in
+     */
+    public static @NotNull TodoFormat forFileName(String fileName) {
+        if (fileName.endsWith(BINARY_EXTENSION)) return BINARY;
+        return XML;
+    }
+
+    /**
+     * The file extension used for files in the binary format.
+     */
+    public static final String BINARY_EXTENSION = ".notb";
+}
@@ -5,6 +5,8 @@ import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
 
 import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 
 /**
  * An interface that defines the behavior of a class that can import a TodoStore
@@ -13,13 +15,27 @@ import java.io.InputStream;
 public interface TodoImporter {
     /**
      * Constructs a default implementation for import to the given store.
+     * The default implementation is the StAX based {@link TodoStAXImporter}.
      *
      * @param store The store to import to
      * @return An instance of the default implementation of this interface
      */
     @Contract("_ -> new")
     static @NotNull TodoImporter newDefault(TodoStore store) {
-        return new TodoXMLImporter(store);
+        return new TodoStAXImporter(store);
+    }
+
+    /**
+     * Constructs an implementation for import to the given store, which parses large
+     * inputs in parallel on the common fork-join pool.
+     *
+     * @param store The store to import to
+     * @return An instance of the parallel implementation of this interface
+     * @see TodoParallelXMLImporter
+     */
+    @Contract("_ -> new")
+    static @NotNull TodoImporter newParallel(TodoStore store) {
+        return new TodoParallelXMLImporter(store);
     }
 
     /**
@@ -30,4 +46,18 @@ public interface TodoImporter {
      * @throws Exception If an error occurs
      */
     TodoStore importFrom(InputStream strm) throws Exception;
+
+    /**
+     * Imports a TodoStore from a given file.
+     * By default, the file is opened as a stream and passed to {@link #importFrom(InputStream)}.
+     *
+     * @param file The file to read from
+     * @return The parsed TodoStore object
+     * @throws Exception If an error occurs
+     */
+    default TodoStore importFrom(Path file) throws Exception {
+        try (var strm = Files.newInputStream(file)) {
+            return importFrom(strm);
+        }
+    }
 }
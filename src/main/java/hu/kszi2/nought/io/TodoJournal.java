@@ -0,0 +1,874 @@
+package hu.kszi2.nought.io;
+
+import hu.kszi2.nought.core.BadTodoOperation;
+import hu.kszi2.nought.core.Todo;
+import hu.kszi2.nought.core.TodoEvent;
+import hu.kszi2.nought.core.TodoStore;
+import hu.kszi2.nought.core.TodoStoreListener;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.StreamCorruptedException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+
+/**
+ * <p>
+ * An append-only write-ahead journal of the mutations made to a store, kept next to
+ * the store's snapshot file.
+ * Instead of rewriting the whole snapshot, saving only appends the mutations recorded
+ * since the last save to the journal.
+ * From time to time, the journal is folded into a fresh snapshot by
+ * {@link #compactInBackground()}.
+ * </p>
+ * <p>
+ * When a snapshot file is opened, it is loaded as usual, then its journal is replayed
+ * on top of it by {@link #open(Path, TodoFormat, TodoStore)}.
+ * Each record is checksummed, so a record torn by a crash during a save is detected and
+ * dropped, along with everything after it; at most the changes since the last save are lost.
+ * </p>
+ * <p>
+ * Until they are flushed, the records are kept in memory.
+ * A change of a todo's fields replaces the pending state record of the todo, as long as
+ * its completion and due date are unchanged, so repeated edits of a description keep a
+ * single copy of it between saves.
+ * </p>
+ * <p>
+ * The header of the journal holds the length and checksum of the snapshot it was started
+ * on, and a journal is only replayed on that snapshot.
+ * Before compaction replaces the snapshot, it appends a checkpoint record to the journal,
+ * holding the length and checksum of the new snapshot, and the end of the records folded
+ * into it.
+ * If compaction is interrupted after replacing the snapshot, but before shortening the
+ * journal, only the records after the checkpoint are replayed on the new snapshot.
+ * A journal that belongs to neither the snapshot nor a checkpoint is stale, and is
+ * discarded when the snapshot is opened.
+ * </p>
+ *
+ * @see TodoStoreListener
+ */
+public class TodoJournal implements TodoStoreListener, Closeable {
+    /**
+     * Creates a journal object for the given snapshot file.
+     * The journal is not opened: use {@link #open(Path, TodoFormat, TodoStore)} or
+     * {@link #create(Path, TodoFormat, TodoStore)}.
+     *
+     * @param snapshot The snapshot file
+     * @param format   The format of the snapshot file
+     * @param store    The store to record the mutations of
+     */
+    private TodoJournal(Path snapshot, TodoFormat format, TodoStore store) {
+        this.snapshot = snapshot;
+        this.format = format;
+        this.store = store;
+        this.file = pathFor(snapshot);
+    }
+
+    /**
+     * Returns the path of the journal file belonging to the given snapshot file.
+     *
+     * @param snapshot The snapshot file
+     * @return The path of the journal next to the snapshot
+     */
+    public static @NotNull Path pathFor(Path snapshot) {
+        return snapshot.resolveSibling(snapshot.getFileName() + EXTENSION);
+    }
+
+    /**
+     * Opens the journal of a snapshot, which has already been loaded into the store.
+     * The records of the journal are replayed on the store, then the journal starts
+     * recording the later mutations of the store.
+     * If the journal does not exist, or does not belong to the snapshot, it is created
+     * anew.
+     *
+     * @param snapshot The snapshot file the store was loaded from
+     * @param format   The format of the snapshot file
+     * @param store    The store loaded from the snapshot
+     * @return The opened journal
+     * @throws IOException      If the journal could not be read or written
+     * @throws BadTodoOperation If a journal record could not be applied to the store
+     */
+    public static @NotNull TodoJournal open(Path snapshot,
+                                            TodoFormat format,
+                                            TodoStore store) throws IOException, BadTodoOperation {
+        var journal = new TodoJournal(snapshot, format, store);
+        journal.stamp = Stamp.of(snapshot);
+        long valid = HEADER_SIZE;
+        if (Files.exists(journal.file)) {
+            valid = replay(journal.file, store, journal.stamp, Long.MAX_VALUE);
+        }
+        journal.openChannel(valid);
+        store.addListener(journal);
+        return journal;
+    }
+
+    /**
+     * Creates a new, empty journal for a snapshot that has just been written from the
+     * store, replacing any old journal of the snapshot.
+     * The journal starts recording the later mutations of the store.
+     *
+     * @param snapshot The snapshot file the store was saved to
+     * @param format   The format of the snapshot file
+     * @param store    The store saved to the snapshot
+     * @return The new journal
+     * @throws IOException If the journal could not be written
+     */
+    public static @NotNull TodoJournal create(Path snapshot,
+                                              TodoFormat format,
+                                              TodoStore store) throws IOException {
+        var journal = begin(snapshot, format, store);
+        journal.start(snapshot);
+        return journal;
+    }
+
+    /**
+     * Creates a new journal for a snapshot that is about to be written from the current
+     * state of the store, for example from a copy of it on a background thread.
+     * The journal starts recording the later mutations of the store in memory, but the
+     * journal file is not touched until {@link #start(Path)} is called.
+     *
+     * @param snapshot The snapshot file the store will be saved to
+     * @param format   The format of the snapshot file
+     * @param store    The store to be saved to the snapshot
+     * @return The new journal
+     */
+    public static @NotNull TodoJournal begin(Path snapshot,
+                                             TodoFormat format,
+                                             TodoStore store) {
+        var journal = new TodoJournal(snapshot, format, store);
+        store.addListener(journal);
+        return journal;
+    }
+
+    /**
+     * Replaces any old journal file of the snapshot with an empty one, so the records
+     * of this journal can be flushed to it.
+     * The journal is started on the given file, which holds the snapshot written by
+     * {@link #begin(Path, TodoFormat, TodoStore)}, and may be a temporary file about to
+     * replace the snapshot file.
+     * Must be called before the new snapshot replaces the old one, so the old journal is
+     * never replayed on the new snapshot.
+     *
+     * @param written The file holding the written snapshot
+     * @throws IOException If the journal could not be written
+     */
+    public synchronized void start(Path written) throws IOException {
+        if (channel != null) return;
+
+        stamp = Stamp.of(written);
+        Files.deleteIfExists(file);
+        openChannel(HEADER_SIZE);
+    }
+
+    @Override
+    public synchronized void todoChanged(@NotNull TodoEvent event) {
+        var todo = event.getTodo();
+        switch (event.getKind()) {
+            case CREATED, FIELD_CHANGED, COMPLETED_TOGGLED -> writeState(todo);
+            case CHILD_ADDED -> writeRecord(LINK, event.getParent().getId(), todo.getId());
+            case REMOVED -> {
+                writeRecord(REMOVE, todo.getId(), null);
+                pendingStates.clear();
+            }
+            case BRANCH_REMOVED -> {
+                writeRecord(REMOVE_TREE, todo.getId(), null);
+                pendingStates.clear();
+            }
+            case MOVED -> writeMove(todo, event.getParent(), event.getIndex());
+            case BRANCH_COMPLETED -> writeRecord(COMPLETE_TREE, todo.getId(), null);
+            case PATH_REOPENED -> writeRecord(REOPEN_PATH, todo.getId(), null);
+        }
+    }
+
+    /**
+     * Returns whether there are recorded mutations which have not been flushed to the
+     * journal file yet.
+     *
+     * @return Whether there are pending records
+     */
+    public synchronized boolean hasPending() {
+        return !pending.isEmpty();
+    }
+
+    /**
+     * Appends the records of all mutations since the last flush to the journal file,
+     * and forces them to the storage device.
+     *
+     * @throws IOException If writing the journal failed
+     */
+    public synchronized void flush() throws IOException {
+        if (channel == null) throw new IllegalStateException("journal has not been started");
+        if (pending.isEmpty()) return;
+
+        var buffers = new ByteBuffer[pending.size()];
+        for (int i = 0; i < buffers.length; ++i) {
+            buffers[i] = ByteBuffer.wrap(pending.get(i));
+        }
+        while (buffers[buffers.length - 1].hasRemaining()) {
+            channel.write(buffers);
+        }
+        channel.force(false);
+        pending.clear();
+        pendingStates.clear();
+    }
+
+    /**
+     * Returns the size of the journal file in bytes, without the pending records.
+     *
+     * @return The size of the journal file
+     * @throws IOException If the size could not be queried
+     */
+    public synchronized long size() throws IOException {
+        if (channel == null) return 0;
+        return channel.size();
+    }
+
+    /**
+     * Folds the flushed records of the journal into a fresh snapshot on a background
+     * thread.
+     * The snapshot is loaded from the file, the journal is replayed on it, then it is
+     * written to a temporary file, which atomically replaces the old snapshot, after a
+     * checkpoint of the new snapshot is appended to the journal.
+     * Finally, the journal is shortened to the records appended since the compaction
+     * started.
+     * The in-memory store is not touched, so it can be modified during compaction.
+     *
+     * @return A future which completes when the compaction is done
+     */
+    public Future<?> compactInBackground() {
+        return compactor.submit(() -> {
+            compact();
+            return null;
+        });
+    }
+
+    /**
+     * Stops recording the mutations of the store, and closes the journal file.
+     * A compaction that is already running is waited for.
+     * Pending records are not flushed.
+     *
+     * @throws IOException If the file could not be closed, or the thread was interrupted
+     *                     while waiting for the compaction
+     */
+    @Override
+    public void close() throws IOException {
+        store.removeListener(this);
+        compactor.shutdown();
+        try {
+            compactor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while waiting for compaction");
+        }
+        synchronized (this) {
+            if (channel != null) channel.close();
+        }
+    }
+
+    /**
+     * The implementation of compaction.
+     *
+     * @throws Exception If any of the steps fails
+     * @see #compactInBackground()
+     */
+    private void compact() throws Exception {
+        long end;
+        Stamp current;
+        synchronized (this) {
+            if (channel == null) return;
+            end = channel.size();
+            current = stamp;
+        }
+        if (end <= HEADER_SIZE) return;
+
+        var store = new TodoStore();
+        format.newImporter(store).importFrom(snapshot);
+        replay(file, store, current, end);
+
+        var tmpSnapshot = snapshot.resolveSibling(snapshot.getFileName() + ".compact");
+        try (var out = FileChannel.open(tmpSnapshot,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE)) {
+            format.newExporter(store).export(Channels.newOutputStream(out));
+            out.force(true);
+        }
+        var compacted = Stamp.of(tmpSnapshot);
+
+        long checkpoint;
+        synchronized (this) {
+            checkpoint = channel.size();
+            writeCheckpoint(compacted, end);
+        }
+        Files.move(tmpSnapshot, snapshot, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+        synchronized (this) {
+            var checkpointEnd = checkpoint + CHECKPOINT_SIZE;
+            var tail = ByteBuffer.allocate((int) (channel.size() - end - CHECKPOINT_SIZE));
+            tail.limit((int) (checkpoint - end));
+            channel.read(tail, end);
+            tail.limit(tail.capacity());
+            channel.read(tail, checkpointEnd);
+            tail.flip();
+
+            var tmpJournal = file.resolveSibling(file.getFileName() + ".compact");
+            try (var out = FileChannel.open(tmpJournal,
+                    StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.WRITE)) {
+                out.write(compacted.header());
+                out.write(tail);
+                out.force(true);
+            }
+            channel.close();
+            Files.move(tmpJournal, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            stamp = compacted;
+            openChannel(Files.size(file));
+        }
+    }
+
+    /**
+     * Appends a checkpoint record to the journal file, and forces it to the storage
+     * device.
+     * The record states that the given snapshot holds the records of the journal until
+     * the given offset.
+     * Pending records are not flushed.
+     *
+     * @param compacted The stamp of the new snapshot
+     * @param folded    The end of the records folded into the new snapshot
+     * @throws IOException If writing the journal failed
+     */
+    private void writeCheckpoint(Stamp compacted, long folded) throws IOException {
+        record.reset();
+        recordOut.writeByte(CHECKPOINT);
+        recordOut.writeLong(compacted.length);
+        recordOut.writeInt(compacted.checksum);
+        recordOut.writeLong(folded);
+        channel.write(ByteBuffer.wrap(frameRecord()));
+        channel.force(false);
+    }
+
+    /**
+     * Opens the journal file for appending, creating it with a header if needed.
+     * Any data after the given length, which is the end of the last valid record,
+     * is truncated.
+     * If the length is negative, the journal is stale, and is started anew.
+     *
+     * @param validLength The length of the valid part of the journal, or {@link #STALE}
+     * @throws IOException If the file could not be opened
+     */
+    private void openChannel(long validLength) throws IOException {
+        channel = FileChannel.open(file,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        if (validLength < HEADER_SIZE || channel.size() < HEADER_SIZE) {
+            channel.truncate(0);
+            channel.write(stamp.header(), 0);
+            channel.force(false);
+        } else {
+            channel.truncate(validLength);
+        }
+        channel.position(channel.size());
+    }
+
+    /**
+     * Replays the records of a journal file on a store, until the given offset in the file.
+     * Reading stops at the first incomplete or corrupted record.
+     * The records are replayed in a single transaction, so the invariants are only
+     * checked once all of them are applied, like they were when the mutations were
+     * committed.
+     * Since records are only flushed after a transaction is committed, the replayed
+     * records never end inside one.
+     * If the journal was not started on the snapshot, only the records after the
+     * checkpoint of the snapshot are replayed; if there is no such checkpoint, the
+     * journal is stale, and nothing is replayed.
+     *
+     * @param file     The journal file
+     * @param store    The store to apply the records to
+     * @param snapshot The stamp of the snapshot the store was loaded from
+     * @param end      The offset to stop reading at
+     * @return The offset of the end of the last valid record, or {@link #STALE}
+     * @throws IOException      If the journal is not a journal file
+     * @throws BadTodoOperation If the replayed records break an invariant, in which case
+     *                          none of them are applied
+     */
+    private static long replay(Path file,
+                               TodoStore store,
+                               Stamp snapshot,
+                               long end) throws IOException, BadTodoOperation {
+        try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            var buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(end, channel.size()));
+            if (buffer.remaining() < HEADER_SIZE) return HEADER_SIZE;
+
+            var magic = new byte[MAGIC.length];
+            buffer.get(magic);
+            if (!Arrays.equals(magic, MAGIC)) throw new StreamCorruptedException("not a todo journal: " + file);
+
+            long from = HEADER_SIZE;
+            if (!snapshot.equals(Stamp.read(buffer))) {
+                from = findCheckpoint(buffer.duplicate(), snapshot);
+                if (from < 0) return STALE;
+            }
+
+            var replayed = from;
+            var crc = new CRC32();
+            store.batch(s -> {
+                ByteBuffer record;
+                while ((record = nextRecord(buffer, crc)) != null) {
+                    if (buffer.position() > replayed) apply(record, s);
+                }
+            });
+            return buffer.position();
+        }
+    }
+
+    /**
+     * Finds the checkpoint of a snapshot among the valid records of a journal.
+     *
+     * @param buffer   The journal, positioned after its header
+     * @param snapshot The stamp of the snapshot
+     * @return The end of the records folded into the snapshot, or -1 if the journal has
+     * no checkpoint of the snapshot
+     */
+    private static long findCheckpoint(ByteBuffer buffer, Stamp snapshot) {
+        var crc = new CRC32();
+        long folded = -1;
+        ByteBuffer record;
+        while ((record = nextRecord(buffer, crc)) != null) {
+            if (record.get() != CHECKPOINT) continue;
+            if (snapshot.equals(Stamp.read(record))) folded = record.getLong();
+        }
+        return folded;
+    }
+
+    /**
+     * Reads the next record of a journal, checking its checksum.
+     * If the record is incomplete or corrupted, the buffer is left at its start.
+     *
+     * @param buffer The journal, positioned at the start of the record
+     * @param crc    The checksum object to use
+     * @return The contents of the record, or {@code null} if there is no valid record
+     */
+    private static @Nullable ByteBuffer nextRecord(ByteBuffer buffer, CRC32 crc) {
+        if (buffer.remaining() < Integer.BYTES) return null;
+
+        var start = buffer.position();
+        var length = buffer.getInt();
+        if (length <= 0 || buffer.remaining() < length + Integer.BYTES) {
+            buffer.position(start);
+            return null;
+        }
+
+        var record = buffer.slice(buffer.position(), length);
+        crc.reset();
+        crc.update(record.duplicate());
+        buffer.position(buffer.position() + length);
+        if ((int) crc.getValue() != buffer.getInt()) {
+            buffer.position(start);
+            return null;
+        }
+        return record;
+    }
+
+    /**
+     * Applies a single journal record to a store.
+     *
+     * @param record The contents of the record
+     * @param store  The store to apply the record to
+     * @throws BadTodoOperation If the record would break an invariant
+     */
+    private static void apply(ByteBuffer record, TodoStore store) throws BadTodoOperation {
+        var type = record.get();
+        if (type == CHECKPOINT) return;
+
+        var id = new UUID(record.getLong(), record.getLong());
+        switch (type) {
+            case STATE -> applyState(record, store, id);
+            case LINK -> {
+                var childId = new UUID(record.getLong(), record.getLong());
+                if (!store.contains(id) || !store.contains(childId)) return;
+                var parent = store.findById(id);
+                var child = store.findById(childId);
+                if (child.getParent() != parent) parent.addChild(child);
+            }
+            case REMOVE -> {
+                if (store.contains(id)) store.removeById(id);
+            }
+            case REMOVE_TREE -> {
+                if (store.contains(id)) store.removeBranchAtId(id);
+            }
+            case MOVE -> applyMove(record, store, id);
+            case COMPLETE_TREE -> {
+                if (store.contains(id)) store.completeBranch(id);
+            }
+            case REOPEN_PATH -> {
+                if (store.contains(id)) store.reopenPath(id);
+            }
+            default -> throw new IllegalStateException("unknown journal record type: " + type);
+        }
+    }
+
+    /**
+     * Applies a move record to the store, unless the todo is already at the recorded place.
+     *
+     * @param record The contents of the record after the id
+     * @param store  The store to apply the record to
+     * @param id     The id of the moved todo
+     * @throws BadTodoOperation If the move would break an invariant
+     */
+    private static void applyMove(ByteBuffer record, TodoStore store, UUID id) throws BadTodoOperation {
+        var hasParent = record.get() != 0;
+        var parentId = hasParent ? new UUID(record.getLong(), record.getLong()) : null;
+        var index = record.getInt();
+        if (!store.contains(id) || (parentId != null && !store.contains(parentId))) return;
+
+        var todo = store.findById(id);
+        if (parentId == null) {
+            if (todo.getParent() != null) store.move(id, null, -1);
+            return;
+        }
+        var siblings = store.findById(parentId).getChildTodos();
+        if (index < siblings.size() && siblings.get(index) == todo) return;
+        var size = siblings.size() - (todo.getParent() != null && parentId.equals(todo.getParentId()) ? 1 : 0);
+        store.move(id, parentId, Math.min(index, size));
+    }
+
+    /**
+     * Applies a state record to the store, either by creating the todo, or by updating
+     * all its fields.
+     *
+     * @param record The contents of the record after the id
+     * @param store  The store to apply the record to
+     * @param id     The id of the todo
+     * @throws BadTodoOperation If the state would break an invariant
+     */
+    private static void applyState(ByteBuffer record, TodoStore store, UUID id) throws BadTodoOperation {
+        var flags = record.get();
+        var completed = (flags & TodoBinaryFormat.FLAG_COMPLETED) != 0;
+        Date dueDate = null;
+        LocalTime dueTime = null;
+        if ((flags & TodoBinaryFormat.FLAG_DUE) != 0) {
+            var due = record.getLong();
+            dueDate = TodoBinaryFormat.unpackDueDate(due);
+            dueTime = TodoBinaryFormat.unpackDueTime(due);
+        }
+        var name = readString(record);
+        var desc = readString(record);
+
+        if (!store.contains(id)) {
+            store.newBuilder()
+                    .setId(id)
+                    .setName(name)
+                    .setDescription(desc)
+                    .setCompleted(completed)
+                    .setDueDate(dueDate)
+                    .setDueTime(dueTime)
+                    .build();
+            return;
+        }
+
+        var todo = store.findById(id);
+        todo.setName(name);
+        todo.setDescription(desc);
+        if (dueTime == null) todo.setDueTime((LocalTime) null);
+        todo.setDueDate(dueDate);
+        todo.setDueTime(dueTime);
+        if (todo.isCompleted() != completed) todo.setCompleted(completed);
+    }
+
+    /**
+     * Writes a record holding the whole state of a todo to the pending records.
+     * If a pending state record of the todo has the same completion and due date, it is
+     * replaced in place: only the name and description differ, which do not affect
+     * whether the records between the two can be replayed.
+     *
+     * @param todo The todo to record
+     */
+    private void writeState(Todo todo) {
+        try {
+            var out = beginRecord(STATE, todo.getId());
+            byte flags = 0;
+            long due = 0;
+            if (todo.isCompleted()) flags |= TodoBinaryFormat.FLAG_COMPLETED;
+            if (todo.getDueDate() != null) {
+                flags |= TodoBinaryFormat.FLAG_DUE;
+                due = TodoBinaryFormat.packDue(todo.getDueDate(), todo.getDueTime());
+            }
+            out.writeByte(flags);
+            if ((flags & TodoBinaryFormat.FLAG_DUE) != 0) out.writeLong(due);
+            writeString(out, todo.getName());
+            writeString(out, todo.getDescription());
+
+            var previous = pendingStates.get(todo.getId());
+            if (previous != null && previous.flags == flags && previous.due == due) {
+                pending.set(previous.index, frameRecord());
+            } else {
+                pendingStates.put(todo.getId(), new PendingState(pending.size(), flags, due));
+                endRecord();
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Writes a record referencing one or two todos to the pending buffer.
+     *
+     * @param type  The type of the record
+     * @param id    The id of the first todo
+     * @param other The id of the second todo, or {@code null}
+     */
+    private void writeRecord(byte type, UUID id, @Nullable UUID other) {
+        try {
+            var out = beginRecord(type, id);
+            if (other != null) {
+                out.writeLong(other.getMostSignificantBits());
+                out.writeLong(other.getLeastSignificantBits());
+            }
+            endRecord();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Writes a move record to the pending buffer.
+     *
+     * @param todo   The moved todo
+     * @param parent The new parent of the todo, or {@code null}
+     * @param index  The new position of the todo
+     */
+    private void writeMove(Todo todo, @Nullable Todo parent, int index) {
+        try {
+            var out = beginRecord(MOVE, todo.getId());
+            out.writeBoolean(parent != null);
+            if (parent != null) {
+                out.writeLong(parent.getId().getMostSignificantBits());
+                out.writeLong(parent.getId().getLeastSignificantBits());
+            }
+            out.writeInt(index);
+            endRecord();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Starts a new record in the record buffer with the given type and todo id.
+     *
+     * @param type The type of the record
+     * @param id   The id of the todo the record is about
+     * @return The stream to write the contents of the record to
+     * @throws IOException Never, the record is written to memory
+     */
+    private DataOutputStream beginRecord(byte type, UUID id) throws IOException {
+        record.reset();
+        recordOut.writeByte(type);
+        recordOut.writeLong(id.getMostSignificantBits());
+        recordOut.writeLong(id.getLeastSignificantBits());
+        return recordOut;
+    }
+
+    /**
+     * Appends the record in the record buffer to the pending records, framed by its
+     * length and checksum.
+     *
+     * @throws IOException Never, the record is written to memory
+     */
+    private void endRecord() throws IOException {
+        pending.add(frameRecord());
+    }
+
+    /**
+     * Returns the record in the record buffer, framed by its length and checksum.
+     *
+     * @return The framed record
+     */
+    private byte[] frameRecord() {
+        var contents = record.toByteArray();
+        var crc = new CRC32();
+        crc.update(contents);
+        return ByteBuffer.allocate(contents.length + 2 * Integer.BYTES)
+                .putInt(contents.length)
+                .put(contents)
+                .putInt((int) crc.getValue())
+                .array();
+    }
+
+    /**
+     * Writes a length prefixed UTF-8 string.
+     *
+     * @param out The output to write to
+     * @param str The string to write
+     * @throws IOException If writing failed
+     */
+    private static void writeString(DataOutputStream out, String str) throws IOException {
+        var bytes = str.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Reads a length prefixed UTF-8 string.
+     *
+     * @param buffer The buffer to read from
+     * @return The read string
+     */
+    private static String readString(ByteBuffer buffer) {
+        var bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * The place of the latest pending state record of a todo, along with the fields
+     * which decide whether it can be replaced by a later state.
+     */
+    private static final class PendingState {
+        /**
+         * Constructs the place of a pending state record.
+         *
+         * @param index The index of the record among the pending records
+         * @param flags The flags of the recorded state
+         * @param due   The packed due date and time of the recorded state, or 0
+         */
+        private PendingState(int index, byte flags, long due) {
+            this.index = index;
+            this.flags = flags;
+            this.due = due;
+        }
+
+        private final int index;
+        private final byte flags;
+        private final long due;
+    }
+
+    /**
+     * The length and checksum of a snapshot file, identifying the snapshot a journal
+     * belongs to.
+     */
+    private static final class Stamp {
+        /**
+         * Constructs a stamp.
+         *
+         * @param length   The length of the snapshot file
+         * @param checksum The CRC32 checksum of the snapshot file
+         */
+        private Stamp(long length, int checksum) {
+            this.length = length;
+            this.checksum = checksum;
+        }
+
+        /**
+         * Computes the stamp of a snapshot file by reading it.
+         *
+         * @param snapshot The snapshot file
+         * @return The stamp of the file
+         * @throws IOException If the file could not be read
+         */
+        private static Stamp of(Path snapshot) throws IOException {
+            try (var in = new CheckedInputStream(Files.newInputStream(snapshot), new CRC32())) {
+                var buffer = new byte[STAMP_BUFFER_SIZE];
+                long length = 0;
+                int read;
+                while ((read = in.read(buffer)) >= 0) {
+                    length += read;
+                }
+                return new Stamp(length, (int) in.getChecksum().getValue());
+            }
+        }
+
+        /**
+         * Reads a stamp from a buffer.
+         *
+         * @param buffer The buffer to read from
+         * @return The read stamp
+         */
+        private static Stamp read(ByteBuffer buffer) {
+            return new Stamp(buffer.getLong(), buffer.getInt());
+        }
+
+        /**
+         * Returns the header of a journal started on the snapshot of this stamp.
+         *
+         * @return The header, ready to be written
+         */
+        private ByteBuffer header() {
+            return ByteBuffer.allocate(HEADER_SIZE).put(MAGIC).putLong(length).putInt(checksum).flip();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Stamp other)) return false;
+            return length == other.length && checksum == other.checksum;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(length) * 31 + checksum;
+        }
+
+        private final long length;
+        private final int checksum;
+    }
+
+    /**
+     * The extension appended to the snapshot file's name to get the journal's name.
+     */
+    public static final String EXTENSION = ".journal";
+
+    private static final byte[] MAGIC = {'N', 'O', 'T', 'J'};
+    private static final int HEADER_SIZE = MAGIC.length + Long.BYTES + Integer.BYTES;
+    private static final int CHECKPOINT_SIZE = Integer.BYTES + 1 + Long.BYTES + Integer.BYTES + Long.BYTES + Integer.BYTES;
+    private static final int STAMP_BUFFER_SIZE = 1 << 16;
+    private static final long STALE = -1;
+
+    private static final byte STATE = 1;
+    private static final byte LINK = 2;
+    private static final byte REMOVE = 3;
+    private static final byte REMOVE_TREE = 4;
+    private static final byte MOVE = 5;
+    private static final byte COMPLETE_TREE = 6;
+    private static final byte REOPEN_PATH = 7;
+    private static final byte CHECKPOINT = 8;
+
+    private final Path snapshot;
+    private final TodoFormat format;
+    private final Path file;
+    private final TodoStore store;
+    private FileChannel channel;
+    private Stamp stamp;
+    private final ByteArrayOutputStream record = new ByteArrayOutputStream();
+    private final DataOutputStream recordOut = new DataOutputStream(record);
+    private final List<byte[]> pending = new ArrayList<>();
+    private final Map<UUID, PendingState> pendingStates = new HashMap<>();
+    private final ExecutorService compactor = Executors.newSingleThreadExecutor();
+}
@@ -0,0 +1,365 @@
+package hu.kszi2.nought.io;
+
+import hu.kszi2.nought.core.TodoBuilder;
+import hu.kszi2.nought.core.TodoStore;
+import hu.kszi2.nought.core.UnresolvedReferenceException;
+
+import javax.xml.stream.XMLStreamException;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * <p>
+ * Implements the {@link TodoImporter} interface by reading XML files valid to the
+ * schema found in the resources directory of the project in parallel.
+ * </p>
+ * <p>
+ * Since the todo definitions are independent of each other when their references
+ * are resolved after parsing, the body of the {@code <todos>} element is split into
+ * chunks at the boundaries of top-level {@code <todo>} elements.
+ * Each chunk is parsed on a fork-join pool into its own list of builders, which are
+ * then built into the store in file order and linked in one final pass.
+ * </p>
+ * <p>
+ * The input is split by scanning its bytes, so it is only done for UTF-8 (or ASCII)
+ * encoded inputs without a DTD, whose body has no CDATA sections, comments or
+ * processing instructions that could hide markup from the scan; other inputs, and
+ * inputs too small to be worth splitting, are read sequentially using a
+ * {@link TodoStAXImporter}.
+ * </p>
+ */
+public class TodoParallelXMLImporter implements TodoImporter {
+    /**
+     * Constructs an importer which parses on the common fork-join pool.
+     *
+     * @param todoStore The store to parse the XML into
+     */
+    public TodoParallelXMLImporter(TodoStore todoStore) {
+        this(todoStore, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Constructs an importer which parses on the given fork-join pool.
+     *
+     * @param todoStore The store to parse the XML into
+     * @param pool      The pool to parse the chunks on
+     */
+    public TodoParallelXMLImporter(TodoStore todoStore, ForkJoinPool pool) {
+        this(todoStore, pool, MIN_CHUNK_SIZE);
+    }
+
+    /**
+     * Constructs an importer which parses on the given fork-join pool, splitting the
+     * input into chunks of at least the given size.
+     *
+     * @param todoStore    The store to parse the XML into
+     * @param pool         The pool to parse the chunks on
+     * @param minChunkSize The minimal size of a chunk in bytes
+     */
+    TodoParallelXMLImporter(TodoStore todoStore, ForkJoinPool pool, int minChunkSize) {
+        this.store = todoStore;
+        this.pool = pool;
+        this.minChunkSize = minChunkSize;
+    }
+
+    @Override
+    public TodoStore importFrom(InputStream strm)
+            throws IOException, XMLStreamException, UnresolvedReferenceException {
+        var data = strm.readAllBytes();
+        var chunks = split(data);
+        if (chunks == null) {
+            return new TodoStAXImporter(store).importFrom(new ByteArrayInputStream(data));
+        }
+
+        var parsed = parseChunks(data, chunks);
+        var linker = store.newLinker();
+        try {
+            for (var builders : parsed) {
+                for (var builder : builders) {
+                    builder.build(linker);
+                }
+            }
+        } catch (Exception ex) {
+            throw new XMLStreamException(ex);
+        }
+        linker.link();
+        return store;
+    }
+
+    /**
+     * Parses all the chunks of the input on the pool.
+     *
+     * @param data   The whole input
+     * @param chunks The chunking of the input
+     * @return The list of builders parsed from each chunk, in the order of the chunks
+     * @throws XMLStreamException If parsing any of the chunks failed
+     */
+    private List<List<TodoBuilder>> parseChunks(byte[] data, Chunks chunks)
+            throws XMLStreamException {
+        var tasks = new ArrayList<Callable<List<TodoBuilder>>>();
+        for (int i = 0; i + 1 < chunks.bounds.size(); ++i) {
+            var from = chunks.bounds.get(i);
+            var to = chunks.bounds.get(i + 1);
+            tasks.add(() -> parseChunk(data, chunks, from, to));
+        }
+
+        var parsed = new ArrayList<List<TodoBuilder>>();
+        try {
+            for (var future : pool.invokeAll(tasks)) {
+                parsed.add(future.get());
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new XMLStreamException(ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof XMLStreamException xse) throw xse;
+            throw new XMLStreamException(ex.getCause());
+        }
+        return parsed;
+    }
+
+    /**
+     * Parses a single chunk of todo definitions, by wrapping it into the root element of
+     * the input document.
+     *
+     * @param data   The whole input
+     * @param chunks The chunking of the input
+     * @param from   The start of the chunk
+     * @param to     The end of the chunk
+     * @return The builders of the todos defined in the chunk
+     * @throws XMLStreamException If the chunk could not be parsed
+     */
+    private List<TodoBuilder> parseChunk(byte[] data, Chunks chunks, int from, int to)
+            throws XMLStreamException {
+        var builders = new ArrayList<TodoBuilder>();
+        var parser = new TodoStAXImporter(store, LinkMode.IMMEDIATE) {
+            @Override
+            void complete(TodoBuilder todo) {
+                builders.add(todo);
+            }
+        };
+
+        var head = new ByteArrayInputStream(data, chunks.rootStart, chunks.rootLength);
+        var body = new ByteArrayInputStream(data, from, to - from);
+        var tail = new ByteArrayInputStream(chunks.rootEnd);
+        parser.read(new SequenceInputStream(Collections.enumeration(List.of(head, body, tail))));
+        return builders;
+    }
+
+    /**
+     * Splits the body of the {@code <todos>} element into chunks at top-level todo
+     * definitions.
+     * If the input can not, or should not be split, {@code null} is returned.
+     *
+     * @param data The whole input
+     * @return The chunks of the input, or {@code null}
+     */
+    private Chunks split(byte[] data) {
+        var chunkCount = Math.min(pool.getParallelism() * CHUNKS_PER_THREAD,
+                data.length / Math.max(minChunkSize, 1));
+        if (chunkCount < 2 || !isSplittable(data)) return null;
+
+        var rootStart = findRootStart(data);
+        if (rootStart < 0) return null;
+        var rootEnd = indexOf(data, (byte) '>', rootStart);
+        var first = nextTodoDefinition(data, rootEnd);
+        if (first < 0) return null;
+        var last = lastIndexOf(data, "</".getBytes(StandardCharsets.US_ASCII));
+        var todosEnd = lastIndexOf(data, "</".getBytes(StandardCharsets.US_ASCII), last);
+        if (todosEnd < first) return null;
+
+        var chunks = new Chunks();
+        chunks.rootStart = rootStart;
+        chunks.rootLength = rootEnd + 1 - rootStart;
+        var rootName = new String(data, rootStart + 1, nameEnd(data, rootStart + 1) - rootStart - 1,
+                StandardCharsets.UTF_8);
+        chunks.rootEnd = ("</" + rootName + ">").getBytes(StandardCharsets.UTF_8);
+
+        chunks.bounds.add(first);
+        var step = (todosEnd - first) / chunkCount;
+        var prev = first;
+        for (int i = 1; i < chunkCount; ++i) {
+            var next = nextTodoDefinition(data, Math.max(first + i * step, prev + 1));
+            if (next < 0 || next >= todosEnd) break;
+            if (next != prev) chunks.bounds.add(next);
+            prev = next;
+        }
+        chunks.bounds.add(todosEnd);
+        return chunks.bounds.size() > 2 ? chunks : null;
+    }
+
+    /**
+     * Checks if the input is encoded in a way that allows splitting it by scanning its
+     * bytes, and does not contain a document type declaration which could define entities
+     * that the chunks do not see.
+     * The body must not contain CDATA sections, comments or processing instructions,
+     * since their text could look like a todo definition to the scan.
+     *
+     * @param data The whole input
+     * @return Whether the input can be split
+     */
+    private static boolean isSplittable(byte[] data) {
+        if (data.length >= 2 && (data[0] == (byte) 0xFE || data[0] == (byte) 0xFF || data[0] == 0 || data[1] == 0)) {
+            return false; // UTF-16 or UTF-32
+        }
+        var prologEnd = Math.min(data.length, PROLOG_SCAN_LENGTH);
+        var prolog = new String(data, 0, prologEnd, StandardCharsets.US_ASCII).toLowerCase(Locale.ROOT);
+        if (prolog.contains("<!doctype")) return false;
+        if (hasHiddenMarkup(data)) return false;
+        if (!prolog.startsWith("<?xml")) return true;
+
+        var declEnd = prolog.indexOf("?>");
+        var encoding = prolog.indexOf("encoding", 0);
+        if (encoding < 0 || (declEnd >= 0 && encoding > declEnd)) return true;
+        var value = prolog.substring(encoding);
+        return value.matches("(?s)encoding\\s*=\\s*[\"'](utf-8|us-ascii)[\"'].*");
+    }
+
+    /**
+     * Checks if the body of the document, starting at its root element, contains a CDATA
+     * section, a comment or a processing instruction.
+     *
+     * @param data The whole input
+     * @return Whether such markup is found after the prolog
+     */
+    private static boolean hasHiddenMarkup(byte[] data) {
+        var root = findRootStart(data);
+        if (root < 0) return false;
+        for (var pos = indexOf(data, (byte) '<', root + 1); pos >= 0; pos = indexOf(data, (byte) '<', pos + 1)) {
+            if (pos + 1 < data.length && (data[pos + 1] == '!' || data[pos + 1] == '?')) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Finds the start of the root element of the document.
+     *
+     * @param data The whole input
+     * @return The position of the {@code <} of the root element, or -1
+     */
+    private static int findRootStart(byte[] data) {
+        var pos = indexOf(data, (byte) '<', 0);
+        while (pos >= 0 && pos + 1 < data.length && (data[pos + 1] == '?' || data[pos + 1] == '!')) {
+            pos = indexOf(data, (byte) '<', pos + 1);
+        }
+        return pos;
+    }
+
+    /**
+     * Finds the next todo definition element, that is a {@code todo} element with an
+     * {@code id} attribute, starting the search at the given position.
+     * Since todo definitions are never nested, each definition is a top-level element
+     * in the {@code <todos>} element.
+     *
+     * @param data The whole input
+     * @param from The position to start searching from
+     * @return The position of the {@code <} of the element, or -1
+     */
+    private static int nextTodoDefinition(byte[] data, int from) {
+        var pos = indexOf(data, (byte) '<', from);
+        while (pos >= 0) {
+            if (isTodoDefinition(data, pos)) return pos;
+            pos = indexOf(data, (byte) '<', pos + 1);
+        }
+        return -1;
+    }
+
+    /**
+     * Checks if a todo definition element starts at the given position.
+     *
+     * @param data The whole input
+     * @param pos  The position of a {@code <} character
+     * @return Whether it starts a todo definition
+     */
+    private static boolean isTodoDefinition(byte[] data, int pos) {
+        var nameEnd = nameEnd(data, pos + 1);
+        var length = nameEnd - pos - 1;
+        if (length < 4 || !regionMatches(data, nameEnd - 4, TODO)) return false;
+        if (length > 4 && data[nameEnd - 5] != ':') return false;
+
+        var tagEnd = indexOf(data, (byte) '>', nameEnd);
+        if (tagEnd < 0) return false;
+        for (int i = nameEnd; i + 2 < tagEnd; ++i) {
+            if (isSpace(data[i]) && data[i + 1] == 'i' && data[i + 2] == 'd') {
+                var j = i + 3;
+                while (j < tagEnd && isSpace(data[j])) ++j;
+                if (j < tagEnd && data[j] == '=') return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the position after the end of the XML name starting at the given position.
+     *
+     * @param data The whole input
+     * @param pos  The start of the name
+     * @return The position of the first character after the name
+     */
+    private static int nameEnd(byte[] data, int pos) {
+        while (pos < data.length && !isSpace(data[pos]) && data[pos] != '>' && data[pos] != '/') {
+            ++pos;
+        }
+        return pos;
+    }
+
+    private static boolean isSpace(byte b) {
+        return b == ' ' || b == '\t' || b == '\n' || b == '\r';
+    }
+
+    private static boolean regionMatches(byte[] data, int pos, byte[] what) {
+        if (pos < 0 || pos + what.length > data.length) return false;
+        for (int i = 0; i < what.length; ++i) {
+            if (data[pos + i] != what[i]) return false;
+        }
+        return true;
+    }
+
+    private static int indexOf(byte[] data, byte what, int from) {
+        for (int i = Math.max(from, 0); i < data.length; ++i) {
+            if (data[i] == what) return i;
+        }
+        return -1;
+    }
+
+    private static int lastIndexOf(byte[] data, byte[] what) {
+        return lastIndexOf(data, what, data.length);
+    }
+
+    private static int lastIndexOf(byte[] data, byte[] what, int before) {
+        for (int i = before - what.length; i >= 0; --i) {
+            if (regionMatches(data, i, what)) return i;
+        }
+        return -1;
+    }
+
+    /**
+     * The result of splitting the input: the boundaries of the chunks, and the root
+     * element's start tag and end tag used to wrap each of them into a document.
+     */
+    private static final class Chunks {
+        private final List<Integer> bounds = new ArrayList<>();
+        private int rootStart;
+        private int rootLength;
+        private byte[] rootEnd;
+    }
+
+    private static final byte[] TODO = "todo".getBytes(StandardCharsets.US_ASCII);
+    private static final int MIN_CHUNK_SIZE = 1 << 20;
+    private static final int CHUNKS_PER_THREAD = 4;
+    private static final int PROLOG_SCAN_LENGTH = 512;
+
+    private final TodoStore store;
+    private final ForkJoinPool pool;
+    private final int minChunkSize;
+}
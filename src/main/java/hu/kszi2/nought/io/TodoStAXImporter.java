@@ -0,0 +1,301 @@
+package hu.kszi2.nought.io;
+
+import hu.kszi2.nought.core.BadTodoOperation;
+import hu.kszi2.nought.core.TodoBuilder;
+import hu.kszi2.nought.core.TodoLinker;
+import hu.kszi2.nought.core.TodoStore;
+import hu.kszi2.nought.core.UnresolvedReferenceException;
+import hu.kszi2.nought.io.xml.GuidFormat;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.InputStream;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Date;
+
+/**
+ * <p>
+ * Implements the {@link TodoImporter} interface by reading XML files valid to the
+ * schema found in the resources directory of the project with a StAX pull parser.
+ * </p>
+ * <p>
+ * Compared to the SAX based {@link TodoXMLImporter}, this importer reuses its parser
+ * factory and its text buffer between todos, dispatches on the element's local name
+ * directly, and parses the GUIDs and due dates straight from the character data,
+ * without creating intermediate strings.
+ * </p>
+ * <p>
+ * By default, references to child todos are resolved after the whole file has been
+ * read (see {@link LinkMode#DEFERRED}), so the todos may be defined in any order.
+ * </p>
+ */
+public class TodoStAXImporter implements TodoImporter {
+    /**
+     * Constructs an importer, by setting the store to put the parsed todos into.
+     * References are linked using the {@link LinkMode#DEFERRED} mode.
+     *
+     * @param todoStore The store to parse the XML into
+     */
+    public TodoStAXImporter(TodoStore todoStore) {
+        this(todoStore, LinkMode.DEFERRED);
+    }
+
+    /**
+     * Constructs an importer, by setting the store to put the parsed todos into, and the
+     * mode used to link the todos to their children.
+     *
+     * @param todoStore The store to parse the XML into
+     * @param linkMode  The mode to use for linking child references
+     */
+    public TodoStAXImporter(TodoStore todoStore, LinkMode linkMode) {
+        store = todoStore;
+        linker = linkMode == LinkMode.DEFERRED ? store.newLinker() : null;
+    }
+
+    @Override
+    public TodoStore importFrom(InputStream strm)
+            throws XMLStreamException, UnresolvedReferenceException {
+        read(strm);
+        if (linker != null) linker.link();
+        return store;
+    }
+
+    /**
+     * Reads all todos from the input stream, and completes each of them, without
+     * linking the deferred references.
+     *
+     * @param strm The input stream to read from
+     * @throws XMLStreamException If an XML error occurs, or a todo could not be completed
+     */
+    void read(InputStream strm) throws XMLStreamException {
+        var reader = INPUT_FACTORY.get().createXMLStreamReader(strm);
+        try {
+            readTodos(reader);
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Completes a fully parsed todo, by building it into the store.
+     * Importers that do not build the todos straight away, may override this function
+     * to collect the builders instead.
+     *
+     * @param todo The builder containing all the parsed data of the todo
+     * @throws IllegalArgumentException If not all the required fields of the todo were set
+     * @throws BadTodoOperation         If the todo would violate its invariants
+     */
+    void complete(TodoBuilder todo) throws IllegalArgumentException, BadTodoOperation {
+        if (linker != null) {
+            todo.build(linker);
+        } else {
+            todo.build();
+        }
+    }
+
+    /**
+     * Reads all todo elements from the reader until the end of the document,
+     * building each parsed todo into the store.
+     *
+     * @param reader The reader to pull the XML events from
+     * @throws XMLStreamException If an XML error occurs, or a todo could not be built
+     */
+    private void readTodos(XMLStreamReader reader) throws XMLStreamException {
+        while (reader.hasNext()) {
+            switch (reader.next()) {
+                case XMLStreamConstants.START_ELEMENT -> startElement(reader);
+                case XMLStreamConstants.END_ELEMENT -> endElement(reader);
+                case XMLStreamConstants.CHARACTERS,
+                        XMLStreamConstants.CDATA,
+                        XMLStreamConstants.SPACE -> characters(reader);
+                default -> { /* nop */ }
+            }
+        }
+    }
+
+    /**
+     * Handles the start of an element, based on its local name.
+     * Unknown elements are ignored.
+     *
+     * @param reader The reader positioned on the start element
+     * @throws XMLStreamException If the element is invalid
+     */
+    private void startElement(XMLStreamReader reader) throws XMLStreamException {
+        switch (reader.getLocalName()) {
+            case "todo" -> startTodo(reader);
+            case "name", "desc", "date", "time" -> {
+                text.setLength(0);
+                collectText = true;
+            }
+            case "completed" -> builder.setCompleted(true);
+            default -> { /* nop */ }
+        }
+    }
+
+    /**
+     * Handles the start of a todo element, which is either the definition of a todo
+     * object, identified by its id attribute, or a reference to a child todo object
+     * through its ref attribute.
+     *
+     * @param reader The reader positioned on the todo element
+     * @throws XMLStreamException If the element neither has an id, nor a ref attribute,
+     *                            or the GUID in them is invalid
+     */
+    private void startTodo(XMLStreamReader reader) throws XMLStreamException {
+        try {
+            var id = reader.getAttributeValue(null, "id");
+            if (id != null) {
+                builder = store.newBuilder().setId(GuidFormat.parse(id, 1)); // skip leading _
+                return;
+            }
+            var ref = reader.getAttributeValue(null, "ref");
+            if (ref != null) {
+                skipEnd = true;
+                builder.addChild(GuidFormat.parse(ref, 1));
+                return;
+            }
+        } catch (IllegalArgumentException ex) {
+            throw new XMLStreamException(ex.getMessage(), reader.getLocation(), ex);
+        }
+        throw new XMLStreamException("invalid <todo> element: " +
+                "neither todo definition with id attribute, " +
+                "nor reference with ref attribute",
+                reader.getLocation());
+    }
+
+    /**
+     * Handles the end of an element.
+     * Text elements pass their collected text to the todo being built, and the end of
+     * a todo definition builds the todo object into the store.
+     *
+     * @param reader The reader positioned on the end element
+     * @throws XMLStreamException If the todo object could not be built
+     */
+    private void endElement(XMLStreamReader reader) throws XMLStreamException {
+        collectText = false;
+        switch (reader.getLocalName()) {
+            case "todo" -> endTodo(reader);
+            case "name" -> builder.setName(text.toString());
+            case "desc" -> builder.setDescription(text.toString());
+            case "date" -> parseDueDate();
+            case "time" -> parseDueTime();
+            default -> { /* nop */ }
+        }
+    }
+
+    /**
+     * Finish the handling of a todo object.
+     * This uses the previously set state of the builder to produce the appropriate Todo
+     * object.
+     * The end of todo references is skipped.
+     *
+     * @param reader The reader positioned on the end element
+     * @throws XMLStreamException If a Todo object could not be constructed while keeping its
+     *                            invariants, or not all required fields were present
+     */
+    private void endTodo(XMLStreamReader reader) throws XMLStreamException {
+        if (skipEnd) {
+            skipEnd = false;
+            return;
+        }
+        if (builder == null) return;
+
+        try {
+            complete(builder);
+            builder = null;
+        } catch (Exception ex) {
+            throw new XMLStreamException(ex.getMessage(), reader.getLocation(), ex);
+        }
+    }
+
+    /**
+     * Appends the character data the reader is positioned on to the text buffer,
+     * if the current element's text is needed.
+     *
+     * @param reader The reader positioned on the character data
+     */
+    private void characters(XMLStreamReader reader) {
+        if (!collectText) return;
+        text.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+    }
+
+    /**
+     * Parses the collected text as a date of the ISO (long) format ({@code yyyy-MM-dd}) and
+     * if it is valid, sets it as the due date of the todo being built.
+     * Otherwise, the function is nop.
+     */
+    private void parseDueDate() {
+        if (text.length() != 10 || text.charAt(4) != '-' || text.charAt(7) != '-') return;
+
+        var year = parseDigits(0, 4);
+        var month = parseDigits(5, 7);
+        var day = parseDigits(8, 10);
+        if (year < 0 || month < 0 || day < 0) return;
+
+        try {
+            var date = LocalDate.of(year, month, day);
+            builder.setDueDate(Date.from(date.atStartOfDay(ZoneId.systemDefault()).toInstant()));
+        } catch (DateTimeException ex) {
+            /* nop */
+        }
+    }
+
+    /**
+     * Parses a decimal number from the collected text between the given indices.
+     *
+     * @param from The index of the first digit
+     * @param to   The index after the last digit
+     * @return The parsed number, or -1, if a character is not a digit
+     */
+    private int parseDigits(int from, int to) {
+        var value = 0;
+        for (int i = from; i < to; ++i) {
+            var digit = Character.digit(text.charAt(i), 10);
+            if (digit < 0) return -1;
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    /**
+     * Parses the collected text as a time of the ISO format ({@code HH:mm:ss}) and
+     * if it is valid, sets it as the due time of the todo being built.
+     * Otherwise, the function is nop.
+     */
+    private void parseDueTime() {
+        try {
+            builder.setDueTime(LocalTime.parse(text, DateTimeFormatter.ISO_TIME));
+        } catch (DateTimeParseException ex) {
+            /* nop */
+        }
+    }
+
+    /**
+     * Creates a new input factory, with external entities and DTDs disabled.
+     *
+     * @return The configured input factory
+     */
+    private static XMLInputFactory createInputFactory() {
+        var factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    }
+
+    private static final ThreadLocal<XMLInputFactory> INPUT_FACTORY =
+            ThreadLocal.withInitial(TodoStAXImporter::createInputFactory);
+
+    private final TodoStore store;
+    private final TodoLinker linker;
+    private final StringBuilder text = new StringBuilder();
+    private TodoBuilder builder;
+    private boolean collectText = false;
+    private boolean skipEnd = false;
+}
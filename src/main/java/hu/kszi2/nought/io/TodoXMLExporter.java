@@ -1,20 +1,30 @@
 package hu.kszi2.nought.io;
 
-import hu.kszi2.nought.core.Todo;
+import hu.kszi2.nought.core.TodoSnapshot;
 import hu.kszi2.nought.core.TodoStore;
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import javax.xml.stream.*;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.text.SimpleDateFormat;
 import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.function.IntConsumer;
 
 /**
  * Implements the {@link TodoExporter} interface with exporting to an XML file.
  * The XML is valid to the schema found in the resources directory of the project.
+ * Each todo tree is written in a single post-order pass, so children are always
+ * written before their parents, and each todo is written exactly once.
+ * The todos are written from a snapshot of the store, so the store may be changed while
+ * the export runs on another thread.
  */
 public class TodoXMLExporter implements TodoExporter {
     /**
@@ -30,12 +40,42 @@ public class TodoXMLExporter implements TodoExporter {
      */
     public TodoXMLExporter(TodoStore store) {
         this.store = store;
+        this.snapshot = null;
     }
 
+    /**
+     * Constructs an exporter object writing the given snapshot of a store.
+     *
+     * @param snapshot The snapshot to export
+     */
+    public TodoXMLExporter(TodoSnapshot snapshot) {
+        this.store = null;
+        this.snapshot = snapshot;
+    }
+
+    /**
+     * Exports todos to a given byte stream, as UTF-8 encoded XML.
+     * The stream is flushed, but not closed.
+     *
+     * @param strm The output stream to export the todos to.
+     * @throws XMLStreamException If an error occurs while writing the XML.
+     * @throws IOException        If an error occurs while flushing the stream.
+     */
     @Override
+    public void export(OutputStream strm) throws XMLStreamException, IOException {
+        var writer = new OutputStreamWriter(strm, StandardCharsets.UTF_8);
+        export(writer);
+        writer.flush();
+    }
+
+    /**
+     * Exports todos to a given writer stream.
+     *
+     * @param writer The writer stream to export the todos to.
+     * @throws XMLStreamException If an error occurs while writing the XML.
+     */
     public void export(Writer writer) throws XMLStreamException {
-        var factory = XMLOutputFactory.newFactory();
-        stream = factory.createXMLStreamWriter(writer);
+        stream = OUTPUT_FACTORY.createXMLStreamWriter(writer);
 
         stream.setDefaultNamespace(NOUGHT_NAMESPACE);
         stream.writeStartDocument();
@@ -43,39 +83,51 @@ public class TodoXMLExporter implements TodoExporter {
         stream.writeDefaultNamespace(NOUGHT_NAMESPACE);
         stream.writeStartElement(NOUGHT_NAMESPACE, "todos");
 
-        var it = store.iterator();
-        while (it.hasNext()) {
-            addTodoOutput(it.next());
+        written = 0;
+        todos = snapshot != null ? snapshot : store.freeze();
+        for (var root = todos.size() > 0 ? 0 : -1; root >= 0; root = todos.getNextSibling(root)) {
+            writeTree(root);
         }
 
         stream.writeEndDocument(); //</todos></nought>
         stream.close();
 
         stream = null;
-        written.clear();
+        todos = null;
+    }
+
+    @Override
+    public void setProgressListener(@Nullable IntConsumer listener) {
+        progress = listener;
     }
 
     /**
      * <p>
-     * Writes a given todo to the output, if its children have all been written to
-     * it already.
+     * Writes the todo tree rooted at the given todo to the output in post-order,
+     * that is, every todo is written after all its children have been written.
      * </p>
      * <p>
-     * If the todo is written to the output, its parent is written as well, recursively using this
-     * function.
+     * The subtree is walked in the pre-order of the snapshot, keeping a stack of the
+     * todos whose subtree has not ended yet, which are written once it ends.
+     * The traversal uses an explicit stack instead of recursion, so the depth of the
+     * tree is not limited by the call stack; the memory used is proportional to the
+     * depth of the tree.
      * </p>
      *
-     * @param todo The todo to write
+     * @param root The index of the root of the todo tree to write
      * @throws XMLStreamException XML export error occurred
      */
-    private void addTodoOutput(@NotNull Todo todo) throws XMLStreamException {
-        var children = todo.getChildren();
-        if (wroteAllChildren(children)) {
-            writeTodo(todo);
-            var parent = todo.getParent();
-            if (parent != null) {
-                addTodoOutput(parent);
+    private void writeTree(int root) throws XMLStreamException {
+        var open = new ArrayDeque<Integer>();
+        var end = root + todos.getSubtreeSize(root);
+        for (int todo = root; todo < end; ++todo) {
+            while (!open.isEmpty() && open.peek() + todos.getSubtreeSize(open.peek()) <= todo) {
+                writeTodo(open.pop());
             }
+            open.push(todo);
+        }
+        while (!open.isEmpty()) {
+            writeTodo(open.pop());
         }
     }
 
@@ -94,38 +146,21 @@ public class TodoXMLExporter implements TodoExporter {
     }
 
     /**
-     * Checks is a list of todos with the given ids have all been written to the output already.
-     * It is used to check if a given todo's children have already been written before writing
-     * that given todo out as well.
-     *
-     * @param cids The list of ids to check
-     * @return Whether they have all been written to output
-     */
-    private boolean wroteAllChildren(List<UUID> cids) {
-        return written.containsAll(cids);
-    }
-
-    /**
-     * Checks if a todo has been written to the output.
-     * If yes, the function is nop.
-     * Otherwise, writes the appropriate tags representing a todo in the XML Schema, including
+     * Writes the appropriate tags representing a todo in the XML Schema, including
      * all sub-tags required.
      *
-     * @param todo The todo to write out
+     * @param todo The index of the todo to write out
      * @throws XMLStreamException XML export error occurred
      */
-    private void writeTodo(@NotNull Todo todo) throws XMLStreamException {
-        if (written.contains(todo.getId())) return;
-
-        written.add(todo.getId());
+    private void writeTodo(int todo) throws XMLStreamException {
         stream.writeStartElement(NOUGHT_NAMESPACE, "todo");
-        stream.writeAttribute(NOUGHT_NAMESPACE, "id", formatGuid(todo.getId()));
+        stream.writeAttribute(NOUGHT_NAMESPACE, "id", formatGuid(todos.getId(todo)));
         // 1. name
-        writeTodoField("name", todo.getName());
+        writeTodoField("name", todos.getName(todo));
         // 2. desc
-        writeTodoField("desc", todo.getDescription());
+        writeTodoField("desc", todos.getDescription(todo));
         // 3. completed?
-        if (todo.isCompleted()) {
+        if (todos.isCompleted(todo)) {
             stream.writeEmptyElement(NOUGHT_NAMESPACE, "completed");
         }
         // 4. depends-on?
@@ -134,21 +169,22 @@ public class TodoXMLExporter implements TodoExporter {
         writeDue(todo);
 
         stream.writeEndElement();
+        if (progress != null) progress.accept(++written);
     }
 
     /**
      * Writes a given todo's children as todo reference tags to the output.
      *
-     * @param todo The todo whose children are to be written
+     * @param todo The index of the todo whose children are to be written
      * @throws XMLStreamException XML export error occurred
      */
-    private void writeChildren(@NotNull Todo todo) throws XMLStreamException {
-        var children = todo.getChildren();
-        if (children.isEmpty()) return;
+    private void writeChildren(int todo) throws XMLStreamException {
+        var first = todos.getFirstChild(todo);
+        if (first < 0) return;
 
         stream.writeStartElement(NOUGHT_NAMESPACE, "depends-on");
-        for (var child : children) {
-            writeTodoRef(child);
+        for (var child = first; child >= 0; child = todos.getNextSibling(child)) {
+            writeTodoRef(todos.getId(child));
         }
         stream.writeEndElement();
     }
@@ -184,12 +220,12 @@ public class TodoXMLExporter implements TodoExporter {
      * If the todo has any associated due date/due time fields, the enclosing XML tag is written
      * with the actually non-null fields inside.
      *
-     * @param todo The todo whose due fields are to be written
+     * @param todo The index of the todo whose due fields are to be written
      * @throws XMLStreamException XML export error occurred
      */
-    private void writeDue(@NotNull Todo todo) throws XMLStreamException {
-        var date = todo.getDueDate();
-        var time = todo.getDueTime();
+    private void writeDue(int todo) throws XMLStreamException {
+        var date = todos.getDueDate(todo);
+        var time = todos.getDueTime(todo);
         if (date == null) return;
 
         stream.writeStartElement(NOUGHT_NAMESPACE, "due");
@@ -211,8 +247,7 @@ public class TodoXMLExporter implements TodoExporter {
      */
     private String formatTime(LocalTime time) {
         if (time == null) return null;
-        var format = DateTimeFormatter.ofPattern("HH:mm:ss");
-        return format.format(time);
+        return TIME_FORMAT.format(time);
     }
 
     /**
@@ -225,11 +260,20 @@ public class TodoXMLExporter implements TodoExporter {
      */
     private String formatDate(Date date) {
         if (date == null) return null;
-        var format = new SimpleDateFormat("yyyy-MM-dd");
-        return format.format(date);
+        return dateFormat.format(date);
     }
 
+    private static final XMLOutputFactory OUTPUT_FACTORY = XMLOutputFactory.newFactory();
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("HH:mm:ss");
+
     private XMLStreamWriter stream;
+    private int written;
+    @Nullable
+    private IntConsumer progress;
+    private TodoSnapshot todos;
+    @Nullable
     private final TodoStore store;
-    private final Set<UUID> written = new HashSet<>();
+    @Nullable
+    private final TodoSnapshot snapshot;
+    private final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
 }
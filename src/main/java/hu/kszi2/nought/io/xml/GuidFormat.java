@@ -0,0 +1,65 @@
+package hu.kszi2.nought.io.xml;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.UUID;
+
+/**
+ * <p>
+ * Utility class for reading GUIDs directly from character data, without
+ * creating intermediate substrings.
+ * </p>
+ * <p>
+ * GUIDs in the Nought XML files are stored in their canonical
+ * {@code xxxxxxxx-xxxx-xxxx-xxxx-xxxxxxxxxxxx} form, prefixed with an underscore,
+ * so they can be used as {@code xsd:ID} values.
+ * The prefix is skipped by passing the appropriate offset to the parser.
+ * </p>
+ */
+public final class GuidFormat {
+    /**
+     * Not instantiable utility class.
+     */
+    private GuidFormat() {
+    }
+
+    /**
+     * Parses a GUID from the given character sequence, starting at the given offset and
+     * reading until the end of the sequence.
+     * The canonical 36 character form is parsed in-place; any other form accepted by
+     * {@link UUID#fromString(String)} is delegated to it.
+     *
+     * @param text   The text containing the GUID
+     * @param offset The index of the first character of the GUID in the text
+     * @return The parsed GUID
+     * @throws IllegalArgumentException If the text does not contain a valid GUID at the offset
+     */
+    public static @NotNull UUID parse(@NotNull CharSequence text, int offset)
+            throws IllegalArgumentException {
+        if (text.length() - offset != CANONICAL_LENGTH) {
+            if (offset > text.length()) throw new IllegalArgumentException("missing GUID");
+            return UUID.fromString(text.subSequence(offset, text.length()).toString());
+        }
+
+        long msb = 0;
+        long lsb = 0;
+        for (int i = 0; i < CANONICAL_LENGTH; ++i) {
+            var c = text.charAt(offset + i);
+            if (i == 8 || i == 13 || i == 18 || i == 23) {
+                if (c != '-') throw new IllegalArgumentException("invalid GUID: " + text);
+                continue;
+            }
+
+            var digit = Character.digit(c, 16);
+            if (digit < 0) throw new IllegalArgumentException("invalid GUID: " + text);
+            if (i < 18) {
+                msb = (msb << 4) | digit;
+            } else {
+                lsb = (lsb << 4) | digit;
+            }
+        }
+        return new UUID(msb, lsb);
+    }
+
+    private static final int CANONICAL_LENGTH = 36;
+}
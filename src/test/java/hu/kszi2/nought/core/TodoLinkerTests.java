@@ -0,0 +1,62 @@
+package hu.kszi2.nought.core;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TodoLinkerTests {
+    @BeforeEach
+    void setUp() {
+        store = new TodoStore();
+        linker = store.newLinker();
+    }
+
+    @Test
+    void parentCanBeBuiltBeforeItsChildren() throws Exception {
+        var firstId = UUID.randomUUID();
+        var secondId = UUID.randomUUID();
+        var parent = store.newBuilder()
+                .newId().setName("parent").setDescription("")
+                .addChild(firstId)
+                .addChild(secondId)
+                .build(linker);
+        var second = store.newBuilder().setId(secondId).setName("second").setDescription("").build(linker);
+        var first = store.newBuilder().setId(firstId).setName("first").setDescription("").build(linker);
+
+        assertTrue(parent.getChildren().isEmpty());
+        assertEquals(2, linker.pending());
+
+        linker.link();
+
+        assertEquals(List.of(first, second), parent.getChildTodos());
+        assertSame(parent, first.getParent());
+        assertSame(parent, second.getParent());
+        assertEquals(0, linker.pending());
+    }
+
+    @Test
+    void danglingReferencesAreReportedTogether() throws Exception {
+        var missing1 = UUID.randomUUID();
+        var missing2 = UUID.randomUUID();
+        var child = store.newBuilder().newId().setName("child").setDescription("").build();
+        var parent = store.newBuilder()
+                .newId().setName("parent").setDescription("")
+                .addChild(missing1)
+                .addChild(child.getId())
+                .addChild(missing2)
+                .build(linker);
+
+        var ex = assertThrows(UnresolvedReferenceException.class, () -> linker.link());
+
+        assertEquals(List.of(missing1, missing2), ex.getMissing());
+        assertTrue(ex.getMessage().contains(missing1.toString()));
+        assertSame(parent, child.getParent());
+    }
+
+    private TodoStore store;
+    private TodoLinker linker;
+}
@@ -3,7 +3,21 @@ package hu.kszi2.nought.core;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.Set;
 import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -150,5 +164,615 @@ class TodoStoreTests {
                 () -> store.findById(cid));
     }
 
+    @Test
+    void removeBranchHandlesDeepBranchAndDetachesIt() throws Exception {
+        var depth = 100_000;
+        var branch = store.newBuilder().newId().setName("leaf").setDescription("").build();
+        for (int i = 1; i < depth; ++i) {
+            branch = store.newBuilder().newId().setName("n" + i).setDescription("").addChild(branch.getId()).build();
+        }
+        var holder = store.newBuilder().newId().setName("holder").setDescription("").addChild(branch.getId()).build();
+        var id = branch.getId();
+
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> store.removeBranchAtId(id));
+
+        assertEquals(1, store.size());
+        assertTrue(holder.getChildren().isEmpty());
+        assertEquals(1, holder.getSubtreeSize());
+        assertTrue(store.search("leaf", 10).isEmpty());
+    }
+
+    @Test
+    void storeIteratesTodosInInsertionOrder() throws Exception {
+        var builder = store.newBuilder();
+        var ids = new ArrayList<UUID>();
+        for (int i = 0; i < 100; ++i) {
+            var todo = builder.newId().setName("todo" + i).setDescription("").build();
+            ids.add(todo.getId());
+        }
+
+        var it = store.iterator();
+        var iterated = new ArrayList<UUID>();
+        while (it.hasNext()) {
+            iterated.add(it.next().getId());
+        }
+        assertEquals(ids, iterated);
+    }
+
+    @Test
+    void storeAddingTodoTwiceKeepsOneInstance() throws Exception {
+        var todo = store.newBuilder().newId().setName("what").setDescription("ever").build();
+
+        store.add(todo);
+        store.add(todo);
+        assertEquals(1, store.size());
+    }
+
+    @Test
+    void storeScalesLinearlyWithLargeNumberOfTodos() {
+        final var count = 200_000;
+        var ids = new UUID[count];
+
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+            var builder = store.newBuilder().setName("todo").setDescription("");
+            for (int i = 0; i < count; ++i) {
+                ids[i] = builder.newId().build().getId();
+            }
+            for (var id : ids) {
+                assertEquals(id, store.findById(id).getId());
+            }
+            for (var id : ids) {
+                store.removeById(id);
+            }
+        });
+        assertEquals(0, store.size());
+    }
+
+    @Test
+    void copyIsIndependentOfOriginal() throws Exception {
+        var child = store.newBuilder().newId().setName("child").setDescription("").build();
+        var parent = store.newBuilder().newId().setName("parent").setDescription("").addChild(child.getId()).build();
+        parent.setDueDate("2023-11-26");
+
+        var copy = store.copy();
+        parent.setName("renamed");
+        parent.getDueDate().setTime(0);
+
+        var parentCopy = copy.findById(parent.getId());
+        assertNotSame(parent, parentCopy);
+        assertEquals("parent", parentCopy.getName());
+        assertNotEquals(0, parentCopy.getDueDate().getTime());
+        assertEquals(List.of(child.getId()), parentCopy.getChildren());
+        assertSame(copy.findById(child.getId()), parentCopy.getChildTodos().get(0));
+    }
+
+    @Test
+    void dueRangeQueryReturnsTodosInDueOrder() throws Exception {
+        var late = dueTodo("late", "2023-11-27", LocalTime.of(9, 0));
+        var allDay = dueTodo("allDay", "2023-11-26", null);
+        var early = dueTodo("early", "2023-11-26", LocalTime.of(8, 30));
+        dueTodo("outside", "2023-11-28", null);
+        store.newBuilder().newId().setName("undated").setDescription("").build();
+
+        var found = store.findDueBetween(instant("2023-11-26T00:00"), instant("2023-11-28T00:00"));
+        assertEquals(List.of(early, allDay, late), found);
+    }
+
+    @Test
+    void dueIndexFollowsChangesAndRemoval() throws Exception {
+        var todo = dueTodo("todo", "2023-11-26", LocalTime.of(12, 0));
+        var from = instant("2023-11-26T00:00");
+        var to = instant("2023-11-27T00:00");
+
+        todo.setDueDate("2023-12-01");
+        assertTrue(store.findDueBetween(from, to).isEmpty());
+        todo.setDueDate("2023-11-26");
+        assertEquals(List.of(todo), store.findDueBetween(from, to));
+
+        todo.setDueTime((LocalTime) null);
+        todo.setDueDate((Date) null);
+        assertTrue(store.findDueBetween(Instant.MIN, Instant.MAX).isEmpty());
+
+        todo.setDueDate("2023-11-26");
+        todo.destroy();
+        assertTrue(store.findDueBetween(Instant.MIN, Instant.MAX).isEmpty());
+    }
+
+    @Test
+    void overdueQuerySkipsCompletedTodos() throws Exception {
+        var done = dueTodo("done", "2023-11-25", null);
+        var open = dueTodo("open", "2023-11-25", LocalTime.of(10, 0));
+        dueTodo("upcoming", "2023-11-27", null);
+        done.setCompleted(true);
+
+        assertEquals(List.of(open), store.findOverdue(instant("2023-11-26T00:00")));
+
+        done.setCompleted(false);
+        assertEquals(List.of(open, done), store.findOverdue(instant("2023-11-26T00:00")));
+    }
+
+    @Test
+    void searchRanksNameMatchesFirst() throws Exception {
+        var inDesc = store.newBuilder().newId().setName("Shopping").setDescription("Buy milk").build();
+        var inName = store.newBuilder().newId().setName("Milk run").setDescription("").build();
+        store.newBuilder().newId().setName("Laundry").setDescription("").build();
+
+        assertEquals(List.of(inName, inDesc), store.search("MILK", 10));
+        assertEquals(List.of(inName), store.search("milk", 1));
+        assertTrue(store.search("bread", 10).isEmpty());
+    }
+
+    @Test
+    void searchSupportsAndOrAndPrefixTerms() throws Exception {
+        var report = store.newBuilder().newId().setName("Write report").setDescription("quarterly").build();
+        var reporting = store.newBuilder().newId().setName("Reporting tool").setDescription("").build();
+        var meeting = store.newBuilder().newId().setName("Team meeting").setDescription("").build();
+
+        assertEquals(List.of(report), store.search("report quarterly", 10));
+        assertEquals(Set.of(report, reporting), Set.copyOf(store.search("rep*", 10)));
+        assertEquals(Set.of(report, meeting), Set.copyOf(store.search("quarterly OR meeting", 10)));
+        assertTrue(store.search("report meeting", 10).isEmpty());
+    }
+
+    @Test
+    void searchIndexFollowsChangesAndRemoval() throws Exception {
+        var todo = store.newBuilder().newId().setName("Old name").setDescription("").build();
+
+        todo.setName("New name");
+        assertTrue(store.search("old", 10).isEmpty());
+        assertEquals(List.of(todo), store.search("new", 10));
+
+        todo.setDescription("details");
+        assertEquals(List.of(todo), store.search("details", 10));
+
+        todo.destroy();
+        assertTrue(store.search("new", 10).isEmpty());
+    }
+
+    @Test
+    void searchCanBeLimitedToSubtree() throws Exception {
+        var inside = store.newBuilder().newId().setName("Fix bug").setDescription("").build();
+        var root = store.newBuilder().newId().setName("Project").setDescription("").addChild(inside.getId()).build();
+        store.newBuilder().newId().setName("Another bug").setDescription("").build();
+
+        assertEquals(List.of(inside), store.search("bug", 10, root));
+        assertEquals(2, store.search("bug", 10).size());
+    }
+
+    @Test
+    void descendantChecksMatchParentLinksAfterRandomMoves() throws Exception {
+        var random = new Random(42);
+        var todos = new ArrayList<Todo>();
+        for (int i = 0; i < 300; ++i) {
+            todos.add(store.newBuilder().newId().setName("t" + i).setDescription("").build());
+        }
+        // a deep chain runs out of room between labels, and forces relabeling
+        for (int i = 1; i < 100; ++i) {
+            todos.get(i - 1).addChild(todos.get(i));
+        }
+        for (int i = 0; i < 3000; ++i) {
+            var parent = todos.get(random.nextInt(todos.size()));
+            var child = todos.get(random.nextInt(todos.size()));
+            if (parent == child || parent.isDescendantOf(child)) continue;
+            parent.addChild(child);
+        }
+
+        for (var a : todos) {
+            for (var b : todos) {
+                var ancestor = false;
+                for (var t = a.getParent(); t != null; t = t.getParent()) {
+                    if (t == b) ancestor = true;
+                }
+                assertEquals(ancestor, a.isDescendantOf(b));
+            }
+        }
+    }
+
+    @Test
+    void moveReparentsTodoWithSingleEvent() throws Exception {
+        var child = store.newBuilder().newId().setName("child").setDescription("").build();
+        var oldParent = store.newBuilder().newId().setName("old").setDescription("").addChild(child.getId()).build();
+        var sibling = store.newBuilder().newId().setName("sibling").setDescription("").build();
+        var newParent = store.newBuilder().newId().setName("new").setDescription("").addChild(sibling.getId()).build();
+        var events = new ArrayList<TodoEvent>();
+        store.addListener(events::add);
+
+        store.move(child.getId(), newParent.getId(), 0);
+
+        assertTrue(oldParent.getChildren().isEmpty());
+        assertEquals(List.of(child, sibling), newParent.getChildTodos());
+        assertSame(newParent, child.getParent());
+        assertTrue(child.isDescendantOf(newParent));
+        assertEquals(1, oldParent.getSubtreeSize());
+        assertEquals(3, newParent.getSubtreeSize());
+        assertEquals(1, events.size());
+        var event = events.get(0);
+        assertEquals(TodoEvent.Kind.MOVED, event.getKind());
+        assertSame(newParent, event.getParent());
+        assertEquals(0, event.getIndex());
+        assertSame(oldParent, event.getPreviousParent());
+        assertEquals(0, event.getPreviousIndex());
+    }
+
+    @Test
+    void moveToTopLevelMakesTodoRoot() throws Exception {
+        var child = store.newBuilder().newId().setName("child").setDescription("").build();
+        var parent = store.newBuilder().newId().setName("parent").setDescription("").addChild(child.getId()).build();
+
+        store.move(child.getId(), null, 0);
+
+        assertNull(child.getParent());
+        assertTrue(parent.getChildren().isEmpty());
+        assertTrue(store.getRoots().contains(child));
+        assertFalse(child.isDescendantOf(parent));
+    }
+
+    @Test
+    void moveRejectsCyclesAndBrokenInvariants() throws Exception {
+        var child = store.newBuilder().newId().setName("child").setDescription("").build();
+        var parent = store.newBuilder().newId().setName("parent").setDescription("").addChild(child.getId()).build();
+        var done = store.newBuilder().newId().setName("done").setDescription("").build();
+        done.setCompleted(true);
+
+        assertThrows(IllegalArgumentException.class, () -> store.move(parent.getId(), child.getId(), 0));
+        assertThrows(BadTodoOperation.class, () -> store.move(child.getId(), done.getId(), 0));
+        assertThrows(IndexOutOfBoundsException.class, () -> store.move(child.getId(), parent.getId(), 1));
+        assertSame(parent, child.getParent());
+    }
+
+    @Test
+    void completeBranchCompletesWholeSubtreeWithSingleEvent() throws Exception {
+        var leaf = dueTodo("leaf", "2023-11-25", null);
+        var done = store.newBuilder().newId().setName("done").setDescription("").build();
+        done.setCompleted(true);
+        var middle = store.newBuilder().newId().setName("middle").setDescription("")
+                .addChild(leaf.getId()).addChild(done.getId()).build();
+        var root = store.newBuilder().newId().setName("root").setDescription("").addChild(middle.getId()).build();
+        var top = store.newBuilder().newId().setName("top").setDescription("").addChild(root.getId()).build();
+        var events = new ArrayList<TodoEvent>();
+        store.addListener(events::add);
+
+        store.completeBranch(root.getId());
+
+        assertTrue(root.isCompleted() && middle.isCompleted() && leaf.isCompleted());
+        assertFalse(top.isCompleted());
+        assertEquals(4, top.getCompletedInSubtree());
+        assertEquals(0, top.getOpenChildCount());
+        assertNull(top.getEarliestOpenDue());
+        assertTrue(store.findOverdue(instant("2023-11-26T00:00")).isEmpty());
+        assertEquals(1, events.size());
+        assertEquals(TodoEvent.Kind.BRANCH_COMPLETED, events.get(0).getKind());
+        assertDoesNotThrow(() -> top.setCompleted(true));
+    }
+
+    @Test
+    void reopenPathReopensTodoAndAncestors() throws Exception {
+        var leaf = dueTodo("leaf", "2023-11-25", null);
+        var sibling = store.newBuilder().newId().setName("sibling").setDescription("").build();
+        var middle = store.newBuilder().newId().setName("middle").setDescription("")
+                .addChild(leaf.getId()).addChild(sibling.getId()).build();
+        var root = store.newBuilder().newId().setName("root").setDescription("").addChild(middle.getId()).build();
+        store.completeBranch(root.getId());
+        var events = new ArrayList<TodoEvent>();
+        store.addListener(events::add);
+
+        store.reopenPath(leaf.getId());
+
+        assertFalse(leaf.isCompleted() || middle.isCompleted() || root.isCompleted());
+        assertTrue(sibling.isCompleted());
+        assertEquals(1, root.getCompletedInSubtree());
+        assertEquals(1, root.getOpenChildCount());
+        assertEquals(1, middle.getOpenChildCount());
+        assertEquals(leaf.getDueInstant(), root.getEarliestOpenDue());
+        assertEquals(List.of(leaf), store.findOverdue(instant("2023-11-26T00:00")));
+        assertEquals(1, events.size());
+        assertEquals(TodoEvent.Kind.PATH_REOPENED, events.get(0).getKind());
+        assertThrows(BadTodoOperation.class, () -> root.setCompleted(true));
+    }
+
+    @Test
+    void frozenSnapshotIsFlatPreOrderUnaffectedByLaterChanges() throws Exception {
+        var root = store.newBuilder().newId().setName("Root").setDescription("").build();
+        var first = store.newBuilder().newId().setName("First").setDescription("").build();
+        var leaf = store.newBuilder().newId().setName("Leaf").setDescription("").build();
+        var second = store.newBuilder().newId().setName("Second").setDescription("").build();
+        var other = dueTodo("Other", "2023-11-25", LocalTime.of(9, 30));
+        root.addChild(first);
+        first.addChild(leaf);
+        root.addChild(second);
+        leaf.setCompleted(true);
+
+        var snapshot = store.freeze();
+        root.setName("Renamed");
+        second.destroy();
+
+        assertEquals(5, snapshot.size());
+        var names = new ArrayList<String>();
+        for (int i = 0; i < snapshot.size(); ++i) {
+            names.add(snapshot.getName(i));
+        }
+        assertEquals(List.of("Root", "First", "Leaf", "Second", "Other"), names);
+        assertArrayEquals(new int[]{4, 2, 1, 1, 1}, new int[]{
+                snapshot.getSubtreeSize(0), snapshot.getSubtreeSize(1), snapshot.getSubtreeSize(2),
+                snapshot.getSubtreeSize(3), snapshot.getSubtreeSize(4)});
+        assertEquals(-1, snapshot.getParent(0));
+        assertEquals(1, snapshot.getParent(2));
+        assertEquals(0, snapshot.getParent(3));
+        assertEquals(3, snapshot.getNextSibling(1));
+        assertEquals(4, snapshot.getNextSibling(0));
+        assertEquals(-1, snapshot.getNextSibling(3));
+        assertEquals(-1, snapshot.getFirstChild(2));
+        assertEquals(2, snapshot.getChildCount(0));
+        assertTrue(snapshot.isCompleted(2));
+        assertEquals(other.getDueDate(), snapshot.getDueDate(4));
+        assertEquals(LocalTime.of(9, 30), snapshot.getDueTime(4));
+        assertNull(snapshot.getDueDate(0));
+        assertEquals(3, snapshot.indexOf(second.getId()));
+        assertThrows(NoSuchElementException.class, () -> snapshot.indexOf(UUID.randomUUID()));
+    }
+
+    @Test
+    void frozenSnapshotIsSearchedLikeTheStore() throws Exception {
+        var report = store.newBuilder().newId().setName("Write report").setDescription("quarterly").build();
+        var reporting = store.newBuilder().newId().setName("Reporting tool").setDescription("report").build();
+        var meeting = store.newBuilder().newId().setName("Team meeting").setDescription("").build();
+        var snapshot = store.freeze();
+
+        for (var query : List.of("report", "rep*", "quarterly OR meeting", "report meeting", "milk", "")) {
+            var expected = new ArrayList<UUID>();
+            for (var todo : store.search(query, 10)) {
+                expected.add(todo.getId());
+            }
+            var found = new ArrayList<UUID>();
+            for (var index : snapshot.search(query, 10)) {
+                found.add(snapshot.getId(index));
+            }
+            assertEquals(expected, found, query);
+        }
+        assertEquals(1, snapshot.search("rep*", 1).length);
+    }
+
+    private Todo dueTodo(String name, String date, LocalTime time) throws Exception {
+        var todo = store.newBuilder().newId().setName(name).setDescription("").build();
+        todo.setDueDate(date);
+        if (time != null) todo.setDueTime(time);
+        return todo;
+    }
+
+    private static Instant instant(String localDateTime) {
+        return LocalDateTime.parse(localDateTime).atZone(ZoneId.systemDefault()).toInstant();
+    }
+
+    @Test
+    void storeTracksRootTodos() throws Exception {
+        var child = store.newBuilder().newId().setName("child").setDescription("").build();
+        assertEquals(List.of(child), new ArrayList<>(store.getRoots()));
+
+        var parent = store.newBuilder().newId().setName("parent").setDescription("").addChild(child.getId()).build();
+        assertEquals(List.of(parent), new ArrayList<>(store.getRoots()));
+
+        parent.destroyTree();
+        assertTrue(store.getRoots().isEmpty());
+    }
+
+    @Test
+    void storeReportsMutationsInOrder() throws Exception {
+        var log = new ArrayList<String>();
+        store.addListener(e -> log.add(e.toString()));
+
+        var child = store.newBuilder().newId().setName("child").setDescription("").build();
+        var parent = store.newBuilder().newId().setName("parent").setDescription("").addChild(child.getId()).build();
+        child.setName("kid");
+        child.setDueDate("2023-11-26");
+        child.setCompleted(true);
+        child.destroy();
+        parent.destroyTree();
+
+        assertEquals(List.of("CREATED child",
+                "CREATED parent",
+                "CHILD_ADDED child (parent: parent)",
+                "FIELD_CHANGED kid NAME",
+                "FIELD_CHANGED kid DUE_DATE",
+                "COMPLETED_TOGGLED kid",
+                "REMOVED kid (parent: parent)",
+                "BRANCH_REMOVED parent"), log);
+    }
+
+    @Test
+    void storeDoesNotReportUnchangedFields() throws Exception {
+        var todo = store.newBuilder().newId().setName("todo").setDescription("").build();
+        var events = new ArrayList<TodoEvent>();
+        store.addListener(events::add);
+
+        todo.setName("todo");
+        todo.setCompleted(false);
+        assertTrue(events.isEmpty());
+    }
+
+    @Test
+    void removedListenerIsNotNotified() throws Exception {
+        var events = new ArrayList<TodoEvent>();
+        TodoStoreListener listener = events::add;
+        store.addListener(listener);
+        store.removeListener(listener);
+
+        store.newBuilder().newId().setName("todo").setDescription("").build();
+        assertTrue(events.isEmpty());
+    }
+
+    @Test
+    void batchDeliversCoalescedEventsOnClose() throws Exception {
+        var todo = store.newBuilder().newId().setName("todo").setDescription("").build();
+        var events = new ArrayList<String>();
+        store.addListener(e -> events.add(e.toString()));
+
+        var outer = store.batch();
+        todo.setName("a");
+        var inner = store.batch();
+        todo.setName("b");
+        todo.setCompleted(true);
+        todo.setCompleted(false);
+        store.newBuilder().newId().setName("new").setDescription("").build().setName("newer");
+        inner.close();
+        assertTrue(events.isEmpty());
+        todo.setDescription("desc");
+        outer.close();
+
+        assertEquals(List.of("FIELD_CHANGED b NAME",
+                "CREATED newer",
+                "FIELD_CHANGED b DESCRIPTION"), events);
+    }
+
+    @Test
+    void transactionChecksInvariantsOnlyAtCommit() throws Exception {
+        var child = store.newBuilder().newId().setName("child").setDescription("").build();
+        var parent = store.newBuilder().newId().setName("parent").setDescription("").addChild(child.getId()).build();
+        var events = new ArrayList<String>();
+        store.addListener(e -> events.add(e.toString()));
+
+        store.batch(s -> {
+            parent.setCompleted(true);
+            child.setCompleted(true);
+            assertTrue(events.isEmpty());
+        });
+
+        assertTrue(parent.isCompleted() && child.isCompleted());
+        assertEquals(2, parent.getCompletedInSubtree());
+        assertEquals(List.of("COMPLETED_TOGGLED parent", "COMPLETED_TOGGLED child"), events);
+    }
+
+    @Test
+    void failedTransactionIsRolledBack() throws Exception {
+        var a = store.newBuilder().newId().setName("alpha").setDescription("").build();
+        var b = dueTodo("beta", "2023-11-25", null);
+        var leaf = store.newBuilder().newId().setName("leaf").setDescription("").build();
+        var c = store.newBuilder().newId().setName("gamma").setDescription("").addChild(leaf.getId()).build();
+        var events = new ArrayList<TodoEvent>();
+        store.addListener(events::add);
+
+        assertThrows(BadTodoOperation.class, () -> store.batch(s -> {
+            a.setName("renamed");
+            b.addChild(a);
+            b.setCompleted(true);
+            s.removeBranchAtId(c.getId());
+            s.newBuilder().newId().setName("fresh").setDescription("").build();
+        }));
+
+        assertEquals(List.of(a, b, c), List.copyOf(store.getRoots()));
+        var order = new ArrayList<Todo>();
+        store.iterator().forEachRemaining(order::add);
+        assertEquals(List.of(a, b, leaf, c), order);
+        assertEquals("alpha", a.getName());
+        assertNull(a.getParent());
+        assertFalse(b.isCompleted());
+        assertEquals(1, b.getSubtreeSize());
+        assertSame(c, leaf.getParent());
+        assertTrue(leaf.isDescendantOf(c));
+        assertEquals(List.of(a), store.search("alpha", 10));
+        assertTrue(store.search("renamed OR fresh", 10).isEmpty());
+        assertEquals(List.of(b), store.findOverdue(instant("2023-11-26T00:00")));
+        assertTrue(events.isEmpty());
+    }
+
+    @Test
+    void nestedTransactionCanBeRolledBackAlone() throws Exception {
+        var todo = store.newBuilder().newId().setName("todo").setDescription("").build();
+        var other = store.newBuilder().newId().setName("other").setDescription("").build();
+
+        store.batch(s -> {
+            todo.setName("kept");
+            assertThrows(IllegalArgumentException.class, () -> s.batch(inner -> {
+                other.setName("dropped");
+                todo.addChild(other);
+                other.addChild(todo);
+            }));
+            assertEquals(List.of(todo), s.search("kept", 10));
+        });
+
+        assertEquals("kept", todo.getName());
+        assertEquals("other", other.getName());
+        assertNull(other.getParent());
+        assertEquals(List.of(todo, other), List.copyOf(store.getRoots()));
+    }
+
+    @Test
+    void tiesAtSearchLimitAreBrokenByName() throws Exception {
+        var todos = new ArrayList<Todo>();
+        for (var name : List.of("f", "d", "b", "e", "a", "c")) {
+            todos.add(store.newBuilder().newId().setName(name + " task").setDescription("").build());
+        }
+        var a = todos.get(4);
+        var b = todos.get(2);
+
+        assertEquals(List.of(a, b), store.search("task", 2));
+        assertEquals(List.of(a), store.search("task", 1));
+    }
+
+    @Test
+    void deserializedStoreAcceptsListeners() throws Exception {
+        var todo = store.newBuilder().newId().setName("todo").setDescription("").build();
+        var read = roundTrip(store);
+        var events = new ArrayList<TodoEvent>();
+        read.addListener(events::add);
+
+        read.findById(todo.getId()).setName("renamed");
+
+        assertEquals(1, events.size());
+        assertEquals("renamed", events.get(0).getTodo().getName());
+    }
+
+    @Test
+    void largeStoreCanBeSerialized() throws Exception {
+        var parent = store.newBuilder().newId().setName("parent").setDescription("").build();
+        var child = store.newBuilder().newId().setName("child").setDescription("").build();
+        parent.addChild(child);
+        for (int i = 0; i < 20000; ++i) {
+            store.newBuilder().newId().setName("todo " + i).setDescription("").build();
+        }
+
+        var read = assertDoesNotThrow(() -> roundTrip(store));
+
+        assertEquals(store.size(), read.size());
+        var readParent = read.findById(parent.getId());
+        var readChild = read.findById(child.getId());
+        assertTrue(readChild.isDescendantOf(readParent));
+        assertThrows(IllegalArgumentException.class, () -> readChild.addChild(readParent));
+    }
+
+    @Test
+    void deepStoreCanBeSerialized() throws Exception {
+        var ids = new ArrayList<UUID>();
+        Todo parent = null;
+        for (int i = 0; i < 20000; ++i) {
+            var todo = store.newBuilder().newId().setName("level " + i).setDescription("").build();
+            if (parent != null) parent.addChild(todo);
+            ids.add(todo.getId());
+            parent = todo;
+        }
+        var sibling = store.newBuilder().newId().setName("sibling").setDescription("").build();
+        store.findById(ids.get(0)).addChild(sibling);
+
+        var read = assertDoesNotThrow(() -> roundTrip(store));
+
+        assertEquals(store.size(), read.size());
+        var top = read.findById(ids.get(0));
+        assertEquals(List.of(ids.get(1), sibling.getId()), top.getChildren());
+        assertEquals(store.size(), top.getSubtreeSize());
+        var bottom = read.findById(ids.get(ids.size() - 1));
+        assertSame(read.findById(ids.get(ids.size() - 2)), bottom.getParent());
+        assertTrue(bottom.isDescendantOf(top));
+        assertEquals(List.of(top), List.copyOf(read.getRoots()));
+    }
+
+    private static TodoStore roundTrip(TodoStore store) throws Exception {
+        var bytes = new ByteArrayOutputStream();
+        try (var out = new ObjectOutputStream(bytes)) {
+            out.writeObject(store);
+        }
+        try (var in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            return (TodoStore) in.readObject();
+        }
+    }
+
     private TodoStore store;
 }
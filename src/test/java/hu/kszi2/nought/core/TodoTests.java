@@ -13,13 +13,15 @@ import java.time.temporal.TemporalField;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
+import java.util.List;
+import java.util.Random;
 import java.util.UUID;
 import java.util.stream.Stream;
 
 class TodoTests {
     @BeforeEach
     void setUpTodo() throws Exception {
-        TodoStore store = new TodoStore();
+        store = new TodoStore();
 
         var cal = Calendar.getInstance();
         cal.set(2038, Calendar.JANUARY, 19);
@@ -67,6 +69,60 @@ class TodoTests {
         assertTrue(caught.getMessage().contains(child.getName()));
     }
 
+    @Test
+    void failureMessageDescribesHierarchyAtTimeOfFailure() throws Exception {
+        child.setCompleted(true);
+        todo.setCompleted(true);
+        var name = todo.getName();
+
+        var caught = assertThrows(BadTodoOperation.class, () -> child.setCompleted(false));
+        todo.setName("Renamed");
+
+        assertTrue(caught.getMessage().contains(name));
+        assertFalse(caught.getMessage().contains("Renamed"));
+    }
+
+    @Test
+    void invariantQueriesFollowCompletion() throws Exception {
+        assertTrue(child.canComplete());
+        assertFalse(todo.canComplete());
+        assertTrue(child.canReopen());
+
+        child.setCompleted(true);
+        todo.setCompleted(true);
+
+        assertTrue(todo.canComplete());
+        assertTrue(todo.canReopen());
+        assertFalse(child.canReopen());
+    }
+
+    @Test
+    void failedCheckDoesNotThrowAndExplainsOnRequest() throws Exception {
+        child.setCompleted(true);
+        todo.setCompleted(true);
+
+        var check = child.checkCompleted(false);
+
+        assertFalse(check.isValid());
+        assertTrue(check.getMessage().contains(child.getName()));
+        assertTrue(check.getMessage().contains(todo.getName()));
+        assertThrows(BadTodoOperation.class, check::orThrow);
+        assertTrue(child.checkCompleted(true).isValid());
+        assertNull(child.checkCompleted(true).getMessage());
+    }
+
+    @Test
+    void dueQueriesFollowDateAndTime() throws Exception {
+        assertFalse(todo.canSetDueTime());
+        assertTrue(todo.canClearDueDate());
+        assertTrue(child.canSetDueTime());
+        assertFalse(child.canClearDueDate());
+
+        child.setDueTime((LocalTime) null);
+
+        assertTrue(child.canClearDueDate());
+    }
+
     @Test
     void dueTimeStringUnsetsTimeIfPassedNull() throws Exception {
         child.setDueTime(((String) null));
@@ -164,6 +220,170 @@ class TodoTests {
         assertEquals(new ArrayList<UUID>(), todo.getChildren());
     }
 
+    @Test
+    void childIsLinkedToParentTodoObject() {
+        assertSame(todo, child.getParent());
+        assertEquals(todo.getId(), child.getParentId());
+        assertEquals(List.of(child), todo.getChildTodos());
+    }
+
+    @Test
+    void childrenIdsReflectLaterChanges() throws Exception {
+        var children = todo.getChildren();
+        assertEquals(List.of(child.getId()), children);
+
+        child.destroy();
+        assertTrue(children.isEmpty());
+    }
+
+    @Test
+    void childrenIdsCannotBeModified() {
+        var children = todo.getChildren();
+        assertThrows(UnsupportedOperationException.class, () -> children.add(UUID.randomUUID()));
+    }
+
+    @Test
+    void subtreeCountsFollowCompletionAndRemoval() throws Exception {
+        var grandchild = store.newBuilder()
+                .setName("Grandchild")
+                .setDescription("")
+                .newId()
+                .build();
+        child.addChild(grandchild);
+
+        assertEquals(3, todo.getSubtreeSize());
+        assertEquals(0, todo.getCompletedInSubtree());
+        assertEquals(1, todo.getOpenChildCount());
+
+        grandchild.setCompleted(true);
+        child.setCompleted(true);
+        assertEquals(2, todo.getCompletedInSubtree());
+        assertEquals(0, todo.getOpenChildCount());
+
+        child.setCompleted(false);
+        assertEquals(1, todo.getCompletedInSubtree());
+        assertEquals(1, todo.getOpenChildCount());
+
+        grandchild.destroy();
+        assertEquals(2, todo.getSubtreeSize());
+        assertEquals(0, todo.getCompletedInSubtree());
+    }
+
+    @Test
+    void earliestOpenDueFollowsChildren() throws Exception {
+        var childDue = child.getDueInstant();
+        assertEquals(childDue, todo.getEarliestOpenDue());
+
+        child.setCompleted(true);
+        assertNull(todo.getEarliestOpenDue());
+
+        child.setCompleted(false);
+        assertEquals(childDue, todo.getEarliestOpenDue());
+
+        child.destroy();
+        assertNull(todo.getEarliestOpenDue());
+    }
+
+    @Test
+    void ancestorCannotBeAddedAsChild() throws Exception {
+        var grandchild = store.newBuilder().setName("Grandchild").setDescription("").newId().build();
+        child.addChild(grandchild);
+
+        assertTrue(grandchild.isDescendantOf(todo));
+        assertFalse(todo.isDescendantOf(grandchild));
+        assertThrows(IllegalArgumentException.class, () -> grandchild.addChild(todo));
+        assertSame(todo, child.getParent());
+    }
+
+    @Test
+    void addingChildToNewParentDetachesItFromOldParent() throws Exception {
+        var other = store.newBuilder().setName("Other").setDescription("").newId().build();
+
+        other.addChild(child);
+
+        assertTrue(todo.getChildren().isEmpty());
+        assertEquals(List.of(child), other.getChildTodos());
+        assertTrue(child.isDescendantOf(other));
+        assertFalse(child.isDescendantOf(todo));
+        assertEquals(1, todo.getSubtreeSize());
+    }
+
+    @Test
+    void childViewsFollowChildrenAndAreReadOnly() throws Exception {
+        var ids = todo.getChildren();
+        var todos = todo.getChildTodos();
+        var added = new ArrayList<Todo>();
+        for (int i = 0; i < 20; ++i) {
+            var extra = new Todo(store, UUID.randomUUID(), "Extra" + i, "", false, null, null, null);
+            todo.addChild(extra);
+            added.add(extra);
+        }
+
+        assertEquals(21, todos.size());
+        assertEquals(child, todos.get(0));
+        assertEquals(added.get(19).getId(), ids.get(20));
+        assertThrows(UnsupportedOperationException.class, () -> todos.remove(0));
+        assertThrows(IndexOutOfBoundsException.class, () -> ids.get(21));
+
+        for (var extra : added) {
+            extra.destroy();
+        }
+        child.destroy();
+        assertTrue(todos.isEmpty());
+        assertTrue(ids.isEmpty());
+    }
+
+    @Test
+    void editedDescriptionMatchesEditedString() {
+        var random = new Random(42);
+        var expected = new StringBuilder(todo.getDescription());
+        for (int i = 0; i < 5000; ++i) {
+            var offset = random.nextInt(expected.length() + 1);
+            var removed = random.nextInt(Math.min(4, expected.length() - offset) + 1);
+            var text = random.nextInt(3) == 0 ? "" : "w" + i + " ";
+            expected.replace(offset, offset + removed, text);
+            todo.editDescription(offset, removed, text);
+        }
+
+        assertEquals(expected.toString(), todo.getDescription());
+        assertEquals(expected.length(), todo.getDescriptionText().length());
+        assertEquals(expected.charAt(expected.length() / 2),
+                todo.getDescriptionText().charAt(expected.length() / 2));
+        assertEquals(expected.substring(10, 100), todo.getDescriptionText().subSequence(10, 100).toString());
+    }
+
+    @Test
+    void descriptionTextFollowsLaterChanges() {
+        var text = (TodoText) todo.getDescriptionText();
+
+        todo.setDescription("replaced");
+        assertTrue(text.contentEquals("replaced"));
+        todo.editDescription(0, 1, "R");
+        assertTrue(text.contentEquals("Replaced"));
+        assertFalse(text.contentEquals("replaced"));
+        assertEquals("Replaced", text.toString());
+    }
+
+    @Test
+    void editedDescriptionIsSearchable() {
+        todo.editDescription(4, 0, " quarterly report");
+
+        assertEquals("Todo quarterly report\nDesc", todo.getDescription());
+        assertEquals(List.of(todo), store.search("quarterly", 10));
+        assertThrows(IndexOutOfBoundsException.class, () -> todo.editDescription(20, 10, ""));
+    }
+
+    @Test
+    void failedTransactionRollsBackDescriptionEdits() {
+        assertThrows(IllegalStateException.class, () -> store.batch(s -> {
+            todo.editDescription(0, 4, "Task");
+            todo.editDescription(4, 0, " list");
+            throw new IllegalStateException("failed");
+        }));
+
+        assertEquals("Todo\nDesc", todo.getDescription());
+    }
+
     @Test
     void todoComparesFalseToNotTodoObject() {
         assertNotEquals(todo, (Object) "thing");
@@ -186,4 +406,5 @@ class TodoTests {
 
     private Todo todo;
     private Todo child;
+    private TodoStore store;
 }
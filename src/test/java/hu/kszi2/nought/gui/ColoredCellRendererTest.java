@@ -50,6 +50,26 @@ class ColoredCellRendererTest {
         assertNotEquals(new Color(156, 177, 158), comp.getForeground());
     }
 
+    @Test
+    void getTreeCellRendererComponentShowsCompletedSubtodos() throws Exception {
+        var store = new TodoStore();
+        var parent = store.newBuilder().setName("P").setDescription("").newId().build();
+        var done = store.newBuilder().setName("C1").setDescription("").newId().build();
+        var open = store.newBuilder().setName("C2").setDescription("").newId().build();
+        parent.addChild(done);
+        parent.addChild(open);
+        done.setCompleted(true);
+
+        var comp = (JLabel) renderer.getTreeCellRendererComponent(tree,
+                new TodoNode(parent),
+                false,
+                true,
+                false,
+                1,
+                false);
+        assertEquals("P (1/2 done)", comp.getText());
+    }
+
     JTree tree;
     ColoredCellRenderer renderer;
     Todo todo;
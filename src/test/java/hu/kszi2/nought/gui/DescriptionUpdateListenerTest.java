@@ -0,0 +1,82 @@
+package hu.kszi2.nought.gui;
+
+import hu.kszi2.nought.core.Todo;
+import hu.kszi2.nought.core.TodoEvent;
+import hu.kszi2.nought.core.TodoStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.swing.text.PlainDocument;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DescriptionUpdateListenerTest {
+    @BeforeEach
+    void setUp() throws Exception {
+        store = new TodoStore();
+        todo = store.newBuilder()
+                .newId()
+                .setName("Todo")
+                .setDescription("Hello")
+                .build();
+        document = new PlainDocument();
+        document.insertString(0, todo.getDescription(), null);
+        listener = new DescriptionUpdateListener(() -> store, () -> edited, 60_000);
+        document.addDocumentListener(listener);
+        edited = todo;
+    }
+
+    @Test
+    void typedTextIsAppliedAsOneChangeOnFlush() throws Exception {
+        var events = new ArrayList<TodoEvent>();
+        store.addListener(events::add);
+
+        document.insertString(5, " ", null);
+        document.insertString(6, "world", null);
+        document.remove(0, 1);
+        document.insertString(0, "h", null);
+        assertEquals("Hello", todo.getDescription());
+        assertTrue(listener.isPending());
+
+        listener.flush();
+        assertEquals("hello world", todo.getDescription());
+        assertEquals(1, events.size());
+        assertFalse(listener.isPending());
+    }
+
+    @Test
+    void changesAreAppliedToTodoEditedWhenTheyWereMade() throws Exception {
+        var other = store.newBuilder()
+                .newId()
+                .setName("Other")
+                .setDescription("")
+                .build();
+
+        document.remove(3, 2);
+        edited = other;
+        document.insertString(3, "p", null);
+        listener.flush();
+
+        assertEquals("Help", todo.getDescription());
+        assertEquals("", other.getDescription());
+    }
+
+    @Test
+    void discardedChangesAreNotApplied() throws Exception {
+        document.remove(0, 5);
+        document.insertString(0, "Bye", null);
+        listener.discard();
+        listener.flush();
+
+        assertEquals("Hello", todo.getDescription());
+        assertFalse(listener.isPending());
+    }
+
+    private TodoStore store;
+    private Todo todo;
+    private Todo edited;
+    private PlainDocument document;
+    private DescriptionUpdateListener listener;
+}
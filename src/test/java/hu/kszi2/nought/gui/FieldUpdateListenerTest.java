@@ -7,6 +7,8 @@ import javax.swing.event.DocumentEvent;
 import javax.swing.event.DocumentListener;
 import javax.swing.text.Document;
 import javax.swing.text.Element;
+import java.util.ArrayList;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -118,5 +120,57 @@ class FieldUpdateListenerTest {
         assertFalse(called[0]);
     }
 
+    @Test
+    void coalescingListenerCallsCallbackOnceOnFlush() {
+        var calls = new ArrayList<String>();
+        var update = new FieldUpdateListener<>(
+                () -> "Source",
+                () -> "Input",
+                (src, inp) -> calls.add(src + " " + inp),
+                60_000);
+        update.insertUpdate(event);
+        update.removeUpdate(event);
+        update.insertUpdate(event);
+        assertTrue(calls.isEmpty());
+        assertTrue(update.isPending());
+
+        update.flush();
+        update.flush();
+        assertEquals(List.of("Source Input"), calls);
+        assertFalse(update.isPending());
+    }
+
+    @Test
+    void coalescingListenerPassesSourceOfFirstChange() {
+        var source = new String[]{"First"};
+        var calls = new ArrayList<String>();
+        var update = new FieldUpdateListener<>(
+                () -> source[0],
+                () -> "Input",
+                (src, inp) -> calls.add(src),
+                60_000);
+        update.insertUpdate(event);
+        source[0] = "Second";
+        update.insertUpdate(event);
+        update.focusLost(null);
+        assertEquals(List.of("First"), calls);
+    }
+
+    @Test
+    void coalescingListenerDropsDiscardedChanges() {
+        final boolean[] called = {false};
+        var update = new FieldUpdateListener<>(
+                () -> "Source",
+                () -> "Input",
+                (src, inp) -> {
+                    called[0] = true;
+                },
+                60_000);
+        update.changedUpdate(event);
+        update.discard();
+        update.flush();
+        assertFalse(called[0]);
+    }
+
     DocumentEvent event;
 }
\ No newline at end of file
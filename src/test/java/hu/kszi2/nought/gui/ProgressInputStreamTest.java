@@ -0,0 +1,31 @@
+package hu.kszi2.nought.gui;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProgressInputStreamTest {
+    @Test
+    void readingReportsPercentage() throws Exception {
+        var reported = new ArrayList<Integer>();
+        var strm = new ProgressInputStream(new ByteArrayInputStream(new byte[10]), 10, reported::add, () -> false);
+
+        strm.read();
+        strm.read(new byte[4]);
+        strm.readAllBytes();
+        assertEquals(List.of(10, 50, 100), reported);
+    }
+
+    @Test
+    void cancelledReadingThrows() {
+        var strm = new ProgressInputStream(new ByteArrayInputStream(new byte[10]), 10, p -> {
+        }, () -> true);
+
+        assertThrows(InterruptedIOException.class, strm::read);
+    }
+}
@@ -1,10 +1,17 @@
 package hu.kszi2.nought.gui;
 
 import hu.kszi2.nought.core.TodoBuilder;
+import hu.kszi2.nought.core.TodoEvent;
 import hu.kszi2.nought.core.TodoStore;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import javax.swing.event.TreeModelEvent;
+import javax.swing.event.TreeModelListener;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 class TodoTreeTest {
@@ -28,6 +35,195 @@ class TodoTreeTest {
         }
     }
 
+    @Test
+    void childrenAreAnsweredFromTodos() throws Exception {
+        var child = builder.newId().setName("C").setDescription("").build();
+        var parent = builder.newId().setName("P").setDescription("").addChild(child.getId()).build();
+        var root = tree.getRoot();
+
+        assertEquals(2, tree.getChildCount(root));
+        var parentNode = (TodoNode) tree.getChild(root, 1);
+        assertSame(parent, parentNode.getTodo());
+        assertEquals(1, tree.getIndexOfChild(root, parentNode));
+        assertEquals(1, tree.getChildCount(parentNode));
+        var childNode = (TodoNode) tree.getChild(parentNode, 0);
+        assertSame(child, childNode.getTodo());
+        assertSame(childNode, tree.getChild(parentNode, 0));
+        assertTrue(tree.isLeaf(childNode));
+    }
+
+    @Test
+    void addedChildIsInsertedIntoTree() throws Exception {
+        var parentNode = (TodoNode) tree.getChild(tree.getRoot(), 0);
+        var child = builder.newId().setName("C").setDescription("").build();
+        var events = record();
+
+        tree.addTodoAsChildToNode(parentNode, child, true);
+
+        assertEquals(1, tree.getChildCount(parentNode));
+        assertEquals(List.of("removed Todos [1]", "inserted A [0]", "changed Todos [0]"), events);
+    }
+
+    @Test
+    void builtRootIsInsertedIntoTree() throws Exception {
+        var events = record();
+
+        builder.newId().setName("R").setDescription("").build();
+
+        assertEquals(List.of("inserted Todos [1]"), events);
+        assertEquals(2, tree.getChildCount(tree.getRoot()));
+    }
+
+    @Test
+    void renamingTodoOnlyChangesItsRow() throws Exception {
+        var parentNode = (TodoNode) tree.getChild(tree.getRoot(), 0);
+        for (int i = 0; i < 3; ++i) {
+            tree.addTodoAsChildToNode(parentNode, builder.newId().setName("C" + i).setDescription("").build(), true);
+        }
+        var childNode = (TodoNode) tree.getChild(parentNode, 1);
+        var events = record();
+
+        childNode.getTodo().setName("renamed");
+
+        assertEquals(List.of("changed A [1]"), events);
+    }
+
+    @Test
+    void completingTodoChangesItsRowAndAncestors() throws Exception {
+        var parentNode = (TodoNode) tree.getChild(tree.getRoot(), 0);
+        var child = builder.newId().setName("C").setDescription("").build();
+        tree.addTodoAsChildToNode(parentNode, child, true);
+        tree.getChild(parentNode, 0);
+        var events = record();
+
+        child.setCompleted(true);
+
+        assertEquals(List.of("changed Todos [0]", "changed A [0]"), events);
+    }
+
+    @Test
+    void removedBranchDisappearsFromTree() throws Exception {
+        var child = builder.newId().setName("C").setDescription("").build();
+        var parent = builder.newId().setName("P").setDescription("").addChild(child.getId()).build();
+        var root = tree.getRoot();
+        var parentNode = (TodoNode) tree.getChild(root, 1);
+        var childNode = (TodoNode) tree.getChild(parentNode, 0);
+
+        tree.removeTodo(childNode);
+        assertEquals(0, tree.getChildCount(parentNode));
+        assertTrue(parent.getChildren().isEmpty());
+
+        tree.removeBranch(parentNode);
+        assertEquals(1, tree.getChildCount(root));
+        assertEquals(1, store.size());
+    }
+
+    @Test
+    void pathToLeadsToNodeOfNestedTodo() throws Exception {
+        var child = builder.newId().setName("C").setDescription("").build();
+        var parent = builder.newId().setName("P").setDescription("").addChild(child.getId()).build();
+
+        var path = tree.pathTo(child);
+
+        assertNotNull(path);
+        assertEquals(3, path.getPathCount());
+        assertSame(tree.getRoot(), path.getPathComponent(0));
+        assertSame(parent, ((TodoNode) path.getPathComponent(1)).getTodo());
+        assertSame(tree.getChild(path.getPathComponent(1), 0), path.getLastPathComponent());
+    }
+
+    @Test
+    void movedNodeIsRemovedAndInserted() throws Exception {
+        var child = builder.newId().setName("C").setDescription("").build();
+        var parent = builder.newId().setName("P").setDescription("").addChild(child.getId()).build();
+        var root = tree.getRoot();
+        var firstNode = (TodoNode) tree.getChild(root, 0);
+        var parentNode = (TodoNode) tree.getChild(root, 1);
+        var childNode = (TodoNode) tree.getChild(parentNode, 0);
+        var events = record();
+
+        tree.moveTodo(childNode, firstNode, 0);
+
+        assertTrue(parent.getChildren().isEmpty());
+        assertSame(childNode, tree.getChild(firstNode, 0));
+        assertSame(firstNode, childNode.getParent());
+        assertEquals(List.of("removed P [0]", "changed Todos [1]", "inserted A [0]", "changed Todos [0]"), events);
+    }
+
+    @Test
+    void batchedStructuralChangesReloadAffectedParents() throws Exception {
+        var root = tree.getRoot();
+        var parentNode = (TodoNode) tree.getChild(root, 0);
+        var parent = parentNode.getTodo();
+        var events = record();
+        var delivered = new ArrayList<TodoEvent>();
+        store.addListener(delivered::add);
+
+        store.batch(s -> {
+            var first = s.newBuilder().newId().setName("C1").setDescription("").build();
+            parent.addChild(first);
+            first.destroy();
+            s.newBuilder().newId().setName("C2").setDescription("").build();
+        });
+
+        assertEquals(store.getRoots().size(), tree.getChildCount(root));
+        assertEquals(0, tree.getChildCount(parentNode));
+        assertEquals("C2", ((TodoNode) tree.getChild(root, 1)).getTodo().getName());
+        assertFalse(delivered.isEmpty());
+        assertTrue(events.containsAll(List.of("structure Todos null", "structure A null")));
+    }
+
+    @Test
+    void failingListenerDoesNotStopBatchDelivery() throws Exception {
+        var delivered = new ArrayList<TodoEvent>();
+        store.addListener(event -> {
+            throw new IllegalStateException("listener failed");
+        });
+        store.addListener(delivered::add);
+
+        assertThrows(IllegalStateException.class, () -> store.batch(s ->
+                s.newBuilder().newId().setName("R").setDescription("").build()));
+
+        assertEquals(1, delivered.size());
+        assertEquals(2, tree.getChildCount(tree.getRoot()));
+    }
+
+    /**
+     * Records the events of the tree, as the kind of the event, the changed node and the
+     * indices of its affected children.
+     *
+     * @return The list the events are recorded into
+     */
+    private List<String> record() {
+        var events = new ArrayList<String>();
+        tree.addTreeModelListener(new TreeModelListener() {
+            @Override
+            public void treeNodesChanged(TreeModelEvent e) {
+                events.add(describe("changed", e));
+            }
+
+            @Override
+            public void treeNodesInserted(TreeModelEvent e) {
+                events.add(describe("inserted", e));
+            }
+
+            @Override
+            public void treeNodesRemoved(TreeModelEvent e) {
+                events.add(describe("removed", e));
+            }
+
+            @Override
+            public void treeStructureChanged(TreeModelEvent e) {
+                events.add(describe("structure", e));
+            }
+        });
+        return events;
+    }
+
+    private static String describe(String kind, TreeModelEvent e) {
+        return kind + " " + e.getTreePath().getLastPathComponent() + " " + Arrays.toString(e.getChildIndices());
+    }
+
     TodoTree tree;
     TodoStore store;
     TodoBuilder builder;
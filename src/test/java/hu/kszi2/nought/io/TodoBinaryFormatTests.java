@@ -0,0 +1,139 @@
+package hu.kszi2.nought.io;
+
+import hu.kszi2.nought.core.TodoStore;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.StreamCorruptedException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.text.SimpleDateFormat;
+import java.time.LocalTime;
+import java.util.Arrays;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TodoBinaryFormatTests {
+    @Test
+    void roundTripKeepsAllFields() throws Exception {
+        var store = new TodoStore();
+        var id = UUID.randomUUID();
+        var date = new SimpleDateFormat("yyyy-MM-dd").parse("2023-11-26");
+        store.newBuilder()
+                .setId(id)
+                .setName("Névvel")
+                .setDescription("Leírás\nmultiple lines")
+                .setCompleted(true)
+                .setDueDate(date)
+                .setDueTime(LocalTime.of(13, 37, 42))
+                .build();
+
+        var read = roundTrip(store);
+        var todo = read.findById(id);
+        assertEquals("Névvel", todo.getName());
+        assertEquals("Leírás\nmultiple lines", todo.getDescription());
+        assertTrue(todo.isCompleted());
+        assertEquals(date, todo.getDueDate());
+        assertEquals(LocalTime.of(13, 37, 42), todo.getDueTime());
+    }
+
+    @Test
+    void dueDateWithoutTimeStaysWithoutTime() throws Exception {
+        var store = new TodoStore();
+        var id = UUID.randomUUID();
+        var date = new SimpleDateFormat("yyyy-MM-dd").parse("1969-07-20");
+        store.newBuilder()
+                .setId(id)
+                .setName("Todo")
+                .setDescription("")
+                .setDueDate(date)
+                .build();
+
+        var todo = roundTrip(store).findById(id);
+        assertEquals(date, todo.getDueDate());
+        assertNull(todo.getDueTime());
+    }
+
+    @Test
+    void childrenAreLinkedInOrder() throws Exception {
+        var store = new TodoStore();
+        var parent = UUID.randomUUID();
+        var first = UUID.randomUUID();
+        var second = UUID.randomUUID();
+        store.newBuilder().setId(first).setName("First").setDescription("").build();
+        store.newBuilder().setId(second).setName("Second").setDescription("").build();
+        store.newBuilder()
+                .setId(parent)
+                .setName("Parent")
+                .setDescription("")
+                .addChild(first)
+                .addChild(second)
+                .build();
+
+        var read = roundTrip(store);
+        assertEquals(3, read.size());
+        assertEquals(Arrays.asList(first, second), read.findById(parent).getChildren());
+        assertEquals(parent, read.findById(second).getParentId());
+    }
+
+    @Test
+    void fileIsReadThroughMapping() throws Exception {
+        var store = new TodoStore();
+        var id = UUID.randomUUID();
+        store.newBuilder().setId(id).setName("Mapped").setDescription("").build();
+
+        var file = Files.createTempFile("nought", TodoFormat.BINARY_EXTENSION);
+        try {
+            try (var strm = Files.newOutputStream(file)) {
+                new TodoBinaryExporter(store).export(strm);
+            }
+            assertEquals(TodoFormat.BINARY, TodoFormat.detect(file));
+
+            var read = new TodoBinaryImporter(new TodoStore()).importFrom(file);
+            assertEquals("Mapped", read.findById(id).getName());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    void xmlFilesAreDetectedAsXml() throws Exception {
+        var file = Files.createTempFile("nought", ".not");
+        try {
+            Files.writeString(file, "<?xml version=\"1.0\" ?><nought/>");
+            assertEquals(TodoFormat.XML, TodoFormat.detect(file));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    void truncatedFileRaisesAnException() throws Exception {
+        var store = new TodoStore();
+        store.newBuilder().setId(UUID.randomUUID()).setName("Todo").setDescription("").build();
+        var out = new ByteArrayOutputStream();
+        new TodoBinaryExporter(store).export(out);
+        var bytes = Arrays.copyOf(out.toByteArray(), out.size() - 3);
+
+        var importer = new TodoBinaryImporter(new TodoStore());
+        assertThrows(StreamCorruptedException.class,
+                () -> importer.importFrom(new ByteArrayInputStream(bytes)));
+    }
+
+    @Test
+    void foreignDataRaisesAnException() {
+        var bytes = "<nought/>".getBytes(StandardCharsets.UTF_8);
+
+        var importer = new TodoBinaryImporter(new TodoStore());
+        assertThrows(StreamCorruptedException.class,
+                () -> importer.importFrom(new ByteArrayInputStream(bytes)));
+    }
+
+    private static TodoStore roundTrip(TodoStore store) throws Exception {
+        var out = new ByteArrayOutputStream();
+        new TodoBinaryExporter(store).export(out);
+        return new TodoBinaryImporter(new TodoStore()).importFrom(new ByteArrayInputStream(out.toByteArray()));
+    }
+}
@@ -0,0 +1,285 @@
+package hu.kszi2.nought.io;
+
+import hu.kszi2.nought.core.TodoStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TodoJournalTests {
+    @BeforeEach
+    void setUpSnapshot() throws Exception {
+        dir = Files.createTempDirectory("nought");
+        snapshot = dir.resolve("todos.not");
+        store = new TodoStore();
+        rootId = UUID.randomUUID();
+        store.newBuilder().setId(rootId).setName("Root").setDescription("").build();
+        try (var strm = Files.newOutputStream(snapshot)) {
+            TodoFormat.XML.newExporter(store).export(strm);
+        }
+    }
+
+    @AfterEach
+    void removeFiles() throws Exception {
+        try (var files = Files.list(dir)) {
+            for (var file : files.toList()) Files.delete(file);
+        }
+        Files.delete(dir);
+    }
+
+    @Test
+    void savedChangesAreReplayedOnOpen() throws Exception {
+        var childId = UUID.randomUUID();
+        try (var journal = TodoJournal.create(snapshot, TodoFormat.XML, store)) {
+            store.newBuilder().setId(childId).setName("Child").setDescription("").build();
+            store.findById(rootId).addChild(childId);
+            store.findById(rootId).setName("Renamed");
+            store.findById(childId).setDueDate("2023-11-26");
+            store.findById(childId).setDueTime(LocalTime.of(12, 0));
+            assertTrue(journal.hasPending());
+            journal.flush();
+            assertFalse(journal.hasPending());
+        }
+
+        var read = load();
+        assertEquals(2, read.size());
+        assertEquals("Renamed", read.findById(rootId).getName());
+        assertEquals(List.of(childId), read.findById(rootId).getChildren());
+        assertEquals(LocalTime.of(12, 0), read.findById(childId).getDueTime());
+    }
+
+    @Test
+    void begunJournalDoesNotTouchFileUntilStarted() throws Exception {
+        var file = TodoJournal.pathFor(snapshot);
+        Files.write(file, new byte[]{'N', 'O', 'T', 'J'});
+        try (var journal = TodoJournal.begin(snapshot, TodoFormat.XML, store)) {
+            store.findById(rootId).setName("Begun");
+            assertTrue(journal.hasPending());
+            assertThrows(IllegalStateException.class, journal::flush);
+            assertEquals(4, Files.size(file));
+
+            journal.start(snapshot);
+            journal.flush();
+        }
+
+        assertEquals("Begun", load().findById(rootId).getName());
+    }
+
+    @Test
+    void unsavedChangesAreLost() throws Exception {
+        try (var journal = TodoJournal.create(snapshot, TodoFormat.XML, store)) {
+            store.findById(rootId).setName("Saved");
+            journal.flush();
+            store.findById(rootId).setName("Unsaved");
+        }
+
+        assertEquals("Saved", load().findById(rootId).getName());
+    }
+
+    @Test
+    void removalsAreReplayed() throws Exception {
+        var childId = UUID.randomUUID();
+        try (var journal = TodoJournal.create(snapshot, TodoFormat.XML, store)) {
+            store.newBuilder().setId(childId).setName("Child").setDescription("").build();
+            store.findById(rootId).addChild(childId);
+            store.removeById(childId);
+            journal.flush();
+        }
+
+        var read = load();
+        assertEquals(1, read.size());
+        assertTrue(read.findById(rootId).getChildren().isEmpty());
+    }
+
+    @Test
+    void movesAreReplayed() throws Exception {
+        var firstId = UUID.randomUUID();
+        var secondId = UUID.randomUUID();
+        try (var journal = TodoJournal.create(snapshot, TodoFormat.XML, store)) {
+            store.newBuilder().setId(firstId).setName("First").setDescription("").build();
+            store.newBuilder().setId(secondId).setName("Second").setDescription("").build();
+            store.move(secondId, rootId, 0);
+            store.move(firstId, rootId, 0);
+            journal.flush();
+        }
+
+        var read = load();
+        assertEquals(List.of(firstId, secondId), read.findById(rootId).getChildren());
+    }
+
+    @Test
+    void bulkCompletionIsReplayed() throws Exception {
+        var childId = UUID.randomUUID();
+        try (var journal = TodoJournal.create(snapshot, TodoFormat.XML, store)) {
+            store.newBuilder().setId(childId).setName("Child").setDescription("").build();
+            store.findById(rootId).addChild(childId);
+            store.completeBranch(rootId);
+            journal.flush();
+        }
+
+        var read = load();
+        assertTrue(read.findById(rootId).isCompleted());
+        assertTrue(read.findById(childId).isCompleted());
+    }
+
+    @Test
+    void tornRecordIsDropped() throws Exception {
+        try (var journal = TodoJournal.create(snapshot, TodoFormat.XML, store)) {
+            store.findById(rootId).setName("First");
+            journal.flush();
+            store.findById(rootId).setName("Second");
+            journal.flush();
+        }
+        var file = TodoJournal.pathFor(snapshot);
+        try (var channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 2);
+        }
+
+        var read = new TodoStore();
+        TodoFormat.XML.newImporter(read).importFrom(snapshot);
+        try (var journal = TodoJournal.open(snapshot, TodoFormat.XML, read)) {
+            assertEquals("First", read.findById(rootId).getName());
+            read.findById(rootId).setName("Third");
+            journal.flush();
+        }
+        assertEquals("Third", load().findById(rootId).getName());
+    }
+
+    @Test
+    void compactionFoldsJournalIntoSnapshot() throws Exception {
+        try (var journal = TodoJournal.create(snapshot, TodoFormat.XML, store)) {
+            store.findById(rootId).setName("Compacted");
+            journal.flush();
+            var sizeBefore = journal.size();
+
+            journal.compactInBackground().get();
+            assertTrue(journal.size() < sizeBefore);
+
+            store.findById(rootId).setDescription("After compaction");
+            journal.flush();
+        }
+
+        var plain = new TodoStore();
+        TodoFormat.XML.newImporter(plain).importFrom(snapshot);
+        assertEquals("Compacted", plain.findById(rootId).getName());
+
+        var read = load();
+        assertEquals("Compacted", read.findById(rootId).getName());
+        assertEquals("After compaction", read.findById(rootId).getDescription());
+    }
+
+    @Test
+    void journalFoldedByInterruptedCompactionIsNotReplayed() throws Exception {
+        var firstId = UUID.randomUUID();
+        var secondId = UUID.randomUUID();
+        var file = TodoJournal.pathFor(snapshot);
+        byte[] folded;
+        try (var journal = TodoJournal.create(snapshot, TodoFormat.XML, store)) {
+            store.newBuilder().setId(firstId).setName("First").setDescription("").build();
+            store.newBuilder().setId(secondId).setName("Second").setDescription("").build();
+            store.findById(firstId).addChild(secondId);
+            store.move(secondId, null, -1);
+            store.findById(secondId).addChild(firstId);
+            journal.flush();
+            folded = Files.readAllBytes(file);
+
+            journal.compactInBackground().get();
+        }
+        Files.write(file, folded);
+
+        var read = assertDoesNotThrow(this::load);
+        assertEquals(3, read.size());
+        assertEquals(List.of(firstId), read.findById(secondId).getChildren());
+    }
+
+    @Test
+    void repeatedDescriptionEditsKeepOnePendingState() throws Exception {
+        var otherId = UUID.randomUUID();
+        long singleEdit;
+        try (var journal = TodoJournal.create(snapshot, TodoFormat.XML, store)) {
+            store.newBuilder().setId(otherId).setName("Other").setDescription("").build();
+            journal.flush();
+            var root = store.findById(rootId);
+            root.setDescription("x".repeat(1000));
+            journal.flush();
+            singleEdit = journal.size();
+
+            for (int i = 0; i < 100; ++i) {
+                root.editDescription(i, 1, "y");
+                store.findById(otherId).setName("Other " + i);
+            }
+            journal.flush();
+            assertTrue(journal.size() - singleEdit < 1100);
+        }
+
+        var read = load();
+        assertEquals("y".repeat(100) + "x".repeat(900), read.findById(rootId).getDescription());
+        assertEquals("Other 99", read.findById(otherId).getName());
+    }
+
+    @Test
+    void stateOfRemovedTodoIsNotReplaced() throws Exception {
+        var childId = UUID.randomUUID();
+        try (var journal = TodoJournal.create(snapshot, TodoFormat.XML, store)) {
+            store.newBuilder().setId(childId).setName("Child").setDescription("").build();
+            store.removeById(childId);
+            store.newBuilder().setId(childId).setName("Again").setDescription("").build();
+            journal.flush();
+        }
+
+        assertEquals("Again", load().findById(childId).getName());
+    }
+
+    @Test
+    void transactionsAreReplayedAsOne() throws Exception {
+        var childId = UUID.randomUUID();
+        var otherId = UUID.randomUUID();
+        try (var journal = TodoJournal.create(snapshot, TodoFormat.XML, store)) {
+            store.newBuilder().setId(childId).setName("Child").setDescription("").build();
+            store.newBuilder().setId(otherId).setName("Other").setDescription("").build();
+            store.findById(rootId).addChild(childId);
+            var parent = store.findById(rootId);
+            var child = store.findById(childId);
+            store.batch(s -> {
+                parent.setCompleted(true);
+                child.setCompleted(true);
+            });
+            store.batch(s -> {
+                s.move(otherId, rootId, 0);
+                parent.setCompleted(false);
+            });
+            journal.flush();
+        }
+
+        var read = assertDoesNotThrow(this::load);
+        assertEquals(store.size(), read.size());
+        for (var iter = store.iterator(); iter.hasNext(); ) {
+            var todo = iter.next();
+            var copy = read.findById(todo.getId());
+            assertEquals(todo.getName(), copy.getName());
+            assertEquals(todo.isCompleted(), copy.isCompleted());
+            assertEquals(todo.getChildren(), copy.getChildren());
+        }
+    }
+
+    private TodoStore load() throws Exception {
+        var read = new TodoStore();
+        TodoFormat.XML.newImporter(read).importFrom(snapshot);
+        TodoJournal.open(snapshot, TodoFormat.XML, read).close();
+        return read;
+    }
+
+    private Path dir;
+    private Path snapshot;
+    private TodoStore store;
+    private UUID rootId;
+}
@@ -0,0 +1,152 @@
+package hu.kszi2.nought.io;
+
+import hu.kszi2.nought.core.Todo;
+import hu.kszi2.nought.core.TodoStore;
+import hu.kszi2.nought.core.UnresolvedReferenceException;
+import org.intellij.lang.annotations.Language;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TodoParallelXMLImportTests {
+    @BeforeEach
+    void setUpPool() {
+        pool = new ForkJoinPool(4);
+    }
+
+    @AfterEach
+    void shutDownPool() {
+        pool.shutdown();
+    }
+
+    @Test
+    void largeStoreIsImportedWithTheSameStructure() throws Exception {
+        var original = new TodoStore();
+        var ids = new ArrayList<UUID>();
+        for (int i = 0; i < 200; ++i) {
+            var leaf = original.newBuilder().newId().setName("leaf " + i).setDescription("d").build();
+            var mid = original.newBuilder().newId().setName("mid " + i).setDescription("d")
+                    .addChild(leaf.getId())
+                    .build();
+            var root = original.newBuilder().newId().setName("root " + i).setDescription("d")
+                    .addChild(mid.getId())
+                    .build();
+            ids.add(root.getId());
+        }
+        var writer = new StringWriter();
+        new TodoXMLExporter(original).export(writer);
+
+        var store = importString(writer.toString());
+
+        assertEquals(original.size(), store.size());
+        for (var id : ids) {
+            var root = store.findById(id);
+            var expected = original.findById(id);
+            assertNull(root.getParent());
+            assertEquals(expected.getName(), root.getName());
+            var mid = root.getChildTodos().get(0);
+            assertEquals(expected.getChildren(), root.getChildren());
+            assertEquals(expected.getChildTodos().get(0).getChildren(), mid.getChildren());
+        }
+    }
+
+    @Test
+    void chunksCanReferenceTodosInLaterChunks() throws Exception {
+        var xml = new StringBuilder("""
+                <?xml version="1.0" encoding="UTF-8" ?>
+                <ngt:nought xmlns:ngt="https://kszi2.hu/~bodand/nought.xsd"><ngt:todos>
+                """);
+        var parentId = UUID.randomUUID();
+        var childIds = new ArrayList<UUID>();
+        for (int i = 0; i < 100; ++i) {
+            childIds.add(UUID.randomUUID());
+        }
+        xml.append("<ngt:todo id=\"_").append(parentId).append("\"><ngt:name>parent</ngt:name>")
+                .append("<ngt:desc>text</ngt:desc><ngt:depends-on>");
+        for (var childId : childIds) {
+            xml.append("<ngt:todo ref=\"_").append(childId).append("\"/>");
+        }
+        xml.append("</ngt:depends-on></ngt:todo>\n");
+        for (var childId : childIds) {
+            xml.append("<ngt:todo id=\"_").append(childId).append("\"><ngt:name>child</ngt:name>")
+                    .append("<ngt:desc>text</ngt:desc></ngt:todo>\n");
+        }
+        xml.append("</ngt:todos></ngt:nought>");
+
+        var store = importString(xml.toString());
+
+        var parent = store.findById(parentId);
+        assertEquals(childIds, parent.getChildren());
+        for (var child : parent.getChildTodos()) {
+            assertSame(parent, child.getParent());
+        }
+    }
+
+    @Test
+    void todoMarkupInCdataAndCommentsDoesNotSplitInput() throws Exception {
+        var xml = new StringBuilder("<nought xmlns=\"https://kszi2.hu/~bodand/nought.xsd\"><todos>");
+        var ids = new ArrayList<UUID>();
+        for (int i = 0; i < 200; ++i) {
+            var id = UUID.randomUUID();
+            ids.add(id);
+            xml.append("<todo id=\"_").append(id).append("\"><name>n</name>")
+                    .append("<desc><![CDATA[see <todo id=\"x\"> here]]></desc></todo>")
+                    .append("<!-- <todo id=\"y\"> -->");
+        }
+        xml.append("</todos></nought>");
+
+        var store = importString(xml.toString());
+
+        assertEquals(200, store.size());
+        assertEquals("see <todo id=\"x\"> here", store.findById(ids.get(100)).getDescription());
+    }
+
+    @Test
+    void smallInputIsImportedSequentially() throws Exception {
+        @Language("XML") var data = """
+                <?xml version="1.0" encoding="UTF-8" ?>
+                <nought xmlns="https://kszi2.hu/~bodand/nought.xsd">
+                    <todos>
+                        <todo id="_60f2abf2-f76d-49f9-a4a5-c87b13a9cbbc">
+                	        <name>Todo 1</name>
+                	        <desc>Todo text</desc>
+                        </todo>
+                    </todos>
+                </nought>""";
+
+        var store = new TodoParallelXMLImporter(new TodoStore(), pool)
+                .importFrom(new ByteArrayInputStream(data.getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals("Todo 1", store.findById(UUID.fromString("60f2abf2-f76d-49f9-a4a5-c87b13a9cbbc")).getName());
+    }
+
+    @Test
+    void danglingReferencesAreReportedAfterParsing() {
+        var xml = new StringBuilder("<nought xmlns=\"https://kszi2.hu/~bodand/nought.xsd\"><todos>");
+        for (int i = 0; i < 50; ++i) {
+            xml.append("<todo id=\"_").append(UUID.randomUUID()).append("\"><name>n</name><desc>d</desc>")
+                    .append("<depends-on><todo ref=\"_").append(UUID.randomUUID()).append("\"/></depends-on>")
+                    .append("</todo>");
+        }
+        xml.append("</todos></nought>");
+
+        var ex = assertThrows(UnresolvedReferenceException.class, () -> importString(xml.toString()));
+        assertEquals(50, ex.getMissing().size());
+    }
+
+    private TodoStore importString(String xml) throws Exception {
+        var importer = new TodoParallelXMLImporter(new TodoStore(), pool, 256);
+        return importer.importFrom(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private ForkJoinPool pool;
+}
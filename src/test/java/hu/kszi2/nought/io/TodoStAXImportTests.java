@@ -0,0 +1,267 @@
+package hu.kszi2.nought.io;
+
+import hu.kszi2.nought.core.TodoStore;
+import hu.kszi2.nought.core.UnresolvedReferenceException;
+import org.intellij.lang.annotations.Language;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.xml.stream.XMLStreamException;
+import java.io.ByteArrayInputStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.time.LocalTime;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TodoStAXImportTests {
+    @BeforeEach
+    void setUpImporter() {
+        importer = new TodoStAXImporter(new TodoStore());
+    }
+
+    @Test
+    void defaultIsStAXImporter() {
+        assertInstanceOf(TodoStAXImporter.class, TodoImporter.newDefault(new TodoStore()));
+    }
+
+    @Test
+    void emptyTodosListCreatesEmptyStore() throws Exception {
+        @Language("XML") var data = """
+                <?xml version="1.0" encoding="UTF-8" ?>
+                <nought xmlns="https://kszi2.hu/~bodand/nought.xsd">
+                    <todos/>
+                </nought>""";
+
+        var store = importer.importFrom(new ByteArrayInputStream(data.getBytes(StandardCharsets.UTF_8)));
+        assertEquals(0, store.size());
+    }
+
+    @Test
+    void invalidTodoElemRaisesAnException() {
+        @Language("XML") var data = """
+                <?xml version="1.0" encoding="UTF-8" ?>
+                <nought xmlns="https://kszi2.hu/~bodand/nought.xsd">
+                    <todos>
+                        <todo>
+                	        <name>Todo 1</name>
+                	        <name>Description</name>
+                        </todo>
+                    </todos>
+                </nought>""";
+
+        var ex = assertThrows(XMLStreamException.class,
+                () -> importer.importFrom(new ByteArrayInputStream(data.getBytes(StandardCharsets.UTF_8))));
+        assertTrue(ex.getMessage().contains("id attribute"));
+    }
+
+    @Test
+    void invalidGuidRaisesAnException() {
+        @Language("XML") var data = """
+                <?xml version="1.0" encoding="UTF-8" ?>
+                <nought xmlns="https://kszi2.hu/~bodand/nought.xsd">
+                    <todos>
+                        <todo id="_60f2abf2-f76d-49f9-a4a5-c87b13a9cbbX">
+                	        <name>Todo 1</name>
+                	        <desc>Description</desc>
+                        </todo>
+                    </todos>
+                </nought>""";
+
+        assertThrows(XMLStreamException.class,
+                () -> importer.importFrom(new ByteArrayInputStream(data.getBytes(StandardCharsets.UTF_8))));
+    }
+
+    @Test
+    void todoElemWithInsufficientChildrenRaisesAnException() {
+        @Language("XML") var data = """
+                <?xml version="1.0" encoding="UTF-8" ?>
+                <nought xmlns="https://kszi2.hu/~bodand/nought.xsd">
+                    <todos>
+                        <todo id="_60f2abf2-f76d-49f9-a4a5-c87b13a9cbbc">
+                	        <name>Todo 1</name>
+                        </todo>
+                    </todos>
+                </nought>""";
+
+        var ex = assertThrows(XMLStreamException.class,
+                () -> importer.importFrom(new ByteArrayInputStream(data.getBytes(StandardCharsets.UTF_8))));
+        assertTrue(ex.getMessage().contains("required setters"));
+    }
+
+    @Test
+    void todoStoreContainsAllFieldsAfterParsing() throws Exception {
+        @Language("XML") var data = """
+                <?xml version="1.0" encoding="UTF-8" ?>
+                <nought xmlns="https://kszi2.hu/~bodand/nought.xsd">
+                    <todos>
+                        <todo id="_60f2abf2-f76d-49f9-a4a5-c87b13a9cbbc">
+                	        <name>Todo &amp; 1</name>
+                	        <desc><![CDATA[Todo <text>]]></desc>
+                	        <completed/>
+                            <due>
+                				<date>2022-11-07</date>
+                				<time>23:59:00</time>
+                			</due>
+                        </todo>
+                    </todos>
+                </nought>""";
+        var guid = UUID.fromString("60f2abf2-f76d-49f9-a4a5-c87b13a9cbbc");
+
+        var store = importer.importFrom(new ByteArrayInputStream(data.getBytes(StandardCharsets.UTF_8)));
+        var todo = assertDoesNotThrow(() -> store.findById(guid));
+        var expDate = new SimpleDateFormat("yyyy-MM-dd").parse("2022-11-07");
+
+        assertEquals("Todo & 1", todo.getName());
+        assertEquals("Todo <text>", todo.getDescription());
+        assertTrue(todo.isCompleted());
+        assertEquals(expDate, todo.getDueDate());
+        assertEquals(LocalTime.of(23, 59), todo.getDueTime());
+    }
+
+    @Test
+    void todoStoreDoesNotSetIncorrectlyFormattedDueDateTime() throws Exception {
+        @Language("XML") var data = """
+                <?xml version="1.0" encoding="UTF-8" ?>
+                <nought xmlns="https://kszi2.hu/~bodand/nought.xsd">
+                    <todos>
+                        <todo id="_60f2abf2-f76d-49f9-a4a5-c87b13a9cbbc">
+                	        <name>Todo 1</name>
+                	        <desc>Todo text</desc>
+                            <due>
+                				<date>7/11/2022</date>
+                				<time>2022-11-07</time>
+                			</due>
+                        </todo>
+                    </todos>
+                </nought>""";
+        var guid = UUID.fromString("60f2abf2-f76d-49f9-a4a5-c87b13a9cbbc");
+
+        var store = importer.importFrom(new ByteArrayInputStream(data.getBytes(StandardCharsets.UTF_8)));
+        var todo = assertDoesNotThrow(() -> store.findById(guid));
+
+        assertNull(todo.getDueDate());
+        assertNull(todo.getDueTime());
+    }
+
+    @Test
+    void todoStoreContainsCorrectChildrenAfterParsing() throws Exception {
+        @Language("XML") var data = """
+                <?xml version="1.0" encoding="UTF-8" ?>
+                <nought xmlns="https://kszi2.hu/~bodand/nought.xsd">
+                    <todos>
+                        <todo id="_60f2abf2-f76d-49f9-a4a5-c87b13a9cbbc">
+                	        <name>Todo 1</name>
+                	        <desc>Todo text</desc>
+                        </todo>
+                        <todo id="_80a41331-54a6-49a1-b8da-97c651a8110b">
+                	        <name>Todo 2</name>
+                	        <desc>More todo text</desc>
+                	        <depends-on>
+                	            <todo ref="_60f2abf2-f76d-49f9-a4a5-c87b13a9cbbc"/>
+                	        </depends-on>
+                        </todo>
+                    </todos>
+                </nought>""";
+        var parentGuid = UUID.fromString("80a41331-54a6-49a1-b8da-97c651a8110b");
+        var childGuid = UUID.fromString("60f2abf2-f76d-49f9-a4a5-c87b13a9cbbc");
+
+        var store = importer.importFrom(new ByteArrayInputStream(data.getBytes(StandardCharsets.UTF_8)));
+
+        var child = assertDoesNotThrow(() -> store.findById(childGuid));
+        var parent = assertDoesNotThrow(() -> store.findById(parentGuid));
+
+        assertSame(parent, child.getParent());
+    }
+
+    @Test
+    void parentsCanBeDefinedBeforeTheirChildren() throws Exception {
+        @Language("XML") var data = """
+                <?xml version="1.0" encoding="UTF-8" ?>
+                <nought xmlns="https://kszi2.hu/~bodand/nought.xsd">
+                    <todos>
+                        <todo id="_80a41331-54a6-49a1-b8da-97c651a8110b">
+                	        <name>Todo 2</name>
+                	        <desc>More todo text</desc>
+                	        <depends-on>
+                	            <todo ref="_60f2abf2-f76d-49f9-a4a5-c87b13a9cbbc"/>
+                	        </depends-on>
+                        </todo>
+                        <todo id="_60f2abf2-f76d-49f9-a4a5-c87b13a9cbbc">
+                	        <name>Todo 1</name>
+                	        <desc>Todo text</desc>
+                        </todo>
+                    </todos>
+                </nought>""";
+        var parentGuid = UUID.fromString("80a41331-54a6-49a1-b8da-97c651a8110b");
+        var childGuid = UUID.fromString("60f2abf2-f76d-49f9-a4a5-c87b13a9cbbc");
+
+        var store = importer.importFrom(new ByteArrayInputStream(data.getBytes(StandardCharsets.UTF_8)));
+
+        assertSame(store.findById(parentGuid), store.findById(childGuid).getParent());
+    }
+
+    @Test
+    void parentsDefinedBeforeTheirChildrenFailInImmediateMode() {
+        @Language("XML") var data = """
+                <?xml version="1.0" encoding="UTF-8" ?>
+                <nought xmlns="https://kszi2.hu/~bodand/nought.xsd">
+                    <todos>
+                        <todo id="_80a41331-54a6-49a1-b8da-97c651a8110b">
+                	        <name>Todo 2</name>
+                	        <desc>More todo text</desc>
+                	        <depends-on>
+                	            <todo ref="_60f2abf2-f76d-49f9-a4a5-c87b13a9cbbc"/>
+                	        </depends-on>
+                        </todo>
+                    </todos>
+                </nought>""";
+        var immediate = new TodoStAXImporter(new TodoStore(), LinkMode.IMMEDIATE);
+
+        assertThrows(XMLStreamException.class,
+                () -> immediate.importFrom(new ByteArrayInputStream(data.getBytes(StandardCharsets.UTF_8))));
+    }
+
+    @Test
+    void danglingReferencesAreReportedAfterParsing() {
+        @Language("XML") var data = """
+                <?xml version="1.0" encoding="UTF-8" ?>
+                <nought xmlns="https://kszi2.hu/~bodand/nought.xsd">
+                    <todos>
+                        <todo id="_80a41331-54a6-49a1-b8da-97c651a8110b">
+                	        <name>Todo 2</name>
+                	        <desc>More todo text</desc>
+                	        <depends-on>
+                	            <todo ref="_60f2abf2-f76d-49f9-a4a5-c87b13a9cbbc"/>
+                	            <todo ref="_a36671e7-1b96-4af9-ab55-8dbae5fda273"/>
+                	        </depends-on>
+                        </todo>
+                    </todos>
+                </nought>""";
+
+        var ex = assertThrows(UnresolvedReferenceException.class,
+                () -> importer.importFrom(new ByteArrayInputStream(data.getBytes(StandardCharsets.UTF_8))));
+        assertEquals(2, ex.getMissing().size());
+    }
+
+    @Test
+    void exportedStoreCanBeImportedAgain() throws Exception {
+        var original = new TodoStore();
+        var child = original.newBuilder().newId().setName("child").setDescription("a\nb").build();
+        var parent = original.newBuilder().newId().setName("parent").setDescription("")
+                .addChild(child.getId())
+                .build();
+        var writer = new StringWriter();
+        new TodoXMLExporter(original).export(writer);
+
+        var store = importer.importFrom(new ByteArrayInputStream(writer.toString().getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals(2, store.size());
+        assertEquals("a\nb", store.findById(child.getId()).getDescription());
+        assertEquals(parent.getId(), store.findById(child.getId()).getParentId());
+    }
+
+    private TodoStAXImporter importer;
+}
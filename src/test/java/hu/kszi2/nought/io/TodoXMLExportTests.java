@@ -46,7 +46,18 @@ class TodoXMLExportTests {
     @BeforeEach
     void setUpStoreAndExporter() {
         store = new TodoStore();
-        exporter = store.newExporter();
+        exporter = new TodoXMLExporter(store);
+    }
+
+    @Test
+    void progressIsReportedForEachTodo() throws Exception {
+        var child = store.newBuilder().newId().setName("child").setDescription("").build();
+        store.newBuilder().newId().setName("parent").setDescription("").addChild(child.getId()).build();
+        var reported = new ArrayList<Integer>();
+        exporter.setProgressListener(reported::add);
+
+        exporter.export(new StringWriter());
+        assertEquals(List.of(1, 2), reported);
     }
 
     @Test
@@ -276,6 +287,47 @@ class TodoXMLExportTests {
 
     }
 
+    @Test
+    void childrenAreWrittenBeforeTheirParent() throws Exception {
+        var child = store.newBuilder()
+                .newId().setName("child").setDescription("lorem ipsum")
+                .build();
+        var parent = store.newBuilder()
+                .newId().setName("parent").setDescription("dolor sit amet")
+                .addChild(child.getId())
+                .build();
+        var grandparent = store.newBuilder()
+                .newId().setName("grandparent").setDescription("consectetur adipiscing elit")
+                .addChild(parent.getId())
+                .build();
+
+        var xml = createXmlString();
+        var childPos = xml.indexOf("id=\"_" + child.getId());
+        var parentPos = xml.indexOf("id=\"_" + parent.getId());
+        var grandparentPos = xml.indexOf("id=\"_" + grandparent.getId());
+
+        assertTrue(childPos >= 0);
+        assertTrue(childPos < parentPos);
+        assertTrue(parentPos < grandparentPos);
+    }
+
+    @Test
+    void deepTodoTreeIsWrittenOnceWithoutOverflowingTheStack() throws Exception {
+        final var depth = 100_000;
+        var builder = store.newBuilder().setDescription("");
+        var todo = builder.newId().setName("leaf").build();
+        for (int i = 0; i < depth; ++i) {
+            todo = store.newBuilder()
+                    .newId().setName("todo").setDescription("")
+                    .addChild(todo.getId())
+                    .build();
+        }
+
+        var xml = createXmlString();
+        var definitions = xml.split("<todo id=", -1).length - 1;
+        assertEquals(depth + 1, definitions);
+    }
+
     private String createXmlString() {
         var writer = new StringWriter();
         assertDoesNotThrow(() -> exporter.export(writer));
@@ -288,7 +340,7 @@ class TodoXMLExportTests {
     }
 
     private TodoStore store;
-    private TodoExporter exporter;
+    private TodoXMLExporter exporter;
     private static final SchemaFactory schemaFactory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
     private static Schema schema;
     private static Validator validator;